@@ -0,0 +1,211 @@
+package gameframework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * A level in the binary format written by the LevelCompiler. The level is read straight from a (usually
+ * memory mapped) buffer: the subtypes are read once when the level is opened, everything else is read from
+ * the fixed size records only when asked for, so opening a level costs the same no matter how many objects
+ * it has. The objects of any region of the level can also be found without going through all of them (see
+ * the region index in LevelCompiler).
+ *
+ * A compiled level is only used while it matches the text file it was compiled from (if the text file is
+ * still available), otherwise the text file is compiled again into the cache folder. If it can't be
+ * compiled the level is loaded from the text file as always (see GameLevel.load).
+ */
+public class CompiledLevel
+{
+    public static final String FILE_EXTENSION = ".lvl";
+    private static final String LEVELS_FOLDER = "levels/";
+
+    private final ByteBuffer data;
+    private final long sourceHash;
+    private final int regionSize;
+    private final int originX;
+    private final int originY;
+    private final int regionCols;
+    private final int regionRows;
+    private final String[] subtypes;
+    private final int objectCount;
+    private final int recordsStart;
+    private final int regionStartsStart;
+    private final int regionEntriesStart;
+
+    public CompiledLevel(ByteBuffer data) throws IOException
+    {
+        this.data = data;
+
+        if (data.capacity() < LevelCompiler.HEADER_SIZE || data.getInt(0) != LevelCompiler.FILE_MAGIC ||
+                data.getInt(4) != LevelCompiler.FILE_VERSION)
+            throw new IOException("Not a compiled level");
+
+        sourceHash = data.getLong(8);
+        regionSize = data.getInt(16);
+        originX = data.getInt(20);
+        originY = data.getInt(24);
+        regionCols = data.getInt(28);
+        regionRows = data.getInt(32);
+        subtypes = new String[data.getInt(36)];
+        objectCount = data.getInt(40);
+
+        int position = LevelCompiler.HEADER_SIZE;
+        try
+        {
+            for (int i = 0; i < subtypes.length; i++)
+            {
+                byte[] name = new byte[data.getShort(position)];
+                data.get(position + 2, name);
+                subtypes[i] = new String(name, StandardCharsets.UTF_8);
+                position += 2 + name.length;
+            }
+        }
+        catch (IndexOutOfBoundsException | NegativeArraySizeException e)
+        {
+            throw new IOException("Invalid compiled level string table");
+        }
+
+        recordsStart = position;
+        regionStartsStart = recordsStart + objectCount * LevelCompiler.RECORD_SIZE;
+        regionEntriesStart = regionStartsStart + (regionCols * regionRows + 1) * 4;
+        if (objectCount < 0 || regionCols <= 0 || regionRows <= 0 ||
+                regionEntriesStart + objectCount * 4 != data.capacity())
+            throw new IOException("Invalid compiled level size");
+    }
+
+    /* Returns the compiled version of a level, or null if the level doesn't have a text file and isn't
+     * compiled either, or its text file can't be compiled. Compiled levels are looked for in the level
+     * resources first, and then in the cache folder. */
+    public static CompiledLevel load(String levelName)
+    {
+        ByteBuffer text = GameThread.resourceManager.loadBinaryResource(levelName + ".txt", levelName);
+        String compiledName = levelName + FILE_EXTENSION;
+
+        CompiledLevel level = open(GameThread.resourceManager.loadBinaryResource(compiledName, levelName), text);
+        if (level == null)
+            level = open(GameThread.resourceManager.mapCacheFile(LEVELS_FOLDER + compiledName), text);
+
+        if (level == null && text != null)
+        {
+            try
+            {
+                byte[] compiled = LevelCompiler.compile(text);
+                GameThread.resourceManager.saveCacheFile(LEVELS_FOLDER + compiledName, compiled);
+                level = new CompiledLevel(ByteBuffer.wrap(compiled));
+            }
+            catch (IOException e)
+            {
+                System.out.println("Unable to compile level " + levelName + ": " + e.getMessage());
+            }
+        }
+        return level;
+    }
+
+    // Opens a compiled level if it's valid and up to date with the level text (when available)
+    private static CompiledLevel open(ByteBuffer data, ByteBuffer text)
+    {
+        if (data == null)
+            return null;
+
+        try
+        {
+            CompiledLevel level = new CompiledLevel(data);
+            if (text != null && level.sourceHash != LevelCompiler.computeSourceHash(text))
+                return null;
+            return level;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    public int getObjectCount()
+    {
+        return objectCount;
+    }
+
+    // Attributes of the object at the given index (objects are in the same order as in the level text file)
+    public int getX(int index)
+    {
+        return data.getInt(recordsStart + index * LevelCompiler.RECORD_SIZE);
+    }
+
+    public int getY(int index)
+    {
+        return data.getInt(recordsStart + index * LevelCompiler.RECORD_SIZE + 4);
+    }
+
+    public int getType(int index)
+    {
+        return data.getShort(recordsStart + index * LevelCompiler.RECORD_SIZE + 8);
+    }
+
+    public String getSubtype(int index)
+    {
+        return subtypes[data.getShort(recordsStart + index * LevelCompiler.RECORD_SIZE + 10)];
+    }
+
+    public int getWidth(int index)
+    {
+        return data.getInt(recordsStart + index * LevelCompiler.RECORD_SIZE + 12);
+    }
+
+    public int getHeight(int index)
+    {
+        return data.getInt(recordsStart + index * LevelCompiler.RECORD_SIZE + 16);
+    }
+
+    // Regions are squares of getRegionSize pixels, indexed by rows, starting at the top left corner of the level
+    public int getRegionSize()
+    {
+        return regionSize;
+    }
+
+    public int getRegionCols()
+    {
+        return regionCols;
+    }
+
+    public int getRegionRows()
+    {
+        return regionRows;
+    }
+
+    public int getRegionCount()
+    {
+        return regionCols * regionRows;
+    }
+
+    // Returns the region containing a position (positions outside the level belong to the closest region)
+    public int getRegion(int x, int y)
+    {
+        int col = Math.max(0, Math.min(regionCols - 1, Math.floorDiv(x - originX, regionSize)));
+        int row = Math.max(0, Math.min(regionRows - 1, Math.floorDiv(y - originY, regionSize)));
+        return row * regionCols + col;
+    }
+
+    // Bounds of a region in the game world
+    public int getRegionX(int region)
+    {
+        return originX + (region % regionCols) * regionSize;
+    }
+
+    public int getRegionY(int region)
+    {
+        return originY + (region / regionCols) * regionSize;
+    }
+
+    // Number of objects whose top left corner is in the given region
+    public int getRegionObjectCount(int region)
+    {
+        return data.getInt(regionStartsStart + (region + 1) * 4) - data.getInt(regionStartsStart + region * 4);
+    }
+
+    // Index of the nth object in the given region (in the same order as in the level text file)
+    public int getRegionObject(int region, int n)
+    {
+        return data.getInt(regionEntriesStart + (data.getInt(regionStartsStart + region * 4) + n) * 4);
+    }
+}
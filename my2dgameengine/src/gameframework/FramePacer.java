@@ -0,0 +1,59 @@
+package gameframework;
+
+import gameframework.metrics.Histogram;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Waits until the next update or frame is due, much more precisely than Thread.sleep (which only
+ * takes whole milliseconds, and usually oversleeps by a millisecond or two). Most of the wait is
+ * spent parked, so the CPU is free, but the last part of it (the spin budget) is spent spinning,
+ * since a parked thread can't be woken up with sub-millisecond precision. A larger spin budget
+ * makes the frames more regular at the cost of some CPU time.
+ *
+ * The pacer keeps track of how late it wakes up compared to the requested time (the jitter of the
+ * frames it paces), in a histogram that can be read at any time.
+ */
+public class FramePacer
+{
+    private final long spinNanos;
+    private final Histogram lateness = new Histogram();
+
+    public FramePacer(long spinNanos)
+    {
+        this.spinNanos = Math.max(0, spinNanos);
+    }
+
+    // Wait until System.nanoTime reaches the given time, returns right away if it already has
+    public void waitUntil(long deadline)
+    {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0)
+            return;
+
+        // Coarse wait, parking may wake up early (or spuriously), so check again every time
+        while (remaining > spinNanos)
+        {
+            LockSupport.parkNanos(remaining - spinNanos);
+            //the game loop is never interrupted on purpose, ignore it the same way sleep did
+            Thread.interrupted();
+            remaining = deadline - System.nanoTime();
+        }
+
+        // Fine wait for the last part
+        long now = System.nanoTime();
+        while (now < deadline)
+        {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+
+        lateness.record(now - deadline);
+    }
+
+    // How late the pacer woke up (in nanoseconds) in every wait since the last reset
+    public Histogram getLateness()
+    {
+        return lateness;
+    }
+}
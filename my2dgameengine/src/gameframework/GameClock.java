@@ -0,0 +1,41 @@
+package gameframework;
+
+/*
+ * The game clock keeps the time of the game world, which only advances when the game is updated
+ * (each update adds exactly 1/UPDATES_PER_SECOND seconds). Gameplay code (cooldowns, delays, time to
+ * live of projectiles, etc) must use this clock instead of System.currentTimeMillis, this way the
+ * game behaves the same no matter how fast it runs (in headless mode it can run many times faster
+ * than real time) and replaying a recorded game produces the exact same results.
+ */
+public class GameClock
+{
+    /* Game time when the game starts. Objects usually initialize their last action times to 0,
+     * starting at a large time (instead of 0) makes sure no cooldown is still active at the start. */
+    public static final long START_TIME_MILLIS = 1000000000L;
+
+    private static volatile long ticks = 0;     //number of updates performed so far
+
+    // Called by the game data at the beginning of every update
+    static void advance()
+    {
+        ticks++;
+    }
+
+    // Restart the clock, used before replaying a recorded game
+    public static void reset()
+    {
+        ticks = 0;
+    }
+
+    // Returns the number of the update being performed (or the last one performed), starting at 1
+    public static long getTicks()
+    {
+        return ticks;
+    }
+
+    // Returns the game time in milliseconds
+    public static long currentTimeMillis()
+    {
+        return START_TIME_MILLIS + ticks * 1000 / GameThread.UPDATES_PER_SECOND;
+    }
+}
@@ -1,11 +1,21 @@
 package gameframework;
 
+import gameframework.collision.NarrowPhase;
+import gameframework.collision.SweepAndPrune;
 import gameframework.display.GameDisplay;
 import gameframework.gamecharacters.Player;
 import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjectArray;
 import gameframework.gameobjects.GameObjects;
+import gameframework.metrics.GameMetrics;
+import gameframework.weapons.Projectile;
+import gameframework.weapons.Weapon;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class GameData
 {
@@ -15,6 +25,34 @@ public class GameData
     private GameObjects addAfterUpdate;
     private GameObjects removeAfterUpdate;
 
+    // handles the candidate pairs found by the sweep and prune broadphase (if enabled)
+    private final SweepAndPrune.PairHandler broadphasePairHandler;
+    // loads and unloads the regions of the current level (only when streaming levels)
+    private LevelStreamer levelStreamer;
+    // changes the level being played between updates, and loads the next level in advance
+    private final LevelTransitionManager levelTransitions = new LevelTransitionManager();
+    private boolean updateOffscreenObjects;
+
+    /* Used by the parallel narrowphase (see GameThread.PARALLEL_NARROWPHASE): the candidate pairs of
+     * the update, and the object whose neighbors are being collected as pairs. */
+    private final NarrowPhase narrowPhase = new NarrowPhase();
+    private final GameObjects.NeighborVisitor pairCollector;
+    private GameObject collectingObject;
+
+    // threads used by the parallel update and the parallel narrowphase
+    private static ForkJoinPool workerPool;
+
+    /* Used by the parallel update (see GameThread.PARALLEL_UPDATE): the objects to update in each region
+     * of the area grid, the regions with objects that can't be updated in parallel, and the objects that
+     * are updated serially after all regions. */
+    private GameObjectArray[] regionObjects = new GameObjectArray[0];
+    private boolean[] serialRegions = new boolean[0];
+    private final GameObjectArray serialObjects = new GameObjectArray();
+    // the task updating each region, the tasks to run in this update and the task running all of them
+    private RegionUpdate[] regionTasks = new RegionUpdate[0];
+    private final ArrayList<RecursiveAction> pendingRegionTasks = new ArrayList<RecursiveAction>();
+    private final RecursiveAction parallelUpdate = new ParallelUpdate();
+
     public GameData()
     {
         //initialize game objects list
@@ -24,6 +62,27 @@ public class GameData
         addAfterUpdate = new GameObjects(false);
         removeAfterUpdate = new GameObjects(false);
 
+        broadphasePairHandler = new SweepAndPrune.PairHandler()
+        {
+            @Override
+            public void handlePair(GameObject object, GameObject otherObject)
+            {
+                handleCandidatePair(object, otherObject);
+                handleCandidatePair(otherObject, object);
+            }
+        };
+
+        pairCollector = new GameObjects.NeighborVisitor()
+        {
+            @Override
+            public boolean visit(GameObject neighbor)
+            {
+                if (collectingObject.isCollisionCandidate(neighbor))
+                    narrowPhase.add(collectingObject, neighbor);
+                return true;
+            }
+        };
+
         //load first game level
         try
         {
@@ -35,6 +94,7 @@ public class GameData
                     GameThread.getCurrentLevel().getName() + "\n" +
                     "Reason: " + e.getMessage());
         }
+        levelTransitions.preloadNextLevel();
     }
 
     //Add a playable character, if the boolean is set to true then this is set
@@ -60,26 +120,279 @@ public class GameData
       objects and allows them to use a fraction of the time to do their tasks and update themselves. */
     public synchronized void update(int tickNumber)
     {
+        GameClock.advance();
+
+        // Perform the input received since the last update before updating any object
+        GameMetrics.beginPhase(GameMetrics.INPUT);
+        GameThread.inputQueue.performQueuedInput(GameClock.getTicks());
+        GameMetrics.endPhase(GameMetrics.INPUT);
+
         /*GameObjects objectsToUpdate = objects.getUpdateObjects();
         for (GameObject go : objectsToUpdate)
             go.update(objects);*/
 
-        GameObjects objectsToUpdate = objects.getUpdateObjects();
+        GameObjectArray objectsToUpdate = objects.getUpdateObjects();
 
-        for (GameObject go : objectsToUpdate)
+        /* Objects that remove others directly during their update (instead of using removeObjectWhenSafe)
+         * would move the last object of the update list into the removed slot, so removals from the update
+         * list are deferred until every object is updated (see GameObjects.beginUpdate), and removed objects
+         * are skipped. */
+        objects.beginUpdate();
+        try
         {
-            if (GameDisplay.objectWithinCameraView(go))
+            if (GameThread.PARALLEL_UPDATE && objects.getRegionCount() > 1)
+                updateInParallel(objectsToUpdate, tickNumber);
+            else for (int i = 0; i < objectsToUpdate.size(); i++)
             {
-                go.update(objects);
+                /* The update list is a contiguous array, so we iterate it by index (this also avoids a
+                 * concurrent modification exception when objects are added or removed directly). */
+                GameObject go = objectsToUpdate.get(i);
+                if (!objects.contains(go))
+                    continue;
+
+                // Update off-screen objects less frequently
+                if (GameDisplay.objectWithinCameraView(go) ||
+                        tickNumber % GameThread.OFFSCREEN_OBJECTS_UPDATE_INTERVAL == 0)
+                {
+                    if (GameThread.ENABLE_METRICS)
+                        updateMeasured(go);
+                    else
+                        go.update(objects);
+                }
             }
+        }
+        finally
+        {
+            objects.endUpdate();
+        }
+
+        // Objects only flag themselves when they move, update the spatial grid once for all of them
+        GameMetrics.beginPhase(GameMetrics.COLLISION);
+        objects.reindexMovedObjects();
+
+        /* If the sweep and prune broadphase is enabled, find all pairs of objects that might be
+         * colliding and handle them now that every object has moved. */
+        SweepAndPrune broadphase = objects.getBroadphase();
+        updateOffscreenObjects = tickNumber % GameThread.OFFSCREEN_OBJECTS_UPDATE_INTERVAL == 0;
+        if (broadphase != null)
+            broadphase.sweep(broadphasePairHandler);
+        else if (GameThread.PARALLEL_NARROWPHASE)
+            collectNeighborPairs(objectsToUpdate);
+
+        /* With the parallel narrowphase the pairs were only collected so far, test them all at once
+         * and then let the objects handle the collisions found. */
+        if (GameThread.PARALLEL_NARROWPHASE)
+        {
+            GameMetrics.count(GameMetrics.COLLISION_PAIRS_TESTED, narrowPhase.size());
+            narrowPhase.test(getWorkerPool());
+            narrowPhase.resolve();
+        }
+        GameMetrics.endPhase(GameMetrics.COLLISION);
+
+        GameMetrics.beginPhase(GameMetrics.POST_UPDATE);
+        performPostUpdateTasks();
+        advanceAnimations();
+        GameMetrics.endPhase(GameMetrics.POST_UPDATE);
+
+        GameMetrics.endUpdate();
+    }
+
+    /* Advance the animations of the objects updated in this cycle by one frame. This is done once the update
+     * is complete (where rendering used to advance them), so every object sees the same animation frames
+     * during the whole update whether or not a frame is rendered afterwards. Objects that don't require
+     * updating have a single frame (see InanimateObject) and aren't advanced. */
+    private void advanceAnimations()
+    {
+        GameObjectArray updatedObjects = objects.getUpdateObjects();
+        for (int i = 0; i < updatedObjects.size(); i++)
+        {
+            GameObject go = updatedObjects.get(i);
+            if (updateOffscreenObjects || GameDisplay.objectWithinCameraView(go))
+                go.advanceAnimation();
+        }
+    }
+
+    /* Update the objects in the different regions of the area grid at the same time, each region
+     * in its own task of the update thread pool. Objects that could interact with objects in other
+     * regions (near the border of their region, or in the same region as an object that can't be
+     * updated in parallel) are updated afterwards one at a time, in the order of the update list. */
+    private void updateInParallel(GameObjectArray objectsToUpdate, int tickNumber)
+    {
+        boolean updateOffscreen = tickNumber % GameThread.OFFSCREEN_OBJECTS_UPDATE_INTERVAL == 0;
+        int regionCount = objects.getRegionCount();
+
+        if (regionObjects.length != regionCount)
+        {
+            regionObjects = new GameObjectArray[regionCount];
+            for (int i = 0; i < regionCount; i++)
+                regionObjects[i] = new GameObjectArray();
+            serialRegions = new boolean[regionCount];
+            regionTasks = new RegionUpdate[regionCount];
+            for (int i = 0; i < regionCount; i++)
+                regionTasks[i] = new RegionUpdate(regionObjects[i]);
+        }
+
+        // Regions are found from the grid cells, which must reflect the position of every object
+        objects.reindexMovedObjects();
+
+        for (int i = 0; i < objectsToUpdate.size(); i++)
+        {
+            GameObject go = objectsToUpdate.get(i);
+            if (!go.canUpdateInParallel())
+                objects.markRegions(go, serialRegions);
+        }
+
+        for (int i = 0; i < objectsToUpdate.size(); i++)
+        {
+            GameObject go = objectsToUpdate.get(i);
+
+            // Update off-screen objects less frequently
+            if (!updateOffscreen && !GameDisplay.objectWithinCameraView(go))
+                continue;
+
+            int region = objects.getParallelRegion(go, GameThread.PARALLEL_UPDATE_MARGIN);
+            if (region < 0 || serialRegions[region])
+                serialObjects.append(go);
             else
+                regionObjects[region].append(go);
+        }
+
+        GameMetrics.beginPhase(GameMetrics.PHYSICS);
+        // the tasks of the regions are reused every update, a task can run again once reinitialized
+        for (RegionUpdate task : regionTasks)
+        {
+            if (task.region.size() == 0)
+                continue;
+
+            task.reinitialize();
+            pendingRegionTasks.add(task);
+            GameMetrics.count(GameMetrics.OBJECTS_UPDATED, task.region.size());
+        }
+
+        if (!pendingRegionTasks.isEmpty())
+        {
+            objects.setParallelUpdateInProgress(true);
+            try
             {
-                // Update off-screen objects less frequently
-                if (tickNumber % GameThread.OFFSCREEN_OBJECTS_UPDATE_INTERVAL == 0)
-                    go.update(objects);
+                parallelUpdate.reinitialize();
+                getWorkerPool().invoke(parallelUpdate);
+            }
+            finally
+            {
+                objects.setParallelUpdateInProgress(false);
+                pendingRegionTasks.clear();
             }
         }
-        performPostUpdateTasks();
+        GameMetrics.endPhase(GameMetrics.PHYSICS);
+
+        // Serial reconciliation, once every region is done (skipping objects removed meanwhile)
+        for (int i = 0; i < serialObjects.size(); i++)
+        {
+            GameObject go = serialObjects.get(i);
+            if (!objects.contains(go))
+                continue;
+
+            if (GameThread.ENABLE_METRICS)
+                updateMeasured(go);
+            else
+                go.update(objects);
+        }
+
+        for (GameObjectArray region : regionObjects)
+            region.clear();
+        Arrays.fill(serialRegions, false);
+        serialObjects.clear();
+    }
+
+    // Updates the objects of one region of the area grid (see updateInParallel)
+    @SuppressWarnings("serial")
+    private class RegionUpdate extends RecursiveAction
+    {
+        private final GameObjectArray region;
+
+        RegionUpdate(GameObjectArray region)
+        {
+            this.region = region;
+        }
+
+        @Override
+        protected void compute()
+        {
+            for (int i = 0; i < region.size(); i++)
+                region.get(i).update(objects);
+        }
+    }
+
+    // Runs the tasks of every region with objects to update, and waits for all of them
+    @SuppressWarnings("serial")
+    private class ParallelUpdate extends RecursiveAction
+    {
+        @Override
+        protected void compute()
+        {
+            invokeAll(pendingRegionTasks);
+        }
+    }
+
+    private static synchronized ForkJoinPool getWorkerPool()
+    {
+        if (workerPool == null)
+        {
+            int threads = GameThread.PARALLEL_UPDATE_THREADS > 0 ? GameThread.PARALLEL_UPDATE_THREADS :
+                    Runtime.getRuntime().availableProcessors();
+            workerPool = new ForkJoinPool(threads);
+        }
+        return workerPool;
+    }
+
+    /* Update an object measuring the time it takes, weapons are measured apart from the rest of
+     * the objects (see GameMetrics). */
+    private void updateMeasured(GameObject go)
+    {
+        int phase = go instanceof Weapon || go instanceof Projectile ? GameMetrics.WEAPONS : GameMetrics.PHYSICS;
+
+        GameMetrics.beginPhase(phase);
+        go.update(objects);
+        GameMetrics.endPhase(phase);
+        GameMetrics.count(GameMetrics.OBJECTS_UPDATED, 1);
+    }
+
+    /* A candidate pair is handled from the side of each object that moves and was updated in this
+     * cycle, the same way it would have handled it during its own update. */
+    private void handleCandidatePair(GameObject object, GameObject otherObject)
+    {
+        if (!handlesCollisions(object))
+            return;
+
+        if (!GameThread.PARALLEL_NARROWPHASE)
+            object.handleCollisionCandidate(otherObject);
+        else if (object.isCollisionCandidate(otherObject))
+            narrowPhase.add(object, otherObject);
+    }
+
+    /* Collect the candidate pairs of every object that handled its collisions during this update,
+     * with the neighbors it would have checked right after moving. */
+    private void collectNeighborPairs(GameObjectArray objectsToUpdate)
+    {
+        for (int i = 0; i < objectsToUpdate.size(); i++)
+        {
+            GameObject go = objectsToUpdate.get(i);
+            if (!handlesCollisions(go))
+                continue;
+
+            collectingObject = go;
+            objects.forEachNeighbor(go, pairCollector);
+        }
+        collectingObject = null;
+    }
+
+    // Only objects that move and were updated in this cycle handle their own collisions
+    private boolean handlesCollisions(GameObject object)
+    {
+        if (object.isUnmovable() || !object.requiresUpdating())
+            return false;
+
+        return updateOffscreenObjects || GameDisplay.objectWithinCameraView(object);
     }
 
     /* Perform any tasks in this method that can't be performed during the update cycle. For example
@@ -96,6 +409,27 @@ public class GameData
         for (GameObject gameObject : removeAfterUpdate)
             objects.remove(gameObject);
         removeAfterUpdate.clear();
+
+        if (levelStreamer != null)
+            levelStreamer.update(objects);
+
+        // A level change replaces every object, so it's done once the update is complete
+        if (levelTransitions.hasPendingChange())
+            levelTransitions.performPendingChange(this);
+    }
+
+    // Change the level being played once the current update is complete (see LevelTransitionManager)
+    public void changeLevelWhenSafe(int levelIndex)
+    {
+        levelTransitions.requestChange(levelIndex);
+    }
+
+    // Set by the level when it's loaded
+    public void setLevelStreamer(LevelStreamer streamer)
+    {
+        if (levelStreamer != null)
+            levelStreamer.release();
+        levelStreamer = streamer;
     }
 
     /* Thread safe methods to add or remove objects to/from the game engine. Whenever an object
@@ -118,11 +452,18 @@ public class GameData
      * issues. */
     public boolean addObjectWhenSafe(GameObject gameObject)
     {
-        return addAfterUpdate.add(gameObject);
+        //objects can be updated by several threads at once (see GameThread.PARALLEL_UPDATE)
+        synchronized (addAfterUpdate)
+        {
+            return addAfterUpdate.add(gameObject);
+        }
     }
     public boolean removeObjectWhenSafe(GameObject gameObject)
     {
-        return removeAfterUpdate.add(gameObject);
+        synchronized (removeAfterUpdate)
+        {
+            return removeAfterUpdate.add(gameObject);
+        }
     }
 
     //get all objects in the game
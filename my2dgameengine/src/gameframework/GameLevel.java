@@ -1,10 +1,14 @@
 package gameframework;
+import gameframework.display.StaticTileLayer;
 import gameframework.gamecharacters.Player;
 import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjects;
+import gameframework.resourcemanagement.ResourceManager;
+import gameframework.resourcemanagement.ResourceScope;
 
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashSet;
 
 public class GameLevel
 {
@@ -13,7 +17,10 @@ public class GameLevel
     private String background;
     private String theme;
     private Point playerStartPos;
+    private StaticTileLayer staticTiles;   //tiles of the level pre-rendered in chunks (if enabled)
     private boolean playThemeOnLoad;
+    private ResourceScope resourceScope;    //resources used by the level, see requestResources
+    private CompiledLevel compiledLevel;
 
     public GameLevel(String initName, int initNumber, String initBackground,
                      String initTheme,
@@ -52,34 +59,162 @@ public class GameLevel
         return playerStartPos;
     }
 
+    // Scope holding the resources of the level, a new one is created if the level is played again after release
+    public synchronized ResourceScope getResourceScope()
+    {
+        if (resourceScope == null || resourceScope.isReleased())
+            resourceScope = GameThread.resourceManager.createScope(name, ResourceScope.LEVEL);
+        return resourceScope;
+    }
+
+    /* The compiled version of the level (see CompiledLevel), or null if compiled levels aren't used or the
+     * level can't be compiled. Kept until the level is released. */
+    private synchronized CompiledLevel getCompiledLevel()
+    {
+        if (compiledLevel == null && (GameThread.LOAD_COMPILED_LEVELS || GameThread.STREAM_LEVEL_REGIONS))
+            compiledLevel = CompiledLevel.load(name);
+        return compiledLevel;
+    }
+
+    /* Request the resources the level needs (its manifest: the background, the theme and the resources of
+     * every kind of object in the level) in the scope of the level, they are loaded in the background. Can
+     * be called from any thread, while another level is played (see LevelTransitionManager). The resources
+     * of the objects can only be known when the level is compiled. */
+    public void requestResources()
+    {
+        ResourceManager resourceManager = GameThread.resourceManager;
+        ResourceScope previousScope = resourceManager.getThreadScope();
+        resourceManager.setThreadScope(getResourceScope());
+
+        try
+        {
+            resourceManager.loadImageResourceAsync(background, name);
+            //no audio is played without a display
+            if (!theme.isEmpty() && !GameThread.HEADLESS_MODE)
+                resourceManager.loadAudioResourceAsync(theme, name);
+
+            CompiledLevel level = getCompiledLevel();
+            if (level != null)
+            {
+                HashSet<String> requested = new HashSet<String>();
+                for (int i = 0; i < level.getObjectCount(); i++)
+                {
+                    int type = level.getType(i);
+                    String subtype = level.getSubtype(i);
+                    if (requested.add(type + " " + subtype))
+                        GameThread.gameObjectFactory.requestResources(type, subtype, name);
+                }
+            }
+        }
+        finally
+        {
+            resourceManager.setThreadScope(previousScope);
+        }
+    }
+
+    /* Free what the level keeps once it's no longer played, only its resources that aren't used by the
+     * level being played (or held by any other scope) are freed. */
+    public void release()
+    {
+        if (staticTiles != null)
+            staticTiles.release();
+        staticTiles = null;
+
+        synchronized (this)
+        {
+            if (resourceScope != null)
+                resourceScope.release();
+            compiledLevel = null;
+        }
+    }
+
     /* This method reads a text file with the information for the level and loads all
      * objects from the game into the game objects list. */
     public boolean load(GameData data) throws Exception
     {
-        LinkedList<GameObject> gameObjects = data.getObjects();
-        /* Make sure we first free all resources allocated for previous levels otherwise
-         * we might run out of memory (level background images and some audio clips can take
-         * huge amounts of memory in particular).
+        GameObjects gameObjects = data.getObjects();
+        /* Resources loaded for previous levels are not freed here, they are released when the level
+         * changes (see LevelTransitionManager) except for the ones this level also uses, and otherwise the
+         * resource manager evicts the least recently used ones once they take more memory than its budget
+         * (level background images and some audio clips can take huge amounts of memory in particular).
+         * Resources used by every level (like the HUD and the player) are not loaded again, and neither are
+         * the animations created from them (the animation templates this level doesn't use are freed once
+         * it's loaded, see AnimationTemplate.freeUnusedTemplates).
          */
-        GameThread.resourceManager.freeResources();
-
-        ArrayList<String> text = GameThread.resourceManager.loadTextResource(name + ".txt", name);
 
         //make sure to clear game objects list before loading objects for new level
         gameObjects.clear();
-
-        for (String textLine : text)
+        //the area grid covers the background of the level being loaded
+        gameObjects.fitSpatialGridToBackground();
+
+        /* Read the objects from the compiled level if possible (see CompiledLevel), which is much faster
+         * than parsing every line of the text file. */
+        CompiledLevel compiledLevel = getCompiledLevel();
+
+        /* When streaming, only the objects around the player are created now, the rest are created
+         * while the game runs (see LevelStreamer). */
+        LevelStreamer streamer = GameThread.STREAM_LEVEL_REGIONS && compiledLevel != null ?
+                new LevelStreamer(compiledLevel) : null;
+        data.setLevelStreamer(streamer);
+
+        /* Request the resources of every kind of object in the level first (unless they were already
+         * requested before the level started), so they are loaded in the background while the first objects
+         * are created (or before their region is streamed in). Only the manifest of the level is held by the
+         * scope of the level: these resources and the images used by the objects the level starts with (their
+         * animations can't be known in advance). Spritesheets are never held, they are only needed to create
+         * the animation templates (see Spritesheet.loadImage). Anything else requested while the level is
+         * played is left to the cache, and evicted when the cache is over its memory budget. */
+        requestResources();
+
+        ResourceManager resourceManager = GameThread.resourceManager;
+        ResourceScope previousScope = resourceManager.getThreadScope();
+        resourceManager.setThreadScope(getResourceScope());
+        try
+        {
+            if (streamer != null)
+                streamer.loadAround(gameObjects, playerStartPos.x, playerStartPos.y);
+            else if (compiledLevel != null)
+            {
+                for (int i = 0; i < compiledLevel.getObjectCount(); i++)
+                {
+                    GameObject gameObject = GameThread.gameObjectFactory.createGameObject(compiledLevel.getX(i),
+                            compiledLevel.getY(i), compiledLevel.getType(i), compiledLevel.getSubtype(i),
+                            compiledLevel.getWidth(i), compiledLevel.getHeight(i));
+                    //ignore any objects that fail to load
+                    if (gameObject == null )
+                        continue;
+                    gameObjects.add(gameObject);
+                }
+            }
+            else
+            {
+                ArrayList<String> text = GameThread.resourceManager.loadTextResource(name + ".txt", name);
+
+                for (String textLine : text)
+                {
+                    //If a line in the file is commented then ignore it
+                    if ( textLine.startsWith("//"))
+                        continue;
+                    GameObject gameObject = GameThread.gameObjectFactory.createGameObject(textLine);
+                    //ignore any objects that fail to load
+                    if (gameObject == null )
+                        continue;
+                    gameObjects.add(gameObject);
+                }
+            }
+        }
+        finally
         {
-            //If a line in the file is commented then ignore it
-            if ( textLine.startsWith("//"))
-                continue;
-            GameObject gameObject = GameThread.gameObjectFactory.createGameObject(textLine);
-            //ignore any objects that fail to load
-            if (gameObject == null )
-                continue;
-            gameObjects.add(gameObject);
+            resourceManager.setThreadScope(previousScope);
         }
 
+        /* Pre-render all static tiles of the level (which never move or change) into chunk images,
+         * the display draws those chunks instead of drawing each tile every frame. */
+        if (staticTiles != null)
+            staticTiles.release();
+        staticTiles = GameThread.BAKE_STATIC_TILES && !GameThread.HEADLESS_MODE && streamer == null ?
+                StaticTileLayer.bake(gameObjects) : null;
+
         //set player starting position and add player to level
         Player player = Player.getActivePlayer();
         if (player != null)
@@ -98,6 +233,11 @@ public class GameLevel
         return true;
     }
 
+    public StaticTileLayer getStaticTiles()
+    {
+        return staticTiles;
+    }
+
     public boolean playThemeOnLoad()
     {
         return playThemeOnLoad;
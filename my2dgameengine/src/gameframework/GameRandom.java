@@ -0,0 +1,45 @@
+package gameframework;
+
+import java.util.Random;
+
+/*
+ * Source of all random numbers used by gameplay code. Every random generator is derived from a
+ * single seed, so a game started with the same seed (and the same input, see InputRecording) makes
+ * the same random decisions. Objects that keep their own generator get it from createRandom, the
+ * generators are seeded in the order the objects are created, which is always the same in a replay.
+ * Other code can use nextDouble/nextInt directly in place of Math.random.
+ */
+public class GameRandom
+{
+    private static long seed = System.nanoTime();
+    private static Random random = new Random(seed);
+
+    // Restart the random sequence with the given seed, must be done before the level is loaded
+    public static synchronized void setSeed(long newSeed)
+    {
+        seed = newSeed;
+        random = new Random(seed);
+    }
+
+    public static synchronized long getSeed()
+    {
+        return seed;
+    }
+
+    // Returns a new random generator for an object, seeded from the game seed
+    public static synchronized Random createRandom()
+    {
+        return new Random(random.nextLong());
+    }
+
+    // Same as Math.random
+    public static synchronized double nextDouble()
+    {
+        return random.nextDouble();
+    }
+
+    public static synchronized int nextInt(int bound)
+    {
+        return random.nextInt(bound);
+    }
+}
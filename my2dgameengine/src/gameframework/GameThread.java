@@ -4,9 +4,13 @@ import gameframework.display.GameDisplay;
 import gameframework.gamecharacters.Player;
 import gameframework.gameobjects.GameObjectFactory;
 import gameframework.gameobjects.GameObjects;
+import gameframework.inputhandlers.InputQueue;
 import gameframework.inputhandlers.KeyboardHandler;
+import gameframework.metrics.GameMetrics;
+import gameframework.metrics.Histogram;
 import gameframework.resourcemanagement.ResourceManager;
 import gameframework.sound.GameAudio;
+import gameframework.sound.NullGameAudio;
 
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -35,9 +39,11 @@ public class GameThread
     public static GameAudio gameAudio;
     public static ResourceManager resourceManager = new ResourceManager();
     public static GameObjectFactory gameObjectFactory;
+    public static final InputQueue inputQueue = new InputQueue();
     public static volatile boolean displayFrameUpdateRate;
     public static volatile boolean enableSoundEffects;
     private boolean gameOver;
+    private FramePacer framePacer;
 
     // Information for levels in the game
     private static final ArrayList<GameLevel> levels = new ArrayList<GameLevel>();
@@ -59,8 +65,112 @@ public class GameThread
     public static int AREA_GRID_COLS = 0;
     public static int AREA_GRID_ROWS = 0;
 
+    /* Determines how the engine finds pairs of objects that might be colliding (collision broadphase).
+     * With BROADPHASE_GRID (default) every moving object checks its neighbors in the area grid right
+     * after it moves. With BROADPHASE_SWEEP_AND_PRUNE the engine keeps the collision bounds of all
+     * objects sorted along the x axis and finds every overlapping pair once per update cycle, after
+     * all objects have been updated, which can perform better on wide, mostly horizontal levels.
+     * Note that with sweep and prune collisions are handled after the update of all objects, so any
+     * collision side effects are only seen by the objects in their next update. */
+    public static final int BROADPHASE_GRID = 0;
+    public static final int BROADPHASE_SWEEP_AND_PRUNE = 1;
+    public static int COLLISION_BROADPHASE = BROADPHASE_GRID;
+
+    /* If true, collisions are handled after updating all objects (as with sweep and prune) in three stages:
+     * the candidate pairs are collected from the broadphase, the collision tests of all pairs (which only
+     * read the objects) run on a pool of PARALLEL_UPDATE_THREADS threads, and the pairs found to collide
+     * are handled one at a time in the order they were collected (see NarrowPhase). Collision handlers
+     * always run on the game thread and the results don't depend on the threads, so recorded input is
+     * still replayed deterministically. */
+    public static boolean PARALLEL_NARROWPHASE = false;
+
+    /* If true, when a level is loaded all tiles (inanimate objects that never move or update) are drawn
+     * once into large chunk images, and the display draws the chunks within the camera view instead of
+     * drawing every tile on every frame. */
+    public static boolean BAKE_STATIC_TILES = true;
+
     /********/
 
+    /* Headless mode runs the game simulation without creating the game window and without audio, so
+     * it can run on machines without a display (like build servers). Nothing is rendered, only the
+     * camera keeps following the player. It is mostly useful to measure how fast the engine can update
+     * the game, which is why in this mode the game can run faster than real time: updates run at
+     * UPDATES_PER_SECOND times the speed multiplier, or as fast as possible if it is set to UNTHROTTLED.
+     * If the machine can't keep up with the multiplier, no more than MAX_CATCH_UP_UPDATES updates are
+     * performed in a row and the rest of the time is dropped (see getDroppedTimeNanos). Headless runs can also be limited to a number of updates (0 means no limit). These have to be set
+     * before creating the game thread. */
+    public static boolean HEADLESS_MODE = false;
+    public static final int UNTHROTTLED = 0;
+    public static int SIMULATION_SPEED_MULTIPLIER = 1;
+    public static long MAX_UPDATES = 0;
+
+    /* If true, the engine measures how long each phase of the updates and frames takes (input, physics,
+     * collision, drawing, etc) and counts the work done on each update, see GameMetrics. The metrics are
+     * published as MBeans when the game thread is created so they can be watched with JConsole, and a
+     * summary is printed at the end of headless runs. Measuring has a small cost, so it is off by default. */
+    public static boolean ENABLE_METRICS = false;
+
+    /* Determines how the game loop schedules updates and frames. With LOOP_CATCH_UP (default) the game
+     * renders once after every batch of updates, and performs as many updates as needed to catch up when
+     * it falls behind. With LOOP_FIXED_TIMESTEP the game still updates UPDATES_PER_SECOND times per second,
+     * but renders independently at MAX_FRAMES_PER_SECOND (or the refresh rate of the display if 0),
+     * drawing every object blended between its previous and current position (see getInterpolationAlpha),
+     * so motion stays smooth when updates and frames don't line up. In this mode no more than
+     * MAX_CATCH_UP_UPDATES updates are performed before rendering again, if the game falls further behind
+     * (after a long garbage collection or level load) the rest of the time is dropped instead of trying to
+     * catch up, see getDroppedTimeNanos. This mode has no effect in headless mode. */
+    public static final int LOOP_CATCH_UP = 0;
+    public static final int LOOP_FIXED_TIMESTEP = 1;
+    public static int GAME_LOOP_MODE = LOOP_CATCH_UP;
+    public static int MAX_CATCH_UP_UPDATES = 5;
+    public static int MAX_FRAMES_PER_SECOND = 0;
+
+    // fraction of an update passed since the last update when rendering (1 = draw the current positions)
+    private static volatile double interpolationAlpha = 1.0;
+    // time the fixed timestep loop couldn't catch up with and dropped
+    private static volatile long droppedTimeNanos = 0;
+
+    /* The game loop waits for the next update or frame using a frame pacer (see FramePacer), which spends
+     * the last FRAME_PACER_SPIN_NANOS nanoseconds of every wait spinning instead of sleeping to be on
+     * time. Higher values give more regular frames but use more CPU, 0 never spins. */
+    public static long FRAME_PACER_SPIN_NANOS = 1000000;
+
+    /* If true, frames are drawn by a separate render thread, so drawing a frame and updating the next one
+     * can run at the same time on different cores. Instead of drawing, the game thread captures what has to
+     * be drawn (the current animation frame, position and z of every object within camera view, and the
+     * state of the HUD, see HUDPanel.captureState) into a draw list at the end of each update, and the
+     * render thread always draws the latest list. Object borders (drawBoundsRect/drawSpriteBorders) are not
+     * drawn in this mode. Must be set before the game thread is created. */
+    public static boolean PIPELINED_RENDERING = false;
+
+    /* If true, levels are loaded from their compiled binary version (see CompiledLevel and LevelCompiler)
+     * instead of parsing the text file line by line. Levels are compiled into the cache folder the first
+     * time they are loaded, unless a compiled level is packed with the level resources. */
+    public static boolean LOAD_COMPILED_LEVELS = true;
+
+    /* If true, only the objects of the regions of the level near the camera are kept in the game (see
+     * LevelStreamer), so large levels don't take more memory or update time than small ones. The objects of a
+     * region are created in the background once the region is within STREAMING_PRELOAD_DISTANCE pixels of the
+     * camera view, and removed once it's farther than STREAMING_UNLOAD_DISTANCE pixels (objects removed during
+     * the game stay removed). Requires compiled levels, and static tiles are not baked in this mode. Objects
+     * are created at different times depending on the background thread, so recorded input can only be
+     * replayed deterministically with this disabled. */
+    public static boolean STREAM_LEVEL_REGIONS = false;
+    public static int STREAMING_PRELOAD_DISTANCE = 1024;
+    public static int STREAMING_UNLOAD_DISTANCE = 2048;
+
+    /* If true, objects in different regions of the area grid (see GameObjects) are updated at the same time
+     * by a pool of PARALLEL_UPDATE_THREADS threads (0 uses one per processor). Objects closer than
+     * PARALLEL_UPDATE_MARGIN pixels to the border of their region, objects that can't be updated in parallel
+     * (see GameObject.canUpdateInParallel) and every object sharing a region with one of those are updated
+     * afterwards one at a time, as usual. Only takes effect when the level has a background (and so a grid)
+     * with more than one region. The order of the updates changes with the scheduling of the threads, so
+     * recorded input can only be replayed deterministically with this disabled. The same pool of threads
+     * is used by the parallel narrowphase. */
+    public static boolean PARALLEL_UPDATE = false;
+    public static int PARALLEL_UPDATE_THREADS = 0;
+    public static int PARALLEL_UPDATE_MARGIN = 64;
+
     /* The GameThread needs to receive a specific game object factory in order to be able to create
      * game specific objects when loading levels, if not provided (null) then it will create a general
      * engine object factory that only handles general types supported by the engine (specified in the
@@ -78,13 +188,17 @@ public class GameThread
 
         //initialize resource loader/manager
         resourceManager = new ResourceManager();
-        //initialize audio manager
-        gameAudio = new GameAudio();
+        //initialize audio manager (no sound at all in headless mode)
+        gameAudio = HEADLESS_MODE ? new NullGameAudio() : new GameAudio();
 
         //initialize data and display window
         initializeGameDisplay();
         data = new GameData();
-        display.setData(data);
+        if (display != null)
+            display.setData(data);
+
+        if (ENABLE_METRICS)
+            GameMetrics.registerMBeans();
 
         curLevelNumber = 0;
         displayFrameUpdateRate = false;
@@ -94,7 +208,15 @@ public class GameThread
     private boolean initializeGameDisplay()
     {
         boolean success = true;
-        display = new GameDisplay(data);
+
+        if (HEADLESS_MODE)
+        {
+            //no window, but the level background is still needed for the camera and area grid
+            display = null;
+            GameDisplay.loadLevelBackgroundImage();
+        }
+        else
+            display = new GameDisplay(data);
         return success;
     }
 
@@ -105,15 +227,46 @@ public class GameThread
 
     public static GameLevel getCurrentLevel()
     {
-        GameLevel curLevel = null;
-        if (curLevelNumber >= 0 && curLevelNumber < levels.size())
-            curLevel = levels.get(curLevelNumber);
-        return curLevel;
+        return getLevel(curLevelNumber);
+    }
+
+    // Returns the level at the given position in the list of levels, or null if there isn't one
+    public static GameLevel getLevel(int levelIndex)
+    {
+        GameLevel level = null;
+        if (levelIndex >= 0 && levelIndex < levels.size())
+            level = levels.get(levelIndex);
+        return level;
+    }
+
+    public static int getCurrentLevelIndex()
+    {
+        return curLevelNumber;
+    }
+
+    // Only changed by the level transitions, between updates (see LevelTransitionManager)
+    static void setCurrentLevelIndex(int levelIndex)
+    {
+        curLevelNumber = levelIndex;
+    }
+
+    /* Change the level being played, the change happens after the current update (thread safe method).
+     * The resources of the level after the one being played are always loaded in advance, so moving on
+     * to the next level doesn't stall the game. */
+    public static void changeLevel(int levelIndex)
+    {
+        data.changeLevelWhenSafe(levelIndex);
+    }
+
+    public static void nextLevel()
+    {
+        changeLevel(curLevelNumber + 1);
     }
 
     public void setGameTitle(String title)
     {
-        display.setTitle(title);
+        if (display != null)
+            display.setTitle(title);
     }
 
     public boolean isGameOver() { return gameOver;}
@@ -152,10 +305,29 @@ public class GameThread
 
     public static void changeKeyboardHandler(KeyboardHandler newKeyboardHandler)
     {
-        if (newKeyboardHandler != null)
+        if (newKeyboardHandler == null)
+            return;
+
+        //the handler performs the queued actions even if there is no display (when replaying a game)
+        inputQueue.setKeyboardHandler(newKeyboardHandler);
+        if (display != null)
             display.changeKeyboardHandler(newKeyboardHandler);
     }
 
+    /* Fraction of the update interval that has passed since the last update at the time of rendering
+     * (between 0 and 1), objects are drawn this far between their previous and current positions. It
+     * is always 1 unless the game loop mode is LOOP_FIXED_TIMESTEP. */
+    public static double getInterpolationAlpha()
+    {
+        return interpolationAlpha;
+    }
+
+    // Total time dropped by the fixed timestep loop when it fell too far behind
+    public static long getDroppedTimeNanos()
+    {
+        return droppedTimeNanos;
+    }
+
     // Toggle display frame/update rate flag in a thread-safe manner
     public static synchronized void toggleDisplayFrameUpdateRate()
     {
@@ -173,12 +345,17 @@ public class GameThread
     public void update(int tickNumber)
     {
         data.update(tickNumber);
+        /* The camera follows the player after every update (not only when a frame is rendered), objects
+         * within camera view are updated more often, so the game must not depend on how many frames are
+         * rendered (catch-up updates, headless mode, replays). */
+        GameDisplay.updateCamera();
     }
 
     // This method triggers the rendering of every object in the game
     public void render()
     {
-        display.render();
+        if (display != null)
+            display.render();
     }
 
     private void gameLoop() throws Exception
@@ -191,7 +368,17 @@ public class GameThread
         long updateInterval = NANOSECONDS_PER_SECOND / UPDATES_PER_SECOND;
         boolean refresh = false;
 
-        while (!isGameOver())
+        //In headless mode the simulation can run faster than real time
+        if (HEADLESS_MODE)
+        {
+            if (SIMULATION_SPEED_MULTIPLIER == UNTHROTTLED)
+                updateInterval = 0;
+            else
+                updateInterval /= Math.max(1, SIMULATION_SPEED_MULTIPLIER);
+        }
+        long totalUpdates = 0, runStartTime = startTime;
+
+        while (!isGameOver() && (MAX_UPDATES == 0 || totalUpdates < MAX_UPDATES))
         {
             // Measure time passed since last loop iteration
             curTime = System.nanoTime();
@@ -203,51 +390,162 @@ public class GameThread
                 // Ahead of schedule (not enough time has passed for next update)
                 // So we don't need to hog CPU resources until really needed
                 long remaining = updateInterval - elapsedTime;
-                try
-                {
-                    //sleep until we really need to update
-                    Thread.sleep(remaining / 1000000);
-                }
-                catch (InterruptedException ie)
-                {
-
-                }
+                //wait until we really need to update
+                framePacer.waitUntil(curTime + remaining);
             }
             else
             {
                 // On schedule or behind schedule
-                while (elapsedTime >= updateInterval)
+                int catchUpUpdates = 0;
+                while (elapsedTime >= updateInterval && (MAX_UPDATES == 0 || totalUpdates < MAX_UPDATES))
                 {
                     // Perform as many updates as needed if we’ve fallen behind
-                    update(updates);
+                    /* The tick number depends only on how many updates were performed (not on
+                     * when they were performed), so the game can be reproduced (see GameClock). */
+                    update((int)(totalUpdates % UPDATES_PER_SECOND));
                     updates++;
+                    totalUpdates++;
+                    catchUpUpdates++;
                     refresh = true;
                     elapsedTime -= updateInterval;
+
+                    //when running unthrottled just do one update per loop iteration
+                    if (updateInterval == 0)
+                        break;
+
+                    /* A headless game asked to run faster than the machine can update would never
+                     * catch up, like in the fixed timestep loop the time left is dropped instead. */
+                    if (HEADLESS_MODE && MAX_CATCH_UP_UPDATES > 0 && catchUpUpdates >= MAX_CATCH_UP_UPDATES)
+                    {
+                        if (elapsedTime >= updateInterval)
+                        {
+                            long dropped = elapsedTime - elapsedTime % updateInterval;
+                            elapsedTime -= dropped;
+                            droppedTimeNanos += dropped;
+                        }
+                        break;
+                    }
                 }
 
-                // Only render once after at least one update occurred
-                if (refresh)
+                // Only render once after at least one update occurred (there is nothing to render headless)
+                if (refresh && !HEADLESS_MODE)
                 {
                     render();
                     frames++;
-                    refresh = false;
                 }
+                refresh = false;
             }
 
             //check when its been a full second and display update and frame rates (how many updates & frames occurred in that second)
             if (curTime - startTime >= NANOSECONDS_PER_SECOND)
             {
                 //A full second has passed
-                System.out.println("Updates:" + updates + " Frames:" + frames);
-                if (displayFrameUpdateRate)
-                    display.setMessage("Updates:" + updates + " Frames:" + frames);
-                else if (display.getMessage().startsWith("Updates:"))
-                    display.setMessage("");
+                showUpdateFrameRates(HEADLESS_MODE ? "Updates:" + updates : "Updates:" + updates + " Frames:" + frames);
+                updates = frames = 0;
+                startTime = System.nanoTime();
+            }
+
+        }
+
+        if (HEADLESS_MODE)
+        {
+            double seconds = (System.nanoTime() - runStartTime) / (double)NANOSECONDS_PER_SECOND;
+            System.out.println("Headless run: " + totalUpdates + " updates in " +
+                    String.format("%.2f", seconds) + "s (" +
+                    String.format("%.1f", totalUpdates / Math.max(seconds, 1e-9)) + " updates per second)");
+            if (ENABLE_METRICS)
+                GameMetrics.printSummary();
+        }
+    }
 
+    /* Game loop used in the LOOP_FIXED_TIMESTEP mode, updates run at a fixed rate and frames are rendered
+     * at their own rate in between, interpolating the positions of the objects. */
+    private void fixedTimestepLoop() throws Exception
+    {
+        final long NANOSECONDS_PER_SECOND = 1000000000;
+        final long updateInterval = NANOSECONDS_PER_SECOND / UPDATES_PER_SECOND;
+        int frameRate = MAX_FRAMES_PER_SECOND > 0 ? MAX_FRAMES_PER_SECOND : GameDisplay.getDisplayRefreshRate();
+        final long frameInterval = NANOSECONDS_PER_SECOND / Math.max(1, frameRate);
+
+        long startTime = System.nanoTime();           // time when the current second started
+        long lastTime = startTime, nextFrameTime = startTime;
+        long accumulatedTime = 0;                     // time passed not yet simulated by updates
+        long totalUpdates = 0, droppedThisSecond = 0;
+        int frames = 0, updates = 0;                  // counters for FPS & UPS
+
+        while (!isGameOver() && (MAX_UPDATES == 0 || totalUpdates < MAX_UPDATES))
+        {
+            long curTime = System.nanoTime();
+            accumulatedTime += curTime - lastTime;
+            lastTime = curTime;
+
+            // Catch up with the time passed, but never more than a few updates before rendering again
+            int catchUpUpdates = 0;
+            while (accumulatedTime >= updateInterval &&
+                    (MAX_CATCH_UP_UPDATES <= 0 || catchUpUpdates < MAX_CATCH_UP_UPDATES))
+            {
+                update((int)(totalUpdates % UPDATES_PER_SECOND));
+                updates++;
+                totalUpdates++;
+                catchUpUpdates++;
+                accumulatedTime -= updateInterval;
+            }
+
+            // Still behind after the allowed updates, drop whole updates and keep the fraction left
+            if (accumulatedTime >= updateInterval)
+            {
+                long dropped = accumulatedTime - accumulatedTime % updateInterval;
+                accumulatedTime -= dropped;
+                droppedTimeNanos += dropped;
+                droppedThisSecond += dropped;
+            }
+
+            if (curTime >= nextFrameTime)
+            {
+                interpolationAlpha = (double)accumulatedTime / updateInterval;
+                render();
+                frames++;
+
+                // if rendering fell behind, schedule the next frame from now instead of rushing frames
+                nextFrameTime += frameInterval;
+                if (nextFrameTime < curTime)
+                    nextFrameTime = curTime + frameInterval;
+            }
+
+            if (curTime - startTime >= NANOSECONDS_PER_SECOND)
+            {
+                showUpdateFrameRates("Updates:" + updates + " Frames:" + frames +
+                        (droppedThisSecond > 0 ? " Dropped:" + droppedThisSecond / 1000000 + "ms" : ""));
                 updates = frames = 0;
+                droppedThisSecond = 0;
                 startTime = System.nanoTime();
             }
 
+            // Sleep until the next update or frame is due, whichever comes first
+            long nextUpdateTime = lastTime + updateInterval - accumulatedTime;
+            framePacer.waitUntil(Math.min(nextUpdateTime, nextFrameTime));
+        }
+    }
+
+    /* Print the update and frame rates of the last second (and how late the frame pacer woke up during
+     * that second), and show them in the display if requested */
+    private void showUpdateFrameRates(String rates)
+    {
+        Histogram lateness = framePacer.getLateness();
+        if (lateness.getCount() > 0)
+        {
+            rates += String.format(" Late p50:%.2fms p99:%.2fms max:%.2fms",
+                    lateness.getPercentile(0.50) / 1e6, lateness.getPercentile(0.99) / 1e6, lateness.getMax() / 1e6);
+            lateness.reset();
+        }
+
+        System.out.println(rates);
+        if (display != null)
+        {
+            if (displayFrameUpdateRate)
+                display.setMessage(rates);
+            else if (display.getMessage().startsWith("Updates:"))
+                display.setMessage("");
         }
     }
 
@@ -256,7 +554,11 @@ public class GameThread
     {
         try
         {
-            gameLoop();
+            framePacer = new FramePacer(FRAME_PACER_SPIN_NANOS);
+            if (GAME_LOOP_MODE == LOOP_FIXED_TIMESTEP && !HEADLESS_MODE)
+                fixedTimestepLoop();
+            else
+                gameLoop();
         }
         catch (Exception e)
         {
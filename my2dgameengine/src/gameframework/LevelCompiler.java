@@ -0,0 +1,200 @@
+package gameframework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * Compiles level files from the text format (one "< x y type subtype width height >" line per object,
+ * see GameObjectFactory) into the binary format read by CompiledLevel. Levels are compiled automatically
+ * into the cache folder the first time they are loaded, this class can also be run on its own to compile
+ * level files before packing them with the game resources (the compiled file is written next to the
+ * text file, with the same name and the CompiledLevel.FILE_EXTENSION extension):
+ *
+ *     java gameframework.LevelCompiler resources/levels/level1/level1.txt ...
+ *
+ * File layout (big endian):
+ *   header         magic, version, hash of the text file, region size, origin x and y of the region
+ *                  grid, region columns and rows, number of subtypes, number of objects
+ *   string table   every distinct subtype (UTF-8, preceded by its length as a short)
+ *   records        one fixed size record per object in the same order as in the text file: x, y
+ *                  (ints), type, subtype index (shorts), width, height (ints)
+ *   region index   the objects in each square region of the level (the region containing the top
+ *                  left corner of the object), as the index of the first entry of every region
+ *                  (plus one after the last region) followed by the entries (object indexes)
+ */
+public class LevelCompiler
+{
+    static final int FILE_MAGIC = 0x4C564C31;   //"LVL1"
+    static final int FILE_VERSION = 1;
+    static final int HEADER_SIZE = 44;
+    static final int RECORD_SIZE = 20;
+
+    // size of the regions of the region index, in pixels
+    public static int REGION_SIZE = 1024;
+
+    public static void main(String[] args)
+    {
+        if (args.length == 0)
+            System.out.println("Usage: LevelCompiler <level text file>...");
+
+        for (String fileName : args)
+        {
+            Path textPath = Paths.get(fileName);
+            String name = textPath.getFileName().toString();
+            int extensionStart = name.lastIndexOf('.');
+            Path compiledPath = textPath.resolveSibling((extensionStart > 0 ? name.substring(0, extensionStart) : name) +
+                    CompiledLevel.FILE_EXTENSION);
+
+            try
+            {
+                byte[] text = Files.readAllBytes(textPath);
+                byte[] compiled = compile(ByteBuffer.wrap(text));
+                Files.write(compiledPath, compiled);
+                System.out.println("Compiled " + textPath + " into " + compiledPath + " (" + text.length +
+                        " to " + compiled.length + " bytes)");
+            }
+            catch (IOException e)
+            {
+                System.out.println("Unable to compile " + textPath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /* Hash of the contents of a level text file (FNV-1a), stored in the compiled level so a compiled
+     * level is only used while it matches its text file. */
+    static long computeSourceHash(ByteBuffer text)
+    {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = text.position(); i < text.limit(); i++)
+            hash = (hash ^ (text.get(i) & 0xff)) * 0x100000001b3L;
+        return hash;
+    }
+
+    // Compiles the contents of a level text file, throws an exception on the first invalid line
+    public static byte[] compile(ByteBuffer text) throws IOException
+    {
+        String[] lines = StandardCharsets.UTF_8.decode(text.duplicate()).toString().split("\r?\n");
+
+        int count = 0;
+        int[] xs = new int[lines.length], ys = new int[lines.length];
+        int[] types = new int[lines.length], subtypes = new int[lines.length];
+        int[] widths = new int[lines.length], heights = new int[lines.length];
+        ArrayList<String> subtypeNames = new ArrayList<String>();
+        HashMap<String, Integer> subtypeIndexes = new HashMap<String, Integer>();
+
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++)
+        {
+            String line = lines[lineNumber].trim();
+
+            //commented and empty lines are ignored
+            if (line.startsWith("//") || line.isEmpty())
+                continue;
+
+            // Same fields read by the factory from each line (the first token is the starting '<')
+            String[] tokens = line.split("\\s+");
+            if (tokens.length < 7)
+                throw new IOException("Missing object attributes in line " + (lineNumber + 1));
+
+            try
+            {
+                xs[count] = Integer.parseInt(tokens[1]);
+                ys[count] = Integer.parseInt(tokens[2]);
+                types[count] = Integer.parseInt(tokens[3]);
+                widths[count] = Integer.parseInt(tokens[5]);
+                heights[count] = Integer.parseInt(tokens[6]);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Invalid number in line " + (lineNumber + 1));
+            }
+
+            Integer subtype = subtypeIndexes.get(tokens[4]);
+            if (subtype == null)
+            {
+                subtype = subtypeNames.size();
+                subtypeIndexes.put(tokens[4], subtype);
+                subtypeNames.add(tokens[4]);
+            }
+            subtypes[count] = subtype;
+
+            if (types[count] > Short.MAX_VALUE || subtype > Short.MAX_VALUE)
+                throw new IOException("Type or subtype out of range in line " + (lineNumber + 1));
+            count++;
+        }
+
+        // Grid of regions covering the top left corners of all objects
+        int originX = 0, originY = 0, maxX = 0, maxY = 0;
+        for (int i = 0; i < count; i++)
+        {
+            originX = i == 0 ? xs[i] : Math.min(originX, xs[i]);
+            originY = i == 0 ? ys[i] : Math.min(originY, ys[i]);
+            maxX = i == 0 ? xs[i] : Math.max(maxX, xs[i]);
+            maxY = i == 0 ? ys[i] : Math.max(maxY, ys[i]);
+        }
+        int regionCols = (maxX - originX) / REGION_SIZE + 1;
+        int regionRows = (maxY - originY) / REGION_SIZE + 1;
+
+        int[] regionStarts = new int[regionCols * regionRows + 1];
+        int[] objectRegions = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            objectRegions[i] = (ys[i] - originY) / REGION_SIZE * regionCols + (xs[i] - originX) / REGION_SIZE;
+            regionStarts[objectRegions[i] + 1]++;
+        }
+        for (int region = 0; region < regionCols * regionRows; region++)
+            regionStarts[region + 1] += regionStarts[region];
+
+        int[] regionEntries = new int[count];
+        int[] nextEntry = regionStarts.clone();
+        for (int i = 0; i < count; i++)
+            regionEntries[nextEntry[objectRegions[i]]++] = i;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + count * (RECORD_SIZE + 4));
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeLong(computeSourceHash(text));
+        out.writeInt(REGION_SIZE);
+        out.writeInt(originX);
+        out.writeInt(originY);
+        out.writeInt(regionCols);
+        out.writeInt(regionRows);
+        out.writeInt(subtypeNames.size());
+        out.writeInt(count);
+
+        for (String subtypeName : subtypeNames)
+        {
+            byte[] name = subtypeName.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            out.writeInt(xs[i]);
+            out.writeInt(ys[i]);
+            out.writeShort(types[i]);
+            out.writeShort(subtypes[i]);
+            out.writeInt(widths[i]);
+            out.writeInt(heights[i]);
+        }
+
+        for (int regionStart : regionStarts)
+            out.writeInt(regionStart);
+        for (int entry : regionEntries)
+            out.writeInt(entry);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,323 @@
+package gameframework;
+
+import gameframework.display.GameDisplay;
+import gameframework.gamecharacters.GameCharacter;
+import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjects;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Keeps only the objects of the level that are near the camera in the game (see
+ * GameThread.STREAM_LEVEL_REGIONS), using the regions of a compiled level (see CompiledLevel). The objects
+ * of a region are created by a background thread as soon as the region gets within preload distance of the
+ * camera view, and added to the game once they are ready. When a region gets farther than the unload
+ * distance its objects are removed from the game. If the camera reaches a region before its objects are
+ * ready, the game waits for them, so objects never pop up within view.
+ *
+ * The state that matters of every object of the level is kept when its region is unloaded, so the level
+ * looks the same when the region is loaded again: objects that were removed from the game (like dead
+ * enemies and collected coins) are not created again, and objects that moved or were hurt come back where
+ * they were with the health they had. Objects belong to the region where they are when their region is
+ * unloaded, if that region is still loaded (an enemy that walked into the next region stays there), and
+ * come back when the region they were created in is loaded again. Objects added during the game (like
+ * projectiles) don't belong to any region and are never removed by the streamer.
+ */
+public class LevelStreamer
+{
+    private static final int UNLOADED = 0;
+    private static final int LOADING = 1;
+    private static final int LOADED = 2;
+
+    // Regions this close to the camera view must be loaded, since their largest objects can reach into view
+    private static final int VIEW_MARGIN = 256;
+
+    private static ExecutorService loaderThread;
+
+    private final CompiledLevel level;
+    private final int[] regionStates;
+    private final ArrayList<Future<GameObject[]>> pendingObjects;
+    private final int[][] pendingRecords;
+    // objects of the level (indexes in the compiled level) currently in the game, in each region
+    private final ArrayList<ArrayList<Integer>> regionRecords;
+    private final ArrayList<Integer> activeRegions = new ArrayList<Integer>();
+
+    // state of every object of the level, by index in the compiled level
+    private final GameObject[] liveObjects;
+    private final BitSet removedRecords = new BitSet();
+    private final BitSet savedRecords = new BitSet();
+    private final int[] savedX;
+    private final int[] savedY;
+    private final int[] savedHealth;
+
+    public LevelStreamer(CompiledLevel level)
+    {
+        this.level = level;
+        int regionCount = level.getRegionCount();
+
+        regionStates = new int[regionCount];
+        pendingObjects = new ArrayList<Future<GameObject[]>>(regionCount);
+        pendingRecords = new int[regionCount][];
+        regionRecords = new ArrayList<ArrayList<Integer>>(regionCount);
+        for (int i = 0; i < regionCount; i++)
+        {
+            pendingObjects.add(null);
+            regionRecords.add(new ArrayList<Integer>());
+        }
+
+        liveObjects = new GameObject[level.getObjectCount()];
+        savedX = new int[level.getObjectCount()];
+        savedY = new int[level.getObjectCount()];
+        savedHealth = new int[level.getObjectCount()];
+    }
+
+    private static synchronized ExecutorService getLoaderThread()
+    {
+        if (loaderThread == null)
+        {
+            loaderThread = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "Level streaming thread");
+                    //the game ends when the game thread ends
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loaderThread;
+    }
+
+    /* Load the regions around a position right away (used when the level is loaded, before the camera
+     * follows the player). */
+    public void loadAround(GameObjects objects, int centerX, int centerY)
+    {
+        Dimension display = GameDisplay.getDisplayDimension();
+        update(objects, new Rectangle(centerX - display.width / 2, centerY - display.height / 2,
+                display.width, display.height));
+    }
+
+    // Called once per update, after all objects were updated
+    public void update(GameObjects objects)
+    {
+        update(objects, GameDisplay.getCameraBounds());
+    }
+
+    private void update(GameObjects objects, Rectangle view)
+    {
+        Rectangle required = grow(view, VIEW_MARGIN);
+        Rectangle preload = grow(view, GameThread.STREAMING_PRELOAD_DISTANCE);
+        Rectangle keep = grow(view, Math.max(GameThread.STREAMING_UNLOAD_DISTANCE, GameThread.STREAMING_PRELOAD_DISTANCE));
+
+        // Unload the regions left behind first, so their objects can move to the regions still loaded
+        for (int i = activeRegions.size() - 1; i >= 0; i--)
+        {
+            int region = activeRegions.get(i);
+            if (!regionIntersects(region, keep))
+            {
+                activeRegions.remove(i);
+                if (regionStates[region] == LOADED)
+                    unloadRegion(region, objects);
+                else
+                    cancelLoad(region);
+            }
+        }
+
+        // Regions within preload distance (the level might not cover the whole area)
+        int first = level.getRegion(preload.x, preload.y);
+        int last = level.getRegion(preload.x + preload.width, preload.y + preload.height);
+        int cols = level.getRegionCols();
+
+        for (int row = first / cols; row <= last / cols; row++)
+        {
+            for (int col = first % cols; col <= last % cols; col++)
+            {
+                int region = row * cols + col;
+                if (regionStates[region] == LOADED || !regionIntersects(region, preload))
+                    continue;
+
+                if (regionStates[region] == UNLOADED)
+                {
+                    requestLoad(region);
+                    activeRegions.add(region);
+                }
+
+                //add the objects once they are ready, or wait for them if the region is about to be seen
+                if (pendingObjects.get(region).isDone() || regionIntersects(region, required))
+                    finishLoad(region, objects);
+            }
+        }
+    }
+
+    private static Rectangle grow(Rectangle rect, int distance)
+    {
+        return new Rectangle(rect.x - distance, rect.y - distance, rect.width + distance * 2,
+                rect.height + distance * 2);
+    }
+
+    private boolean regionIntersects(int region, Rectangle area)
+    {
+        int x = level.getRegionX(region), y = level.getRegionY(region), size = level.getRegionSize();
+        return x < area.x + area.width && x + size > area.x && y < area.y + area.height && y + size > area.y;
+    }
+
+    // Start creating the objects of a region in the background
+    private void requestLoad(int region)
+    {
+        int count = 0;
+        final int[] records = new int[level.getRegionObjectCount(region)];
+
+        for (int i = 0; i < records.length; i++)
+        {
+            int record = level.getRegionObject(region, i);
+            if (!removedRecords.get(record) && liveObjects[record] == null)
+                records[count++] = record;
+        }
+
+        final int recordCount = count;
+        pendingRecords[region] = records;
+        pendingObjects.set(region, getLoaderThread().submit(new Callable<GameObject[]>()
+        {
+            @Override
+            public GameObject[] call()
+            {
+                GameObject[] created = new GameObject[recordCount];
+                for (int i = 0; i < recordCount; i++)
+                    created[i] = createObject(records[i]);
+                return created;
+            }
+        }));
+        regionStates[region] = LOADING;
+    }
+
+    private GameObject createObject(int record)
+    {
+        //the factory keeps the attributes of the object being created
+        synchronized (GameThread.gameObjectFactory)
+        {
+            return GameThread.gameObjectFactory.createGameObject(level.getX(record), level.getY(record),
+                    level.getType(record), level.getSubtype(record), level.getWidth(record), level.getHeight(record));
+        }
+    }
+
+    // Add the objects created for a region to the game (waiting for them if they aren't ready)
+    private void finishLoad(int region, GameObjects objects)
+    {
+        GameObject[] created;
+        try
+        {
+            created = pendingObjects.get(region).get();
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            System.out.println("Unable to load region " + region + " of the level: " + e.getMessage());
+            created = new GameObject[0];
+        }
+
+        int[] records = pendingRecords[region];
+        ArrayList<Integer> loadedRecords = regionRecords.get(region);
+
+        for (int i = 0; i < created.length; i++)
+        {
+            GameObject go = created[i];
+            //ignore any objects that fail to load
+            if (go == null)
+                continue;
+
+            int record = records[i];
+            if (savedRecords.get(record))
+            {
+                go.setPosition(savedX[record], savedY[record]);
+                if (go instanceof GameCharacter)
+                    ((GameCharacter)go).setCurHealth(savedHealth[record]);
+            }
+
+            objects.add(go);
+            liveObjects[record] = go;
+            loadedRecords.add(record);
+        }
+
+        pendingObjects.set(region, null);
+        pendingRecords[region] = null;
+        regionStates[region] = LOADED;
+    }
+
+    // The objects of the region are no longer needed, they will be created again if the region comes back
+    private void cancelLoad(int region)
+    {
+        pendingObjects.get(region).cancel(false);
+        pendingObjects.set(region, null);
+        pendingRecords[region] = null;
+        regionStates[region] = UNLOADED;
+    }
+
+    // Remove the objects of a region from the game, keeping their state
+    private void unloadRegion(int region, GameObjects objects)
+    {
+        ArrayList<Integer> loadedRecords = regionRecords.get(region);
+
+        for (int record : loadedRecords)
+        {
+            GameObject go = liveObjects[record];
+
+            // objects removed during the game are gone for good
+            if (!objects.contains(go))
+            {
+                removedRecords.set(record);
+                liveObjects[record] = null;
+                continue;
+            }
+
+            int currentRegion = level.getRegion(go.getX(), go.getY());
+            if (currentRegion != region && regionStates[currentRegion] == LOADED)
+            {
+                regionRecords.get(currentRegion).add(record);
+                continue;
+            }
+
+            savedRecords.set(record);
+            savedX[record] = go.getX();
+            savedY[record] = go.getY();
+            if (go instanceof GameCharacter)
+                savedHealth[record] = ((GameCharacter)go).getCurHealth();
+
+            objects.remove(go);
+            liveObjects[record] = null;
+        }
+
+        loadedRecords.clear();
+        regionStates[region] = UNLOADED;
+    }
+
+    // Stop loading regions (when a different level is loaded)
+    public void release()
+    {
+        for (int region = 0; region < regionStates.length; region++)
+        {
+            if (regionStates[region] == LOADING)
+                cancelLoad(region);
+        }
+    }
+
+    // Number of regions whose objects are in the game
+    public int getLoadedRegionCount()
+    {
+        int count = 0;
+        for (int state : regionStates)
+        {
+            if (state == LOADED)
+                count++;
+        }
+        return count;
+    }
+}
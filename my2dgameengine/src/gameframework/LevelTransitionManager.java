@@ -0,0 +1,145 @@
+package gameframework;
+
+import gameframework.animations.AnimationTemplate;
+import gameframework.display.GameDisplay;
+import gameframework.resourcemanagement.ResourceManager;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Changes the level being played without waiting for its resources to load. While a level is played, the
+ * resources of the level after it (its manifest, see GameLevel.requestResources) are loaded in the
+ * background, so when the game moves on to that level its objects are created from resources that are
+ * already in memory. The change itself is done by the game thread once an update is complete (see
+ * GameThread.changeLevel), so the game never sees objects of both levels at once.
+ *
+ * Note that the game still stalls for the rest of the change: the game thread creates every object of the
+ * new level (their constructors expect the level to be the current one, so this can't be done in advance)
+ * and bakes its static tiles between two updates, which takes a few hundred milliseconds on large levels.
+ * Levels that stream their regions (see GameThread.STREAM_LEVEL_REGIONS) only create the objects around the
+ * player at this point.
+ *
+ * Each level keeps its resources in its own scope (see ResourceScope), once the new level is loaded the
+ * scope of the previous level is released, which frees only the resources the new level doesn't use.
+ * Resources used by both levels and global resources (like the HUD or the player) are never loaded again.
+ * The voices of the sound effects are closed as well (see GameAudio.closeSoundEffects).
+ */
+public class LevelTransitionManager
+{
+    private static final int NO_CHANGE = -1;
+
+    private volatile int requestedLevel = NO_CHANGE;
+    // level whose resources are being loaded in advance, and the task requesting them
+    private GameLevel preloadedLevel;
+    private CompletableFuture<Void> preload;
+
+    // Start loading the resources of the level after the current one (if there is one)
+    public void preloadNextLevel()
+    {
+        preload(GameThread.getLevel(GameThread.getCurrentLevelIndex() + 1));
+    }
+
+    private void preload(final GameLevel level)
+    {
+        if (level == null || level == preloadedLevel)
+            return;
+
+        // a level loaded in advance but never played doesn't keep its resources
+        cancelPreload();
+
+        preloadedLevel = level;
+        preload = CompletableFuture.runAsync(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                level.requestResources();
+            }
+        }, ResourceManager.getLoaderPool());
+    }
+
+    private void cancelPreload()
+    {
+        if (preloadedLevel == null)
+            return;
+
+        //the scope can only be released once the level is done requesting its resources
+        waitForPreload();
+        if (preloadedLevel != GameThread.getCurrentLevel())
+            preloadedLevel.release();
+        preloadedLevel = null;
+        preload = null;
+    }
+
+    private void waitForPreload()
+    {
+        try
+        {
+            preload.join();
+        }
+        catch (RuntimeException e)
+        {
+            System.out.println("Unable to load level " + preloadedLevel.getName() + " in advance: " + e.getMessage());
+        }
+    }
+
+    // Thread safe, the last level requested before the end of the update is the one loaded
+    public void requestChange(int levelIndex)
+    {
+        requestedLevel = levelIndex;
+    }
+
+    public boolean hasPendingChange()
+    {
+        return requestedLevel != NO_CHANGE;
+    }
+
+    // Called by the game data once the current update is complete
+    void performPendingChange(GameData data)
+    {
+        int levelIndex = requestedLevel;
+        requestedLevel = NO_CHANGE;
+
+        GameLevel level = GameThread.getLevel(levelIndex);
+        GameLevel previousLevel = GameThread.getCurrentLevel();
+        if (level == null)
+        {
+            System.out.println("Unable to change to level " + levelIndex + ", there is no such level");
+            return;
+        }
+
+        // the manifest of the level was requested in advance unless the game skipped levels
+        if (level == preloadedLevel)
+        {
+            waitForPreload();
+            preloadedLevel = null;
+            preload = null;
+        }
+        else
+            cancelPreload();
+
+        // the sound effects of the previous level free their audio lines, they are opened again when played
+        GameThread.gameAudio.closeSoundEffects();
+
+        // from here on the game thread stalls until the objects of the new level are created (see above)
+        GameThread.setCurrentLevelIndex(levelIndex);
+        //the background determines the size of the area grid and the camera limits
+        GameDisplay.loadLevelBackgroundImage();
+        try
+        {
+            level.load(data);
+        }
+        catch (Exception e)
+        {
+            System.out.println("Unable to load level " + level.getName() + "\n" +
+                    "Reason: " + e.getMessage());
+        }
+
+        if (previousLevel != null && previousLevel != level)
+        {
+            previousLevel.release();
+            AnimationTemplate.freeUnusedTemplates();
+        }
+        preloadNextLevel();
+    }
+}
@@ -1,21 +1,22 @@
 package gameframework.animations;
 
 import gameframework.GameThread;
+import gameframework.display.DrawList;
 
 import java.awt.*;
-import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
+/* An animation keeps track of the playback (current frame, speed, pause state, etc) of an animation
+ * template, which holds the frames and their borders and can be shared with other animations. */
 public class Animation
 {
+    private AnimationTemplate template;
     private String name;
-    private BufferedImage[] frames;
     private int frameCount;
     private int curFrameIndex;
-    private BufferedImage curFrame;
-    private ArrayList<SpriteBorder> frameBorders;
+    private ArrayList<SpriteBorder> adjustedFrameBorders;   //only used if the borders were adjusted to absolute positions
     private int scaleWidth;
     private int scaleHeight;
     private int speed;
@@ -28,51 +29,28 @@ public class Animation
 
     public Animation(Spritesheet spritesheet, int scaleWidth, int scaleHeight)
     {
-        name = spritesheet.getName();
-        frames = spritesheet.convertToImageArray();
-        frameCount = frames.length;
-        curFrameIndex = 0;
-        curFrame = frames[curFrameIndex];
-        this.scaleHeight = scaleHeight;
-        this.scaleWidth = scaleWidth;
-        speed = 1;
-        speedCounter = 0;
-        paused = false;
-        runOnlyOnce = false;
-        runsCounter = 0;
-        timesToRun = -1; //set by default to -1 which means run indefinitely
-        soundEffect = "";
-        initializeFrameBorders();
+        this(AnimationTemplate.getTemplate(spritesheet, scaleWidth, scaleHeight));
     }
 
     public Animation(String name, BufferedImage[] frames, int scaleWidth, int scaleHeight)
     {
-        this.name = name;
-        this.frames = frames;
-        frameCount = frames.length;
-        curFrameIndex = 0;
-        curFrame = frames[curFrameIndex];
-        this.scaleHeight = scaleHeight;
-        this.scaleWidth = scaleWidth;
-        speed = 1;
-        speedCounter = 0;
-        paused = false;
-        runOnlyOnce = false;
-        runsCounter = 0;
-        timesToRun = -1; //set by default to -1 which means run indefinitely
-        soundEffect = "";
-        initializeFrameBorders();
+        this(new AnimationTemplate(name, frames, scaleWidth, scaleHeight));
     }
 
     public Animation(BufferedImage image, String name,  int scaleWidth, int scaleHeight)
     {
-        this.name = name;
-        frames = new BufferedImage[1];
-        curFrame = frames[0] = image;
-        frameCount = 1;
+        this(AnimationTemplate.getTemplate(image, name, scaleWidth, scaleHeight));
+    }
+
+    public Animation(AnimationTemplate template)
+    {
+        this.template = template;
+        name = template.getName();
+        frameCount = template.getFrameCount();
         curFrameIndex = 0;
-        this.scaleHeight = scaleHeight;
-        this.scaleWidth = scaleWidth;
+        adjustedFrameBorders = null;
+        scaleHeight = template.getScaleHeight();
+        scaleWidth = template.getScaleWidth();
         speed = 1;
         speedCounter = 0;
         paused = false;
@@ -80,9 +58,12 @@ public class Animation
         runsCounter = 0;
         timesToRun = -1; //set by default to -1 which means run indefinitely
         soundEffect = "";
-        initializeFrameBorders();
     }
 
+    public AnimationTemplate getTemplate()
+    {
+        return template;
+    }
 
     public void reset()
     {
@@ -135,27 +116,17 @@ public class Animation
         }
     }
 
-    /*
-     * This method is used to obtain and store the borders of each frame of the animation (the actual
-     * sprite borders not including the transparent background), having the borders handy is very useful
-     * for collision detection
-     */
-    private void initializeFrameBorders()
+    private SpriteBorder getFrameBorders(int frameIndex)
     {
-        frameBorders = new ArrayList<SpriteBorder>();
-
-        for ( int i = 0; i < frameCount; i++)
-        {
-            SpriteBorder s = SpriteBorder.getSpriteBorders(
-                    frames[i], scaleWidth, scaleHeight);
-            frameBorders.add(s);
-        }
+        if (adjustedFrameBorders != null)
+            return adjustedFrameBorders.get(frameIndex);
+        return template.getFrameBorders(frameIndex);
     }
 
     public SpriteBorder getCurrentFrameBorders(int posX, int posY, boolean reposition)
     {
 
-        SpriteBorder curSpriteBorders = (SpriteBorder) frameBorders.get(curFrameIndex);
+        SpriteBorder curSpriteBorders = getFrameBorders(curFrameIndex);
 
         //If requested (reposition is true) then adjusts all border point positions
         //to reflect the current sprite position
@@ -164,9 +135,17 @@ public class Animation
         return curSpriteBorders;
     }
 
+    /* Returns the collision mask of the current frame, its coordinates are always relative to the
+     * top left corner of the frame (even for animations whose borders were adjusted to absolute
+     * positions). */
+    public CollisionMask getCurrentFrameMask()
+    {
+        return template.getFrameMask(curFrameIndex);
+    }
+
     public Rectangle getCurrentFrameBounds()
     {
-        return frameBorders.get(curFrameIndex).getBordersRectangle();
+        return getFrameBorders(curFrameIndex).getBordersRectangle();
     }
 
     public int getCurrentFrameIndex()
@@ -182,14 +161,18 @@ public class Animation
 
     /* These method can be used to convert the border point positions for every frame in the animation
      * from relative coords based on the top left corner of the bounds rectangle of the frame to actual
-     * absolute coordinates in the game world. */
+     * absolute coordinates in the game world. The adjusted borders belong only to this animation
+     * (the template borders are shared with other animations so they are never modified). */
     public void adjustFrameBordersPosition(int posX, int posY)
     {
+        ArrayList<SpriteBorder> adjustedBorders = new ArrayList<SpriteBorder>(frameCount);
+
         for ( int i = 0; i < frameCount; i++)
         {
-            SpriteBorder s = frameBorders.get(i);
-            frameBorders.set(i, s.reposition(posX, posY));
+            SpriteBorder s = getFrameBorders(i);
+            adjustedBorders.add(s.reposition(posX, posY));
         }
+        adjustedFrameBorders = adjustedBorders;
     }
 
     public void nextFrame()
@@ -221,12 +204,24 @@ public class Animation
                 pause();
             }
         }
-        curFrame = frames[curFrameIndex];
     }
 
     public void drawFrame(Graphics g, int x, int y)
     {
-        g.drawImage(curFrame, x, y, scaleWidth, scaleHeight, null );
+        //draw the frame already scaled by the template, unless this animation has a different scale
+        if (scaleWidth == template.getScaleWidth() && scaleHeight == template.getScaleHeight())
+            g.drawImage(template.getScaledFrame(curFrameIndex), x, y, null);
+        else
+            g.drawImage(template.getFrame(curFrameIndex), x, y, scaleWidth, scaleHeight, null );
+    }
+
+    // Add the current frame to a draw list, to be drawn later the same way drawFrame draws it
+    public void addFrameToDrawList(DrawList drawList, int x, int y, int z)
+    {
+        if (scaleWidth == template.getScaleWidth() && scaleHeight == template.getScaleHeight())
+            drawList.add(template.getScaledFrame(curFrameIndex), x, y, z);
+        else
+            drawList.add(template.getFrame(curFrameIndex), x, y, scaleWidth, scaleHeight, z);
     }
 
     public int getSpeed()
@@ -278,48 +273,13 @@ public class Animation
         this.timesToRun = timesToRun;
     }
 
+    // Flipped copies of the animation share their templates like any other animation (see AnimationTemplate)
     public Animation HorizontalFlip(){
-        BufferedImage[] reverseFrames = new BufferedImage[frames.length];
-
-        for(int i = 0; i < frames.length; i++){
-            int w = frames[i].getWidth();
-            int h = frames[i].getHeight();
-            BufferedImage flipped = new BufferedImage(w,
-                    h, frames[i].getType());
-            Graphics2D g = flipped.createGraphics();
-
-            AffineTransform tx = AffineTransform.getScaleInstance(-1,1);
-            tx.translate(-w, 0);
-
-            g.drawImage(frames[i], tx, null);
-            g.dispose();
-
-            reverseFrames[i] = flipped;
-        }
-
-        return new Animation(name, reverseFrames, scaleWidth, scaleHeight);
+        return new Animation(AnimationTemplate.getFlippedTemplate(template, true, scaleWidth, scaleHeight));
     }
 
     public Animation VerticalFlip(){
-        BufferedImage[] reverseFrames = new BufferedImage[frames.length];
-
-        for(int i = 0; i < frames.length; i++){
-            int w = frames[i].getWidth();
-            int h = frames[i].getHeight();
-            BufferedImage flipped = new BufferedImage(w,
-                    h, frames[i].getType());
-            Graphics2D g = flipped.createGraphics();
-
-            AffineTransform tx = AffineTransform.getScaleInstance(1,-1);
-            tx.translate(0, -h);
-
-            g.drawImage(frames[i], tx, null);
-            g.dispose();
-
-            reverseFrames[i] = flipped;
-        }
-
-        return new Animation(name, reverseFrames, scaleWidth, scaleHeight);
+        return new Animation(AnimationTemplate.getFlippedTemplate(template, false, scaleWidth, scaleHeight));
     }
 
     private void stopSoundEffect()
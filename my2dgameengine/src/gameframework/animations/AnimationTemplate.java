@@ -0,0 +1,287 @@
+package gameframework.animations;
+
+import gameframework.GameThread;
+import gameframework.supportfunctions.GraphicsLibrary;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+ * An animation template holds everything about an animation that never changes while the game is
+ * running: the frames (original and scaled), and the borders and collision mask of every frame.
+ * Templates are shared by all animations created from the same spritesheet (or image) with the same
+ * scale, so when the game spawns many copies of the same character the frames are only extracted
+ * and scanned for borders the first time. Each Animation object just keeps track of the playback
+ * of a template (current frame, speed, pause state, etc).
+ */
+public class AnimationTemplate
+{
+    private static final HashMap<String, AnimationTemplate> templates = new HashMap<String, AnimationTemplate>();
+    // number of cached templates created from each spritesheet (by spritesheet key), see hasTemplate
+    private static final HashMap<String, Integer> spritesheetTemplates = new HashMap<String, Integer>();
+    // incremented every time unused templates are freed, see freeUnusedTemplates
+    private static int generation = 0;
+
+    private final String name;
+    private final String bordersName;
+    private final BufferedImage[] frames;
+    private final BufferedImage[] scaledFrames;   //frames already scaled for drawing, created when first drawn
+    private final SpriteBorder[] frameBorders;
+    private final CollisionMask[] frameMasks;
+    private final int scaleWidth;
+    private final int scaleHeight;
+    private final String resourceName;            //image the frames come from (if known), see freeUnusedTemplates
+    private String key;                           //key of the template in the cache, null if it isn't cached
+    private String spritesheetKey;                //spritesheet the frames come from (if any)
+    private int lastUsed;                         //generation in which the template was last requested
+
+    public AnimationTemplate(String name, BufferedImage[] frames, int scaleWidth, int scaleHeight)
+    {
+        this(name, name, null, frames, scaleWidth, scaleHeight);
+    }
+
+    /* The borders name identifies the frames in the borders cache, and the resource name is the image they
+     * come from (if any), the borders cache is checked against its version (see FrameBordersCache). */
+    private AnimationTemplate(String name, String bordersName, String resourceName, BufferedImage[] frames,
+                              int scaleWidth, int scaleHeight)
+    {
+        this.name = name;
+        this.bordersName = bordersName;
+        this.resourceName = resourceName;
+        this.frames = frames;
+        this.scaleWidth = scaleWidth;
+        this.scaleHeight = scaleHeight;
+        scaledFrames = new BufferedImage[frames.length];
+        frameBorders = new SpriteBorder[frames.length];
+        frameMasks = new CollisionMask[frames.length];
+        initializeFrameBorders();
+    }
+
+    /* Returns the template for a spritesheet at the given scale, the template is created (and the
+     * spritesheet loaded) only if no animation has used the same spritesheet and scale before. */
+    public static synchronized AnimationTemplate getTemplate(Spritesheet spritesheet,
+                                                             int scaleWidth, int scaleHeight)
+    {
+        String key = spritesheet.getTemplateKey() + "|" + scaleWidth + "x" + scaleHeight;
+        AnimationTemplate template = templates.get(key);
+
+        if (template == null)
+        {
+            template = new AnimationTemplate(spritesheet.getName(), spritesheet.getTemplateKey(),
+                    spritesheet.getResourceName(), spritesheet.convertToImageArray(), scaleWidth, scaleHeight);
+            template.spritesheetKey = spritesheet.getTemplateKey();
+            cache(key, template);
+        }
+        template.lastUsed = generation;
+        return template;
+    }
+
+    /* Returns true if an animation was already created from the spritesheet (at any scale), in that case
+     * its frames are probably cached and the spritesheet image isn't needed. */
+    public static synchronized boolean hasTemplate(Spritesheet spritesheet)
+    {
+        return spritesheetTemplates.containsKey(spritesheet.getTemplateKey());
+    }
+
+    /* Returns the template for a single image animation. Images are loaded through the resource
+     * manager so every object using the same image gets the same image object, which we check to
+     * make sure the cached template really belongs to this image. */
+    public static synchronized AnimationTemplate getTemplate(BufferedImage image, String name,
+                                                             int scaleWidth, int scaleHeight)
+    {
+        String key = name + "|" + scaleWidth + "x" + scaleHeight;
+        AnimationTemplate template = templates.get(key);
+
+        if (template == null || template.frames[0] != image)
+        {
+            template = new AnimationTemplate(name, name, name, new BufferedImage[] {image}, scaleWidth, scaleHeight);
+            cache(key, template);
+        }
+        template.lastUsed = generation;
+        return template;
+    }
+
+    /* Returns the template with the frames of another template flipped horizontally or vertically, at
+     * the given scale. The flipped template is cached with the key of the original one plus the flip, so
+     * the frames are only flipped (and scanned for borders) once. Templates that aren't cached (created
+     * directly from frames) are flipped every time. */
+    public static synchronized AnimationTemplate getFlippedTemplate(AnimationTemplate source, boolean horizontal,
+                                                                    int scaleWidth, int scaleHeight)
+    {
+        String key = source.key == null ? null :
+                source.key + "|" + (horizontal ? "hflip" : "vflip") + "|" + scaleWidth + "x" + scaleHeight;
+        AnimationTemplate template = key == null ? null : templates.get(key);
+
+        if (template == null)
+        {
+            BufferedImage[] flippedFrames = new BufferedImage[source.frames.length];
+            for (int i = 0; i < source.frames.length; i++)
+                flippedFrames[i] = flipFrame(source.frames[i], horizontal);
+
+            template = new AnimationTemplate(source.name, source.bordersName + (horizontal ? "_hflip" : "_vflip"),
+                    source.resourceName, flippedFrames, scaleWidth, scaleHeight);
+            if (key != null)
+                cache(key, template);
+        }
+        template.lastUsed = generation;
+        return template;
+    }
+
+    private static BufferedImage flipFrame(BufferedImage frame, boolean horizontal)
+    {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        BufferedImage flipped = new BufferedImage(w, h, frame.getType());
+        Graphics2D g = flipped.createGraphics();
+
+        AffineTransform tx;
+        if (horizontal)
+        {
+            tx = AffineTransform.getScaleInstance(-1, 1);
+            tx.translate(-w, 0);
+        }
+        else
+        {
+            tx = AffineTransform.getScaleInstance(1, -1);
+            tx.translate(0, -h);
+        }
+
+        g.drawImage(frame, tx, null);
+        g.dispose();
+        return flipped;
+    }
+
+    private static void cache(String key, AnimationTemplate template)
+    {
+        template.key = key;
+        AnimationTemplate replaced = templates.put(key, template);
+        if (replaced != null)
+            forget(replaced);
+        if (template.spritesheetKey != null)
+        {
+            Integer count = spritesheetTemplates.get(template.spritesheetKey);
+            spritesheetTemplates.put(template.spritesheetKey, count == null ? 1 : count + 1);
+        }
+    }
+
+    // Called once a template is no longer in the cache
+    private static void forget(AnimationTemplate template)
+    {
+        template.key = null;
+        if (template.spritesheetKey != null)
+        {
+            int count = spritesheetTemplates.get(template.spritesheetKey) - 1;
+            if (count == 0)
+                spritesheetTemplates.remove(template.spritesheetKey);
+            else
+                spritesheetTemplates.put(template.spritesheetKey, count);
+        }
+    }
+
+    /* Forget all cached templates (animations already using them are not affected), this should be
+     * done along with freeing the resources of a level. */
+    public static synchronized void freeTemplates()
+    {
+        for (AnimationTemplate template : templates.values())
+            template.key = null;
+        templates.clear();
+        spritesheetTemplates.clear();
+    }
+
+    /* Forget the cached templates that weren't requested since the last time this was called and whose
+     * image is no longer kept by the resource manager (used once a new level is loaded, so the animations
+     * shared by both levels aren't created again). Templates don't need their image once they are created
+     * (their frames are copies), so the resource manager can evict it while the template is still used. */
+    public static synchronized void freeUnusedTemplates()
+    {
+        Iterator<AnimationTemplate> iterator = templates.values().iterator();
+        while (iterator.hasNext())
+        {
+            AnimationTemplate template = iterator.next();
+            if (template.lastUsed != generation && (template.resourceName == null ||
+                    !GameThread.resourceManager.resourceIsAlreadyLoaded(template.resourceName)))
+            {
+                iterator.remove();
+                forget(template);
+            }
+        }
+        generation++;
+    }
+
+    /*
+     * This method is used to obtain and store the borders of each frame of the animation (the actual
+     * sprite borders not including the transparent background), having the borders handy is very useful
+     * for collision detection. We also build the collision mask of each frame (all of its opaque pixels)
+     * from the same scaled image. Frames computed in a previous run are read from the borders cache.
+     */
+    private void initializeFrameBorders()
+    {
+        long sourceVersion = resourceName != null ? GameThread.resourceManager.getResourceVersion(resourceName) : 0;
+        FrameBordersCache cache = new FrameBordersCache(bordersName, sourceVersion, frames, scaleWidth, scaleHeight);
+
+        for ( int i = 0; i < frames.length; i++)
+        {
+            SpriteBorder s = cache.getBorders(i);
+            CollisionMask mask = cache.getMask(i);
+
+            if (s == null || mask == null)
+            {
+                BufferedImage scaledFrame = GraphicsLibrary.generateScaledImage(
+                        frames[i], scaleWidth, scaleHeight);
+                s = SpriteBorder.getSpriteBorders(scaledFrame);
+                mask = CollisionMask.getCollisionMask(scaledFrame);
+                cache.put(i, s, mask);
+            }
+            frameBorders[i] = s;
+            frameMasks[i] = mask;
+        }
+        cache.save(scaleWidth, scaleHeight);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getFrameCount()
+    {
+        return frames.length;
+    }
+
+    public int getScaleWidth()
+    {
+        return scaleWidth;
+    }
+
+    public int getScaleHeight()
+    {
+        return scaleHeight;
+    }
+
+    public BufferedImage getFrame(int frameIndex)
+    {
+        return frames[frameIndex];
+    }
+
+    // Returns the frame already scaled to the template's scale, so it can be drawn without scaling
+    public BufferedImage getScaledFrame(int frameIndex)
+    {
+        if (scaledFrames[frameIndex] == null)
+            scaledFrames[frameIndex] = GraphicsLibrary.generateScaledImage(
+                    frames[frameIndex], scaleWidth, scaleHeight);
+        return scaledFrames[frameIndex];
+    }
+
+    public SpriteBorder getFrameBorders(int frameIndex)
+    {
+        return frameBorders[frameIndex];
+    }
+
+    public CollisionMask getFrameMask(int frameIndex)
+    {
+        return frameMasks[frameIndex];
+    }
+}
@@ -0,0 +1,171 @@
+package gameframework.animations;
+
+import gameframework.supportfunctions.GraphicsLibrary;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*
+ * This class stores which pixels of a (scaled) sprite frame are opaque, as one bitset per row
+ * packed into long values (bit i of a row is set if the pixel at column i is opaque). As opposed
+ * to sprite borders, which only keep the outline of the sprite in a tree set, the mask covers the
+ * whole filled area of the sprite, and two masks can be tested for intersection 64 pixels at a
+ * time by shifting and ANDing the rows that overlap. Coordinates are relative to the top left
+ * corner of the frame, the position of the frame in the game world is given when testing.
+ */
+public class CollisionMask
+{
+    private static final int BITS_PER_WORD = 64;
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] rows;      //row bitsets, row r starts at index r * wordsPerRow
+
+    private CollisionMask(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        wordsPerRow = (width + BITS_PER_WORD - 1) / BITS_PER_WORD;
+        rows = new long[wordsPerRow * height];
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /* Builds the collision mask of an already scaled frame image (opaque pixels are the ones the
+     * sprite borders are made of, see GraphicsLibrary.isColorTransparent). */
+    public static CollisionMask getCollisionMask(BufferedImage scaledImage)
+    {
+        if (scaledImage == null)
+            return null;
+
+        CollisionMask mask = new CollisionMask(scaledImage.getWidth(), scaledImage.getHeight());
+        int[] pixels = new int[mask.width];
+
+        for (int row = 0; row < mask.height; row++)
+        {
+            scaledImage.getRGB(0, row, mask.width, 1, pixels, 0, mask.width);
+            int rowStart = row * mask.wordsPerRow;
+
+            for (int col = 0; col < mask.width; col++)
+            {
+                if (!GraphicsLibrary.isColorTransparent(pixels[col]))
+                    mask.rows[rowStart + col / BITS_PER_WORD] |= 1L << (col % BITS_PER_WORD);
+            }
+        }
+        return mask;
+    }
+
+    // Writes the mask, used to store it in the borders cache
+    void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(width);
+        out.writeInt(height);
+        for (long bits : rows)
+            out.writeLong(bits);
+    }
+
+    // Reads a mask previously stored with writeTo
+    static CollisionMask readFrom(DataInput in) throws IOException
+    {
+        CollisionMask mask = new CollisionMask(in.readInt(), in.readInt());
+        for (int i = 0; i < mask.rows.length; i++)
+            mask.rows[i] = in.readLong();
+        return mask;
+    }
+
+    /* Returns the 64 bits of a row starting at the given column (the column can be negative or
+     * past the width of the mask, the pixels outside of the mask are considered transparent). */
+    private long getBits(int row, int col)
+    {
+        if (col >= width || col <= -BITS_PER_WORD)
+            return 0;
+
+        int rowStart = row * wordsPerRow;
+
+        if (col < 0)
+            return rows[rowStart] << -col;
+
+        int word = col / BITS_PER_WORD;
+        int shift = col % BITS_PER_WORD;
+        long bits = rows[rowStart + word] >>> shift;
+
+        if (shift != 0 && word + 1 < wordsPerRow)
+            bits |= rows[rowStart + word + 1] << (BITS_PER_WORD - shift);
+
+        return bits;
+    }
+
+    /* Check if this mask placed at (posX, posY) has an opaque pixel in common with another mask
+     * placed at (otherPosX, otherPosY). Only the rows and columns where both frames overlap are
+     * checked, 64 pixels at a time. */
+    public boolean intersects(int posX, int posY, CollisionMask otherMask, int otherPosX, int otherPosY)
+    {
+        int left = Math.max(posX, otherPosX);
+        int right = Math.min(posX + width, otherPosX + otherMask.width);
+        int top = Math.max(posY, otherPosY);
+        int bottom = Math.min(posY + height, otherPosY + otherMask.height);
+
+        if (left >= right || top >= bottom)
+            return false;
+
+        for (int y = top; y < bottom; y++)
+        {
+            int row = y - posY;
+            int otherRow = y - otherPosY;
+
+            for (int x = left; x < right; x += BITS_PER_WORD)
+            {
+                long bits = getBits(row, x - posX) & otherMask.getBits(otherRow, x - otherPosX);
+
+                //ignore any pixels past the right side of the overlap
+                int remaining = right - x;
+                if (remaining < BITS_PER_WORD)
+                    bits &= (1L << remaining) - 1;
+
+                if (bits != 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /* Check if this mask placed at (posX, posY) has any opaque pixel inside the given rectangle
+     * (same rules as Rectangle.contains, the right and bottom sides are not part of it). */
+    public boolean intersectsRect(int posX, int posY, Rectangle rect)
+    {
+        int left = Math.max(posX, rect.x);
+        int right = Math.min(posX + width, rect.x + rect.width);
+        int top = Math.max(posY, rect.y);
+        int bottom = Math.min(posY + height, rect.y + rect.height);
+
+        for (int y = top; y < bottom; y++)
+        {
+            int row = y - posY;
+
+            for (int x = left; x < right; x += BITS_PER_WORD)
+            {
+                long bits = getBits(row, x - posX);
+
+                int remaining = right - x;
+                if (remaining < BITS_PER_WORD)
+                    bits &= (1L << remaining) - 1;
+
+                if (bits != 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
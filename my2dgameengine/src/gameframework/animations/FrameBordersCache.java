@@ -0,0 +1,165 @@
+package gameframework.animations;
+
+import gameframework.GameThread;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/*
+ * Computing the borders and collision mask of every animation frame requires scaling the frame and
+ * scanning all of its pixels, which makes it the slowest part of loading the game. This class stores
+ * the results in a cache file (through the resource manager) the first time they are computed, so
+ * the next time the game starts they can be read back instead. There is one file for each image (or
+ * spritesheet) and scaled size, written again in place whenever its data has to be computed again.
+ *
+ * The file stores the version of the image the frames come from (its size and modification time, see
+ * ResourceManager.getResourceVersion), so checking the cached data doesn't require reading the pixels
+ * of the frames. Frames that don't come from a resource (created by the game) are checked against a
+ * hash of their pixels instead.
+ */
+class FrameBordersCache
+{
+    private static final int FILE_MAGIC = 0x53424332;   //"SBC2"
+    private static final String FILE_EXTENSION = ".borders";
+    private static final String BORDERS_FOLDER = "borders/";
+
+    private final String fileName;
+    private final long sourceVersion;
+    private final SpriteBorder[] frameBorders;
+    private final CollisionMask[] frameMasks;
+    private boolean modified;
+
+    /* The cache name identifies where the frames come from (see AnimationTemplate), animations whose
+     * frames differ (like flipped animations) must use different names. The source version is the version
+     * of the resource of the frames, or 0 if they don't come from a resource. */
+    FrameBordersCache(String cacheName, long sourceVersion, BufferedImage[] frames, int scaleWidth, int scaleHeight)
+    {
+        frameBorders = new SpriteBorder[frames.length];
+        frameMasks = new CollisionMask[frames.length];
+        modified = false;
+
+        if (sourceVersion == 0)
+        {
+            sourceVersion = frames.length;
+            for (BufferedImage frame : frames)
+                sourceVersion = sourceVersion * 31 + computeContentHash(frame);
+        }
+        this.sourceVersion = sourceVersion;
+
+        fileName = BORDERS_FOLDER + cacheName.replaceAll("[^A-Za-z0-9._-]", "_") + "_" +
+                scaleWidth + "x" + scaleHeight + FILE_EXTENSION;
+
+        load(scaleWidth, scaleHeight);
+    }
+
+    /* Hash of the pixels of a frame (FNV-1a over the ARGB values), only used for frames that don't
+     * come from a resource. */
+    private static long computeContentHash(BufferedImage frame)
+    {
+        int width = frame.getWidth(), height = frame.getHeight();
+        long hash = 0xcbf29ce484222325L;
+        int[] pixels = new int[width];
+
+        hash = (hash ^ width) * 0x100000001b3L;
+        hash = (hash ^ height) * 0x100000001b3L;
+
+        for (int row = 0; row < height; row++)
+        {
+            frame.getRGB(0, row, width, 1, pixels, 0, width);
+            for (int pixel : pixels)
+                hash = (hash ^ pixel) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // Read the cached frames (if any), a file that doesn't match the frames is simply ignored
+    private void load(int scaleWidth, int scaleHeight)
+    {
+        byte[] data = GameThread.resourceManager.loadCacheFile(fileName);
+        if (data == null)
+            return;
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+            if (in.readInt() != FILE_MAGIC || in.readLong() != sourceVersion || in.readInt() != frameBorders.length ||
+                    in.readInt() != scaleWidth || in.readInt() != scaleHeight)
+                return;
+
+            for (int i = 0; i < frameBorders.length; i++)
+            {
+                frameBorders[i] = SpriteBorder.readFrom(in);
+                frameMasks[i] = CollisionMask.readFrom(in);
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            System.out.println("Ignoring invalid borders cache file: " + fileName);
+            for (int i = 0; i < frameBorders.length; i++)
+            {
+                frameBorders[i] = null;
+                frameMasks[i] = null;
+            }
+        }
+    }
+
+    // Returns the cached borders of a frame, or null if they have to be computed
+    SpriteBorder getBorders(int frameIndex)
+    {
+        return frameBorders[frameIndex];
+    }
+
+    CollisionMask getMask(int frameIndex)
+    {
+        return frameMasks[frameIndex];
+    }
+
+    void put(int frameIndex, SpriteBorder borders, CollisionMask mask)
+    {
+        frameBorders[frameIndex] = borders;
+        frameMasks[frameIndex] = mask;
+        modified = true;
+    }
+
+    /* Write the cache file if any frame had to be computed. This has to be done before the borders
+     * are used in the game (bound points can be invalidated once they are verified). */
+    void save(int scaleWidth, int scaleHeight)
+    {
+        if (!modified)
+            return;
+
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(FILE_MAGIC);
+            out.writeLong(sourceVersion);
+            out.writeInt(frameBorders.length);
+            out.writeInt(scaleWidth);
+            out.writeInt(scaleHeight);
+
+            for (int i = 0; i < frameBorders.length; i++)
+            {
+                if (frameBorders[i] == null || frameMasks[i] == null)
+                    return;
+
+                frameBorders[i].writeTo(out);
+                frameMasks[i].writeTo(out);
+            }
+            out.flush();
+
+            GameThread.resourceManager.saveCacheFile(fileName, bytes.toByteArray());
+            modified = false;
+        }
+        catch (IOException e)
+        {
+            System.out.println("Unable to store borders cache file: " + fileName);
+        }
+    }
+}
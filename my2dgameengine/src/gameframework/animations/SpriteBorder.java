@@ -5,7 +5,11 @@ import gameframework.supportfunctions.GraphicsLibrary;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.TreeSet;
 
 /*
@@ -22,6 +26,17 @@ public class SpriteBorder extends TreeSet<BorderPoint>
      */
     private ArrayList<BorderPoint> boundPoints;
 
+    /* The border points packed into long values (x in the high 32 bits plus y) and sorted in the
+     * same order as the set. Adding the same offset to every packed point keeps them sorted, so
+     * two borders at different positions can be compared without repositioning (or cloning) them.
+     * Built the first time it is needed (volatile since collisions can be tested by several threads
+     * at once, see GameThread.PARALLEL_NARROWPHASE). */
+    private volatile long[] packedPoints;
+
+    /* Set once the bound points have been verified, so the four lookups in the set aren't repeated
+     * every time the collision bounds are needed. */
+    private boolean boundPointsVerified = false;
+
     public SpriteBorder()
     {
         super();
@@ -56,6 +71,37 @@ public class SpriteBorder extends TreeSet<BorderPoint>
         return copy;
     }
 
+    @Override
+    public boolean add(BorderPoint p)
+    {
+        //the packed points have to be rebuilt (and the bound points verified) after any change to the set
+        packedPoints = null;
+        boundPointsVerified = false;
+        return super.add(p);
+    }
+
+    private static long packPoint(int x, int y)
+    {
+        return ((long)x << 32) + y;
+    }
+
+    private long[] getPackedPoints()
+    {
+        if (packedPoints == null)
+        {
+            long[] points = new long[size()];
+            int i = 0;
+
+            for (BorderPoint p : this)
+                points[i++] = packPoint(p.x, p.y);
+
+            //the set might be sorted by y, make sure the packed points are sorted by x
+            Arrays.sort(points);
+            packedPoints = points;
+        }
+        return packedPoints;
+    }
+
     private BorderPoint getBoundPoint(Direction direction)
     {
         BorderPoint requestedPoint = null;
@@ -98,6 +144,8 @@ public class SpriteBorder extends TreeSet<BorderPoint>
     {
         boolean valid = true;
 
+        if (boundPointsVerified)
+            return true;
         if (boundPoints == null)
             return false;
 
@@ -114,6 +162,8 @@ public class SpriteBorder extends TreeSet<BorderPoint>
         //Save the verification time in the future by setting boundPoints to null
         if (!valid)
             boundPoints = null;
+        else
+            boundPointsVerified = true;
 
         return valid;
 
@@ -160,6 +210,55 @@ public class SpriteBorder extends TreeSet<BorderPoint>
         return false;
     }
 
+    /* Same as bordersIntersect, but the points of both borders are kept relative to their frames and
+     * the positions of the sprites are given as offsets, this way no borders have to be repositioned
+     * (cloned) and nothing is allocated. Both point arrays are sorted, so a single merge pass over
+     * them is enough to find a common point. */
+    public boolean bordersIntersect(int offsetX, int offsetY,
+                                    SpriteBorder otherSpriteBorders, int otherOffsetX, int otherOffsetY)
+    {
+        long[] points = getPackedPoints();
+        long[] otherPoints = otherSpriteBorders.getPackedPoints();
+        long offset = packPoint(offsetX, offsetY);
+        long otherOffset = packPoint(otherOffsetX, otherOffsetY);
+        int i = 0, j = 0;
+
+        while (i < points.length && j < otherPoints.length)
+        {
+            long p = points[i] + offset;
+            long q = otherPoints[j] + otherOffset;
+
+            if (p == q)
+                return true; // found a common border point
+            else if (p < q)
+                i++;
+            else
+                j++;
+        }
+        return false;
+    }
+
+    /* Same as borderIntersectWithRect, with the positions of both sprites given as offsets. */
+    public boolean borderIntersectWithRect(int offsetX, int offsetY,
+                                           SpriteBorder otherSpriteBorders, int otherOffsetX, int otherOffsetY)
+    {
+        //without valid bound points the collision can only be based on the collision bounds
+        if (otherSpriteBorders.boundPoints == null)
+            return true;
+
+        //bounds rect of the other borders relative to this sprite, same rules as Rectangle.contains
+        int left = otherSpriteBorders.getBoundPoint(Direction.LEFT).x + otherOffsetX - offsetX;
+        int right = otherSpriteBorders.getBoundPoint(Direction.RIGHT).x + otherOffsetX - offsetX;
+        int top = otherSpriteBorders.getBoundPoint(Direction.UP).y + otherOffsetY - offsetY;
+        int bottom = otherSpriteBorders.getBoundPoint(Direction.DOWN).y + otherOffsetY - offsetY;
+
+        for (BorderPoint p : this) {
+            if (p.x >= left && p.x < right && p.y >= top && p.y < bottom)
+                return true;
+        }
+        return false;
+    }
+
     public boolean borderIntersectWithRect(SpriteBorder otherSpriteBorders) {
         //Get rect of other object and check if contains point
         Rectangle rect = otherSpriteBorders.getBordersRectangle();
@@ -171,6 +270,50 @@ public class SpriteBorder extends TreeSet<BorderPoint>
     }
 
 
+    /* Writes the border points and bound points, used to store the borders in the borders cache. */
+    void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(size());
+        for (BorderPoint p : this)
+        {
+            out.writeInt(p.x);
+            out.writeInt(p.y);
+        }
+
+        out.writeBoolean(boundPoints != null);
+        if (boundPoints != null)
+        {
+            for (BorderPoint bpt : boundPoints)
+            {
+                out.writeInt(bpt.x);
+                out.writeInt(bpt.y);
+            }
+        }
+    }
+
+    // Reads borders previously stored with writeTo
+    static SpriteBorder readFrom(DataInput in) throws IOException
+    {
+        SpriteBorder borders = new SpriteBorder();
+        int pointCount = in.readInt();
+
+        for (int i = 0; i < pointCount; i++)
+            borders.add(new BorderPoint(in.readInt(), in.readInt()));
+
+        if (in.readBoolean())
+        {
+            //bound points are stored in the same order as the bound points list
+            borders.setBoundPoint(new BorderPoint(in.readInt(), in.readInt()), Direction.LEFT);
+            borders.setBoundPoint(new BorderPoint(in.readInt(), in.readInt()), Direction.UP);
+            borders.setBoundPoint(new BorderPoint(in.readInt(), in.readInt()), Direction.RIGHT);
+            borders.setBoundPoint(new BorderPoint(in.readInt(), in.readInt()), Direction.DOWN);
+        }
+        else
+            borders.boundPoints = null;
+
+        return borders;
+    }
+
     /* Returns all points that surround an actual sprite, these are the real borders of the sprite
      * that should be used for most accurate collision detection rather than the bounds rectangle.
      * To obtain the borders this method skips all transparent pixels from the background and determines
@@ -178,9 +321,14 @@ public class SpriteBorder extends TreeSet<BorderPoint>
     public static SpriteBorder getSpriteBorders(Image image,
                                                 int scaleWidth,
                                                 int scaleHeight)
+    {
+        return getSpriteBorders(GraphicsLibrary.generateScaledImage(image, scaleWidth, scaleHeight));
+    }
+
+    // Same as above but for an image that has already been scaled to its final size
+    public static SpriteBorder getSpriteBorders(BufferedImage scaledImage)
     {
         SpriteBorder borders = new SpriteBorder();
-        BufferedImage scaledImage = GraphicsLibrary.generateScaledImage(image, scaleWidth, scaleHeight);
 
         // We also determine the border bound points (the left most, top most, right most
         // and bottom most points), which are very useful for collision detection
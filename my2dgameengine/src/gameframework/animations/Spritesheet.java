@@ -1,8 +1,12 @@
 package gameframework.animations;
 
 import gameframework.GameThread;
+import gameframework.resourcemanagement.ResourceManager;
+import gameframework.resourcemanagement.ResourceScope;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
 
 public class Spritesheet
 {
@@ -11,29 +15,79 @@ public class Spritesheet
     private int numRows;
     private int numCols;
     private int spriteCount;
-    private BufferedImage spritesheet;
     private boolean leftToRight;
 
     public Spritesheet(String name, int numRows, int numCols,
                        int spriteCount)
     {
         this.name = name;
-        spritesheet = GameThread.resourceManager.
-                loadImageResource(SPRITESHEET_FOLDER + name, "");
         this.numRows = numRows;
         this.numCols = numCols;
         this.spriteCount = spriteCount;
         leftToRight = true;
+        /* the image is only needed to extract the frames, if no animation shares them yet it's requested
+         * right away so it's loaded in the background by then */
+        requestImageIfNeeded();
     }
 
     public Spritesheet(String name, int numRows, int numCols,
                        int spriteCount, boolean leftToRight) {
-        this(name, numRows, numCols, spriteCount);
+        this.name = name;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.spriteCount = spriteCount;
         this.leftToRight = leftToRight;
+        requestImageIfNeeded();
+    }
+
+    // Start loading the image in the background, unless the frames are already in a cached template
+    private void requestImageIfNeeded()
+    {
+        if (AnimationTemplate.hasTemplate(this))
+            return;
+
+        ResourceManager resourceManager = GameThread.resourceManager;
+        ResourceScope previousScope = resourceManager.getThreadScope();
+        resourceManager.setThreadScope(resourceManager.getTransientScope());
+        try
+        {
+            resourceManager.loadImageResourceAsync(getResourceName(), "");
+        }
+        finally
+        {
+            resourceManager.setThreadScope(previousScope);
+        }
+    }
+
+    /* Spritesheet images are only requested in the transient scope, even while a level creates its objects:
+     * once the frames are copied out of it (see convertToImageArray) nothing needs the image, so it's left to
+     * the cache to evict it when it's over its memory budget. */
+    private BufferedImage loadImage()
+    {
+        ResourceManager resourceManager = GameThread.resourceManager;
+        ResourceScope previousScope = resourceManager.getThreadScope();
+        resourceManager.setThreadScope(resourceManager.getTransientScope());
+        try
+        {
+            return resourceManager.loadImageResource(getResourceName(), "");
+        }
+        finally
+        {
+            resourceManager.setThreadScope(previousScope);
+        }
+    }
+
+    /* Identifies the frames this spritesheet produces, animations created from spritesheets with the
+     * same key share the same animation template. */
+    public String getTemplateKey()
+    {
+        return name + "|" + numRows + "|" + numCols + "|" + spriteCount + "|" + leftToRight;
     }
 
     public BufferedImage[] convertToImageArray()
     {
+        BufferedImage spritesheet = loadImage();
+
         BufferedImage[] images = new BufferedImage[spriteCount];
         int nextImagePos = 0;
 
@@ -42,14 +96,16 @@ public class Spritesheet
             {
                 if (nextImagePos < spriteCount)
                 {
-                    images[nextImagePos] = getSprite(row, col);
+                    images[nextImagePos] = getSprite(spritesheet, row, col);
                     nextImagePos++;
                 }
             }
         return images;
     }
 
-    private BufferedImage getSprite(int row, int col)
+    /* The sprite is copied out of the spritesheet (a subimage would keep the raster of the whole spritesheet
+     * in memory for as long as the frame is used). */
+    private BufferedImage getSprite(BufferedImage spritesheet, int row, int col)
     {
         int spriteWidth = spritesheet.getWidth() / numCols;
         int spriteHeight = spritesheet.getHeight() / numRows;
@@ -57,9 +113,19 @@ public class Spritesheet
         if (!leftToRight)
             col = numCols - (col + 1);
 
-        return spritesheet.getSubimage(col * spriteWidth, row * spriteHeight,
+        BufferedImage sprite = spritesheet.getSubimage(col * spriteWidth, row * spriteHeight,
                 spriteWidth, spriteHeight);
+        //same color model (and palette) as the spritesheet, so the pixels are copied as they are
+        ColorModel colorModel = spritesheet.getColorModel();
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(spriteWidth, spriteHeight);
+        sprite.copyData(raster);
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
 
+    // Name of the image of the spritesheet in the resource manager
+    public String getResourceName()
+    {
+        return SPRITESHEET_FOLDER + name;
     }
 
     public String getName() {
@@ -3,6 +3,7 @@ package gameframework.collision;
 import gameframework.gamecharacters.GameCharacter;
 import gameframework.gameobjects.Direction;
 import gameframework.gameobjects.GameObject;
+import gameframework.animations.CollisionMask;
 import gameframework.animations.SpriteBorder;
 
 import java.awt.*;
@@ -18,6 +19,10 @@ public class CollisionHandler
 
     //attributes related to how we evaluate collisions
     public static boolean disableCollisions;
+    /* If true sprite level collisions are evaluated with the frame collision masks (all opaque pixels
+     * of the sprites, so sprites also collide when one is completely inside the other), otherwise
+     * (default) by looking for common sprite border points. */
+    public static boolean useCollisionMasks = false;
     private boolean enableBordersCollision;    //if true collisions are evaluated based on border points, if false we only use the bounds rectangle
 
     //attributes related to how we resolve collisions
@@ -62,8 +67,13 @@ public class CollisionHandler
             //(For border points collision to be activated both objects must have it enabled)
             if (enableBordersCollision && otherObject.isSpriteBordersCollisionEnabled())
             {
-                borders = objectTracked.getSpriteBorders(true);
-                otherBorders = otherObject.getSpriteBorders(true);
+                if (useCollisionMasks)
+                    return checkMasksCollision(otherObject);
+
+                /* Get the borders without repositioning them (which would clone them), instead the
+                 * positions of the objects are passed as offsets to the intersection tests. */
+                borders = objectTracked.getSpriteBorders(false);
+                otherBorders = otherObject.getSpriteBorders(false);
 
                 /* If this object's sprite borders couldn't be computed then just
                  * base the collision on bounds rect and return true.*/
@@ -71,10 +81,15 @@ public class CollisionHandler
                     objectsCollide = true;
                 else
                 {
+                    int offsetX = getBordersOffsetX(objectTracked), offsetY = getBordersOffsetY(objectTracked);
+                    int otherOffsetX = getBordersOffsetX(otherObject), otherOffsetY = getBordersOffsetY(otherObject);
+
                     if (otherObject.alwaysUseRectCollision == false)
-                        objectsCollide = borders.bordersIntersect(otherBorders);
+                        objectsCollide = borders.bordersIntersect(offsetX, offsetY,
+                                otherBorders, otherOffsetX, otherOffsetY);
                     else
-                        objectsCollide = borders.borderIntersectWithRect(otherBorders);
+                        objectsCollide = borders.borderIntersectWithRect(offsetX, offsetY,
+                                otherBorders, otherOffsetX, otherOffsetY);
                 }
             }
             else
@@ -83,6 +98,38 @@ public class CollisionHandler
         return objectsCollide;
     }
 
+    /* Unmovable objects already have absolute border positions (see getCollisionBounds), the borders
+     * of every other object are relative to the object's position. */
+    private static int getBordersOffsetX(GameObject object)
+    {
+        return object.isUnmovable() ? 0 : object.getX();
+    }
+
+    private static int getBordersOffsetY(GameObject object)
+    {
+        return object.isUnmovable() ? 0 : object.getY();
+    }
+
+    /* Check if the sprites of two objects collide by testing their frame collision masks, this
+     * takes the place of the sprite borders tests and doesn't need to reposition any borders. */
+    private boolean checkMasksCollision(GameObject otherObject)
+    {
+        CollisionMask mask = objectTracked.getCollisionMask();
+        CollisionMask otherMask = otherObject.getCollisionMask();
+
+        /* If this object's collision masks couldn't be computed then just
+         * base the collision on bounds rect and return true.*/
+        if (mask == null || otherMask == null)
+            return true;
+
+        if (otherObject.alwaysUseRectCollision == false)
+            return mask.intersects(objectTracked.getX(), objectTracked.getY(),
+                    otherMask, otherObject.getX(), otherObject.getY());
+        else
+            return mask.intersectsRect(objectTracked.getX(), objectTracked.getY(),
+                    otherObject.getCollisionBounds());
+    }
+
     /* Check if the bound rectangles of two objects collide. Note this is not a final collision
      * test since the objects might not intersect at the sprite borders level despite the bound
      * rectangles intersecting. */
@@ -92,10 +139,10 @@ public class CollisionHandler
 
         Rectangle bounds = objectTracked.getCollisionBounds();
         Rectangle otherBounds = otherObject.getCollisionBounds();
-        Rectangle intersection = bounds.intersection(otherBounds);
 
-        // If the intersection isn't empty then the collision bounds collide
-        if (!intersection.isEmpty())
+        // If the intersection isn't empty then the collision bounds collide (checked
+        // without building the intersection rectangle since this runs for every pair)
+        if (bounds.intersects(otherBounds))
         {
             objectsCollide = true;
         }
@@ -0,0 +1,171 @@
+package gameframework.collision;
+
+import gameframework.gameobjects.GameObject;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class runs the collision narrowphase in two stages, so the expensive part of it can be
+ * spread over several threads (see GameThread.PARALLEL_NARROWPHASE). First the candidate pairs
+ * found by the broadphase (grid neighbors or sweep and prune) are collected, then the collision
+ * tests of all pairs (bounds, masks or sprite borders, none of which change anything) are run by
+ * the threads of a pool, and finally the pairs found to collide are handed to the collision
+ * handlers of the objects one at a time, in the order they were collected. Gameplay code is
+ * never called from other threads, and the outcome doesn't depend on how many threads ran the
+ * tests or in which order they finished.
+ *
+ * A collision handler can move either object of a later pair (resolving a collision moves the
+ * object) or change its animation frame, so the position and frame of both objects are kept when
+ * a pair is collected and the pair is tested again before being handled if any of them changed.
+ */
+public class NarrowPhase
+{
+    private static final int INITIAL_CAPACITY = 256;
+    // pairs tested by a single task, splitting further costs more than it saves
+    private static final int PAIRS_PER_TASK = 64;
+
+    private GameObject[] objects;
+    private GameObject[] otherObjects;
+    private boolean[] collide;
+    /* Position and current borders (which identify the animation frame) of both objects of every
+     * pair, at the time the pair was collected. */
+    private int[] positions;        //x, y, other x, other y
+    private Object[] shapes;        //borders, other borders
+    private int count;
+
+    public NarrowPhase()
+    {
+        objects = new GameObject[INITIAL_CAPACITY];
+        otherObjects = new GameObject[INITIAL_CAPACITY];
+        collide = new boolean[INITIAL_CAPACITY];
+        positions = new int[INITIAL_CAPACITY * 4];
+        shapes = new Object[INITIAL_CAPACITY * 2];
+        count = 0;
+    }
+
+    // Collect a pair whose collision is handled by the first object (as in GameObject.handleCollisionCandidate)
+    public void add(GameObject object, GameObject otherObject)
+    {
+        if (count == objects.length)
+            grow();
+
+        objects[count] = object;
+        otherObjects[count] = otherObject;
+        positions[count * 4] = object.getX();
+        positions[count * 4 + 1] = object.getY();
+        positions[count * 4 + 2] = otherObject.getX();
+        positions[count * 4 + 3] = otherObject.getY();
+        shapes[count * 2] = object.getSpriteBorders(false);
+        shapes[count * 2 + 1] = otherObject.getSpriteBorders(false);
+        count++;
+    }
+
+    private void grow()
+    {
+        int capacity = objects.length * 2;
+        objects = Arrays.copyOf(objects, capacity);
+        otherObjects = Arrays.copyOf(otherObjects, capacity);
+        collide = Arrays.copyOf(collide, capacity);
+        positions = Arrays.copyOf(positions, capacity * 4);
+        shapes = Arrays.copyOf(shapes, capacity * 2);
+    }
+
+    // number of pairs collected since the last resolve
+    public int size()
+    {
+        return count;
+    }
+
+    /* Run the collision tests of every pair collected, on the threads of the given pool (or on the
+     * calling thread if there is no pool or only a few pairs). Nothing can move while the tests run. */
+    public void test(ForkJoinPool pool)
+    {
+        if (pool == null || count <= PAIRS_PER_TASK)
+            testRange(0, count);
+        else
+            pool.invoke(new TestTask(0, count));
+    }
+
+    private void testRange(int start, int end)
+    {
+        for (int i = start; i < end; i++)
+            collide[i] = objects[i].collidesWith(otherObjects[i]);
+    }
+
+    // Splits the pairs in halves until they are small enough to be tested by a single task
+    @SuppressWarnings("serial")
+    private class TestTask extends RecursiveAction
+    {
+        private final int start;
+        private final int end;
+
+        TestTask(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= PAIRS_PER_TASK)
+                testRange(start, end);
+            else
+            {
+                int middle = (start + end) >>> 1;
+                invokeAll(new TestTask(start, middle), new TestTask(middle, end));
+            }
+        }
+    }
+
+    /* Hand every colliding pair to the collision handler of its first object, in the order the pairs
+     * were collected, and start collecting again. As in GameObject.handleCollisionCandidate, once an
+     * object can't handle a collision its following pairs are skipped. */
+    public void resolve()
+    {
+        GameObject failedObject = null;
+
+        for (int i = 0; i < count; i++)
+        {
+            GameObject object = objects[i];
+            GameObject otherObject = otherObjects[i];
+
+            if (object == failedObject)
+                continue;
+
+            // earlier handlers might have changed whether the objects should collide at all
+            if (!object.isCollisionCandidate(otherObject))
+                continue;
+
+            boolean objectsCollide = collide[i];
+            if (changedSinceCollected(i))
+                objectsCollide = object.collidesWith(otherObject);
+
+            if (objectsCollide && !object.handleObjectCollision(otherObject))
+                failedObject = object;
+        }
+        clear();
+    }
+
+    private boolean changedSinceCollected(int i)
+    {
+        GameObject object = objects[i];
+        GameObject otherObject = otherObjects[i];
+
+        return positions[i * 4] != object.getX() || positions[i * 4 + 1] != object.getY() ||
+                positions[i * 4 + 2] != otherObject.getX() || positions[i * 4 + 3] != otherObject.getY() ||
+                shapes[i * 2] != object.getSpriteBorders(false) ||
+                shapes[i * 2 + 1] != otherObject.getSpriteBorders(false);
+    }
+
+    // Drop every pair collected, so removed objects aren't kept around
+    public void clear()
+    {
+        Arrays.fill(objects, 0, count, null);
+        Arrays.fill(otherObjects, 0, count, null);
+        Arrays.fill(shapes, 0, count * 2, null);
+        count = 0;
+    }
+}
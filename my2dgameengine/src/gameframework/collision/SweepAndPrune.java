@@ -0,0 +1,206 @@
+package gameframework.collision;
+
+import gameframework.gameobjects.GameObject;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * This class implements a sweep and prune collision broadphase. Instead of having every moving
+ * object look for collisions among its neighbors during its own update, the engine keeps the
+ * collision bounds of all objects sorted along the x axis and, once per update cycle, sweeps
+ * through them to find the pairs of objects whose bounds overlap. Each candidate pair is found
+ * only once and is then passed on to the regular collision checks and handlers (narrowphase).
+ * Since objects barely move between updates, the list is kept sorted with an insertion sort,
+ * which is almost linear on a nearly sorted list. This works particularly well on wide levels
+ * where most objects are spread out horizontally.
+ */
+public class SweepAndPrune
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    /* Objects sorted by the left side of their collision bounds, and a snapshot of their bounds
+     * (parallel arrays so the sweep doesn't need to touch the objects themselves). */
+    private GameObject[] objects;
+    private int[] minX;
+    private int[] maxX;
+    private int[] minY;
+    private int[] maxY;
+    private int count;
+
+    // number of candidate pairs found in the last sweep
+    private int candidatePairs;
+
+    /* Objects removed while a sweep is in progress (for example by a collision handler) are only
+     * removed once the sweep is done, so the arrays don't shift under it. */
+    private boolean sweeping;
+    private GameObject[] pendingRemovals;
+    private int pendingRemovalsCount;
+
+    /* Visitor used to process every candidate pair found by the sweep. */
+    public interface PairHandler
+    {
+        void handlePair(GameObject object, GameObject otherObject);
+    }
+
+    public SweepAndPrune()
+    {
+        objects = new GameObject[INITIAL_CAPACITY];
+        minX = new int[INITIAL_CAPACITY];
+        maxX = new int[INITIAL_CAPACITY];
+        minY = new int[INITIAL_CAPACITY];
+        maxY = new int[INITIAL_CAPACITY];
+        count = 0;
+        sweeping = false;
+        pendingRemovals = new GameObject[INITIAL_CAPACITY];
+        pendingRemovalsCount = 0;
+    }
+
+    // Start tracking an object, it is sorted into place on the next sweep
+    public void add(GameObject go)
+    {
+        if (count == objects.length)
+        {
+            int capacity = count * 2;
+            objects = Arrays.copyOf(objects, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+        objects[count] = go;
+        storeBounds(count, go.getCollisionBounds());
+        count++;
+    }
+
+    // Stop tracking an object, the order of the remaining objects is preserved
+    public void remove(GameObject go)
+    {
+        if (sweeping)
+        {
+            if (pendingRemovalsCount == pendingRemovals.length)
+                pendingRemovals = Arrays.copyOf(pendingRemovals, pendingRemovalsCount * 2);
+            pendingRemovals[pendingRemovalsCount++] = go;
+            return;
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            if (objects[i] == go)
+            {
+                int moved = count - i - 1;
+                System.arraycopy(objects, i + 1, objects, i, moved);
+                System.arraycopy(minX, i + 1, minX, i, moved);
+                System.arraycopy(maxX, i + 1, maxX, i, moved);
+                System.arraycopy(minY, i + 1, minY, i, moved);
+                System.arraycopy(maxY, i + 1, maxY, i, moved);
+                count--;
+                objects[count] = null;
+                return;
+            }
+        }
+    }
+
+    public void clear()
+    {
+        Arrays.fill(objects, 0, count, null);
+        count = 0;
+    }
+
+    public int getCandidatePairs()
+    {
+        return candidatePairs;
+    }
+
+    private void storeBounds(int index, Rectangle bounds)
+    {
+        minX[index] = bounds.x;
+        maxX[index] = bounds.x + bounds.width;
+        minY[index] = bounds.y;
+        maxY[index] = bounds.y + bounds.height;
+    }
+
+    /* Refresh the bounds of the objects that can move (unmovable objects keep the bounds they
+     * had when they were added) and restore the order along the x axis. */
+    private void sortBounds()
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (!objects[i].isUnmovable())
+                storeBounds(i, objects[i].getCollisionBounds());
+        }
+
+        // Insertion sort, objects only move a few pixels per update so very few swaps are needed
+        for (int i = 1; i < count; i++)
+        {
+            GameObject go = objects[i];
+            int x1 = minX[i], x2 = maxX[i], y1 = minY[i], y2 = maxY[i];
+            int j = i - 1;
+
+            while (j >= 0 && minX[j] > x1)
+            {
+                objects[j + 1] = objects[j];
+                minX[j + 1] = minX[j];
+                maxX[j + 1] = maxX[j];
+                minY[j + 1] = minY[j];
+                maxY[j + 1] = maxY[j];
+                j--;
+            }
+            objects[j + 1] = go;
+            minX[j + 1] = x1;
+            maxX[j + 1] = x2;
+            minY[j + 1] = y1;
+            maxY[j + 1] = y2;
+        }
+    }
+
+    /* Sort the bounds and sweep along the x axis, every pair of objects whose bounds overlap on
+     * both axes is passed to the handler exactly once. Pairs where neither object can move are
+     * skipped since they can't trigger any collision handling. */
+    public void sweep(PairHandler handler)
+    {
+        candidatePairs = 0;
+        sortBounds();
+        sweeping = true;
+
+        try
+        {
+            sweepSortedBounds(handler);
+        }
+        finally
+        {
+            sweeping = false;
+        }
+
+        for (int i = 0; i < pendingRemovalsCount; i++)
+        {
+            remove(pendingRemovals[i]);
+            pendingRemovals[i] = null;
+        }
+        pendingRemovalsCount = 0;
+    }
+
+    private void sweepSortedBounds(PairHandler handler)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            GameObject go = objects[i];
+            boolean movable = !go.isUnmovable();
+            int right = maxX[i];
+
+            /* Same intersection rules as Rectangle.intersects, the bounds must overlap by at
+             * least one pixel on both axes. */
+            for (int j = i + 1; j < count && minX[j] < right; j++)
+            {
+                if (!movable && objects[j].isUnmovable())
+                    continue;
+
+                if (maxX[j] <= minX[i] || minY[j] >= maxY[i] || maxY[j] <= minY[i])
+                    continue;
+
+                candidatePairs++;
+                handler.handlePair(go, objects[j]);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package gameframework.display;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/*
+ * This class draws the background of a level. When a level is loaded the background is split into
+ * fixed size chunks converted to the display's native image format, and every frame only the chunks
+ * within the camera view are drawn (without any scaling). Backgrounds smaller than the display are
+ * scaled to the display size once, instead of being scaled on every frame.
+ */
+public class BackgroundRenderer
+{
+    private static final int CHUNK_SIZE = 256;   //width and height of the background chunks in pixels
+
+    private final BufferedImage background;      //original background image
+    private final int displayWidth;
+    private final int displayHeight;
+
+    // chunks of a large background, or null if the background is smaller than the display
+    private BufferedImage[] chunks;
+    private int cols;
+    private int rows;
+
+    // background scaled to the display size, only used if the background is smaller than the display
+    private BufferedImage scaledBackground;
+
+    public BackgroundRenderer(BufferedImage background, int displayWidth, int displayHeight,
+                              GraphicsConfiguration graphicsConfiguration)
+    {
+        this.background = background;
+        this.displayWidth = displayWidth;
+        this.displayHeight = displayHeight;
+
+        /* The background dimensions have to be both bigger than the display dimensions to be able to
+         * do the scroll through large background effect. Otherwise the whole background is scaled to
+         * fully fit within the display window. */
+        if (background.getWidth() >= displayWidth && background.getHeight() >= displayHeight)
+            createChunks(graphicsConfiguration);
+        else
+        {
+            scaledBackground = createImage(graphicsConfiguration, displayWidth, displayHeight);
+            Graphics g = scaledBackground.createGraphics();
+            g.drawImage(background, 0, 0, displayWidth, displayHeight, null);
+            g.dispose();
+        }
+    }
+
+    public BufferedImage getBackground()
+    {
+        return background;
+    }
+
+    /* Create an image in the format used by the display (drawing images in a different format
+     * requires converting every pixel on every frame). */
+    private BufferedImage createImage(GraphicsConfiguration graphicsConfiguration, int width, int height)
+    {
+        if (graphicsConfiguration != null)
+            return graphicsConfiguration.createCompatibleImage(width, height, background.getTransparency());
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private void createChunks(GraphicsConfiguration graphicsConfiguration)
+    {
+        cols = (background.getWidth() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        rows = (background.getHeight() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunks = new BufferedImage[cols * rows];
+
+        for (int row = 0; row < rows; row++)
+            for (int col = 0; col < cols; col++)
+            {
+                int x = col * CHUNK_SIZE, y = row * CHUNK_SIZE;
+                int width = Math.min(CHUNK_SIZE, background.getWidth() - x);
+                int height = Math.min(CHUNK_SIZE, background.getHeight() - y);
+
+                BufferedImage chunk = createImage(graphicsConfiguration, width, height);
+                Graphics g = chunk.createGraphics();
+                g.drawImage(background, -x, -y, null);
+                g.dispose();
+                chunks[row * cols + col] = chunk;
+            }
+    }
+
+    /* Draw the section of the background seen by the camera, the graphics object must already be
+     * translated to the camera position (see GameDisplay.setCameraPos). */
+    public void render(Graphics g, Point cameraOrigin)
+    {
+        if (chunks == null)
+        {
+            g.drawImage(scaledBackground, cameraOrigin.x, cameraOrigin.y, null);
+            return;
+        }
+
+        int startCol = Math.max(0, cameraOrigin.x / CHUNK_SIZE);
+        int endCol = Math.min(cols - 1, (cameraOrigin.x + displayWidth - 1) / CHUNK_SIZE);
+        int startRow = Math.max(0, cameraOrigin.y / CHUNK_SIZE);
+        int endRow = Math.min(rows - 1, (cameraOrigin.y + displayHeight - 1) / CHUNK_SIZE);
+
+        for (int row = startRow; row <= endRow; row++)
+            for (int col = startCol; col <= endCol; col++)
+                g.drawImage(chunks[row * cols + col], col * CHUNK_SIZE, row * CHUNK_SIZE, null);
+    }
+}
@@ -0,0 +1,146 @@
+package gameframework.display;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/*
+ * Everything needed to draw one frame of the game, captured at the end of an update when rendering
+ * runs on its own thread (see GameThread.PIPELINED_RENDERING): the camera, the background, the frame
+ * image of every object (or chunk of static tiles) within camera view with its position and z (in
+ * drawing order), and the state of the heads up display. Only references to images that never change
+ * are kept, so the
+ * render thread can draw a list while the game keeps updating the objects it came from. Lists are
+ * reused from frame to frame, so capturing a frame usually doesn't allocate.
+ */
+public class DrawList
+{
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int size = 0;
+    private BufferedImage[] images = new BufferedImage[INITIAL_CAPACITY];
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private int[] widths = new int[INITIAL_CAPACITY];    //-1 to draw the image at its own size
+    private int[] heights = new int[INITIAL_CAPACITY];
+    private int[] zs = new int[INITIAL_CAPACITY];
+
+    private final Point cameraOrigin = new Point(0, 0);
+    private BufferedImage background;
+
+    private boolean hudVisible;
+    private Object hudState;
+    private String message = "";
+
+    void clear()
+    {
+        //drop the image references so old frames can be garbage collected
+        Arrays.fill(images, 0, size, null);
+        size = 0;
+        background = null;
+        hudVisible = false;
+        hudState = null;
+        message = "";
+    }
+
+    // Add an image drawn at its own size
+    public void add(BufferedImage image, int x, int y, int z)
+    {
+        add(image, x, y, -1, -1, z);
+    }
+
+    // Add an image drawn scaled to the given size
+    public void add(BufferedImage image, int x, int y, int width, int height, int z)
+    {
+        if (size == images.length)
+            grow();
+
+        images[size] = image;
+        xs[size] = x;
+        ys[size] = y;
+        widths[size] = width;
+        heights[size] = height;
+        zs[size] = z;
+        size++;
+    }
+
+    private void grow()
+    {
+        int capacity = images.length * 2;
+        images = Arrays.copyOf(images, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+    }
+
+    /* Draw every image in the list in order, the graphics context must already be translated to
+     * the camera position. */
+    void render(Graphics g)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (widths[i] < 0)
+                g.drawImage(images[i], xs[i], ys[i], null);
+            else
+                g.drawImage(images[i], xs[i], ys[i], widths[i], heights[i], null);
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getZ(int index)
+    {
+        return zs[index];
+    }
+
+    Point getCameraOrigin()
+    {
+        return cameraOrigin;
+    }
+
+    void setCameraOrigin(Point origin)
+    {
+        cameraOrigin.setLocation(origin);
+    }
+
+    BufferedImage getBackground()
+    {
+        return background;
+    }
+
+    void setBackground(BufferedImage background)
+    {
+        this.background = background;
+    }
+
+    boolean isHudVisible()
+    {
+        return hudVisible;
+    }
+
+    Object getHudState()
+    {
+        return hudState;
+    }
+
+    void setHud(boolean visible, Object state)
+    {
+        hudVisible = visible;
+        hudState = state;
+    }
+
+    String getMessage()
+    {
+        return message;
+    }
+
+    void setMessage(String message)
+    {
+        this.message = message != null ? message : "";
+    }
+}
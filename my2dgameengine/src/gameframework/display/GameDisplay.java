@@ -12,6 +12,7 @@ import gameframework.gamecharacters.Player;
 import gameframework.gameobjects.GameObject;
 import gameframework.inputhandlers.KeyboardHandler;
 import gameframework.inputhandlers.MouseHandler;
+import gameframework.metrics.GameMetrics;
 
 /*
  * This is the game display class which is in charge of all rendering to the screen, the class is inherited
@@ -31,7 +32,7 @@ public class GameDisplay extends JFrame
     private MouseHandler mouseHandler;
 
     // camera attributes
-    private static Point cameraOrigin;
+    private static Point cameraOrigin = new Point(0,0);
 
     // Heads Up Display panel
     private static HUDPanel hud = null;  //The heads up display is initially null (game developers are supposed to set it)
@@ -49,6 +50,19 @@ public class GameDisplay extends JFrame
     /****/
 
     private static BufferedImage background;
+    // draws the background of the current level, created once per level
+    private BackgroundRenderer backgroundRenderer;
+    private BufferedImage rendererBackground;     //background the renderer was created for
+    private static GameLevel backgroundLevel;
+
+    /* When rendering is pipelined (see GameThread.PIPELINED_RENDERING) the game thread captures every
+     * frame into a draw list, and the render thread draws the latest one. These attributes are only
+     * used in that case, the camera origin and the background drawn by the render thread are the
+     * ones captured in the draw list it is drawing. */
+    private TripleBuffer<DrawList> drawLists = null;
+    private RenderThread renderThread = null;
+    private Point renderCameraOrigin = null;
+    private BufferedImage renderedBackground = null;
 
     public GameDisplay(GameData data)
     {
@@ -60,18 +74,12 @@ public class GameDisplay extends JFrame
         this.data = data;
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        // initialize camera origin
-        cameraOrigin = new Point(0,0);
-
         // setup buffer strategy of 2 buffers/layers
         createBufferStrategy(2);
         bufferStrategy = getBufferStrategy();
 
         // load game background
-        GameLevel level = GameThread.getCurrentLevel();
-        background = level != null ?
-                GameThread.resourceManager.loadImageResource(level.getBackground(), level.getName()):
-                null;
+        loadLevelBackground();
 
         // add input handlers for keyboard, mouse, controllers, etc
         keyboardHandler = new KeyboardHandler();
@@ -79,12 +87,22 @@ public class GameDisplay extends JFrame
         mouseHandler = new MouseHandler(this, data);
         addMouseListener(mouseHandler);
         addMouseMotionListener(mouseHandler);
+        GameThread.inputQueue.setKeyboardHandler(keyboardHandler);
+        GameThread.inputQueue.setMouseHandler(mouseHandler);
 
         setMessage("");
         setMessageColor(Color.WHITE);
         messageFont = DEFAULT_MESSAGE_FONT;
         messageOffsetX = DEFAULT_MESSAGE_OFFSET;
         messageOffsetY = DEFAULT_MESSAGE_OFFSET;
+
+        if (GameThread.PIPELINED_RENDERING)
+        {
+            drawLists = new TripleBuffer<DrawList>(new DrawList(), new DrawList(), new DrawList());
+            renderedBackground = background;
+            renderThread = new RenderThread(this, drawLists);
+            renderThread.start();
+        }
     }
 
     public void setData(GameData data)
@@ -147,43 +165,205 @@ public class GameDisplay extends JFrame
         }
     }
 
+    // Refresh rate of the screen in frames per second, or the update rate of the game if unknown
+    public static int getDisplayRefreshRate()
+    {
+        int refreshRate = DisplayMode.REFRESH_RATE_UNKNOWN;
+        if (!GraphicsEnvironment.isHeadless())
+            refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDisplayMode().getRefreshRate();
+
+        return refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN ? refreshRate : GameThread.UPDATES_PER_SECOND;
+    }
+
     public void changeKeyboardHandler(KeyboardHandler newKeyboardHandler)
     {
         removeKeyListener(keyboardHandler);
         addKeyListener(newKeyboardHandler);
+        keyboardHandler = newKeyboardHandler;
+        GameThread.inputQueue.setKeyboardHandler(newKeyboardHandler);
     }
 
     public void render()
     {
+        //when rendering is pipelined the game thread only captures the frame for the render thread
+        if (renderThread != null)
+        {
+            publishDrawList();
+            return;
+        }
+
         Graphics g = bufferStrategy.getDrawGraphics();
 
         //make sure we are using the proper background for this level
         GameLevel level = GameThread.getCurrentLevel();
-        background = level != null ?
-                GameThread.resourceManager.loadImageResource(level.getBackground(), level.getName()):
-                null;
+        if (level != backgroundLevel || backgroundRenderer == null || rendererBackground != background)
+            loadLevelBackground();
 
         Player player = Player.getActivePlayer();
-        setCameraPos(g, new Point(player.getX(), player.getY()));
+        //the camera follows the player where it is drawn (see GameObject.getRenderX)
+        setCameraPos(g, new Point(player.getRenderX(), player.getRenderY()));
+        GameMetrics.beginPhase(GameMetrics.BACKGROUND_DRAW);
         drawCameraScreen(g);
+        GameMetrics.endPhase(GameMetrics.BACKGROUND_DRAW);
+
+        /* Static tiles baked into chunks are drawn all at once in place of the tiles, unless we are
+         * drawing the borders of the objects (which has to be done for every tile). */
+        StaticTileLayer staticTiles = level != null ? level.getStaticTiles() : null;
+        boolean useStaticTiles = staticTiles != null &&
+                !GameObject.drawBoundsRect && !GameObject.drawSpriteBorders;
+        boolean staticTilesRendered = !useStaticTiles;
 
         /* This code is in charge of rendering the objects in the game to the display. We are
          * optimizing the rendering process by only drawing those objects that are currently
          * showing on the screen. */
+        GameMetrics.beginPhase(GameMetrics.OBJECT_DRAW);
         for (GameObject object : data.getObjects())
         {
+            //objects are sorted by z, draw the chunks when reaching objects in front of the tiles
+            if (!staticTilesRendered && object.getZ() < staticTiles.getZ())
+            {
+                renderStaticTiles(g, staticTiles);
+                staticTilesRendered = true;
+            }
+
+            if (useStaticTiles && object.isBaked())
+                continue;
+
             if ( objectWithinCameraView(object) )
                 object.render(g);
         }
 
+        if (!staticTilesRendered)
+            renderStaticTiles(g, staticTiles);
+        GameMetrics.endPhase(GameMetrics.OBJECT_DRAW);
+
         //render heads up display if available
+        GameMetrics.beginPhase(GameMetrics.HUD);
         renderHUD(g);
 
-        renderDisplayMessage(g);
+        renderDisplayMessage(g, message, cameraOrigin);
+        GameMetrics.endPhase(GameMetrics.HUD);
+
+        g.dispose();
+        GameMetrics.beginPhase(GameMetrics.SHOW);
+        bufferStrategy.show();
+        GameMetrics.endPhase(GameMetrics.SHOW);
+
+        /* Objects within camera view are updated more often, so between frames the camera must be
+         * where the player actually is (not where it was drawn). */
+        if (GameThread.getInterpolationAlpha() < 1)
+            centerCamera(new Point(player.getX(), player.getY()));
+
+        GameMetrics.endFrame();
+
+    }
+
+    /* Capture everything needed to draw the current frame into a draw list and hand it to the render
+     * thread. This is done in the game thread between updates, so the objects don't change while
+     * they are captured. */
+    private void publishDrawList()
+    {
+        GameMetrics.beginPhase(GameMetrics.SNAPSHOT);
+        DrawList drawList = drawLists.getBackBuffer();
+        drawList.clear();
+
+        GameLevel level = GameThread.getCurrentLevel();
+        if (level != backgroundLevel)
+            loadLevelBackgroundImage();
+        drawList.setBackground(background);
+
+        Player player = Player.getActivePlayer();
+        centerCamera(new Point(player.getRenderX(), player.getRenderY()));
+        drawList.setCameraOrigin(cameraOrigin);
+
+        /* Tiles baked into static tile chunks are drawn all at once, right before the objects in front of
+         * them. The chunks of removed tiles are baked again here (not by the render thread), and only the
+         * chunk images go in the draw list. */
+        StaticTileLayer staticTiles = level != null && !GameObject.disableRendering ? level.getStaticTiles() : null;
+        boolean staticTilesAdded = staticTiles == null;
+        Rectangle cameraBounds = new Rectangle(cameraOrigin.x, cameraOrigin.y, displayWidth, displayHeight);
+
+        // the input threads can add or remove objects, keep them from doing it while we capture the objects
+        synchronized (data)
+        {
+            for (GameObject object : data.getObjects())
+            {
+                if (!staticTilesAdded && object.getZ() < staticTiles.getZ())
+                {
+                    staticTiles.addToDrawList(drawList, cameraBounds);
+                    staticTilesAdded = true;
+                }
+
+                if (staticTiles != null && object.isBaked())
+                    continue;
+
+                if ( objectWithinCameraView(object) )
+                    object.addToDrawList(drawList);
+            }
+
+            if (!staticTilesAdded)
+                staticTiles.addToDrawList(drawList, cameraBounds);
+        }
+
+        boolean hudVisible = hud != null && hud.isEnabled();
+        drawList.setHud(hudVisible, hudVisible ? hud.captureState() : null);
+        drawList.setMessage(message);
+
+        // see render
+        if (GameThread.getInterpolationAlpha() < 1)
+            centerCamera(new Point(player.getX(), player.getY()));
+
+        drawLists.publish();
+        renderThread.frameAvailable();
+        GameMetrics.endPhase(GameMetrics.SNAPSHOT);
+    }
+
+    // Draw a frame captured by the game thread, called by the render thread
+    void render(DrawList drawList)
+    {
+        Graphics g = bufferStrategy.getDrawGraphics();
+
+        //the background renderer is only recreated when the level (and its background) changes
+        if (drawList.getBackground() != renderedBackground)
+        {
+            renderedBackground = drawList.getBackground();
+            backgroundRenderer = renderedBackground != null ?
+                    new BackgroundRenderer(renderedBackground, displayWidth, displayHeight, getGraphicsConfiguration()) :
+                    null;
+        }
+
+        renderCameraOrigin = drawList.getCameraOrigin();
+        g.translate(-renderCameraOrigin.x, -renderCameraOrigin.y);
+
+        GameMetrics.beginPhase(GameMetrics.BACKGROUND_DRAW);
+        if (backgroundRenderer != null)
+            backgroundRenderer.render(g, renderCameraOrigin);
+        GameMetrics.endPhase(GameMetrics.BACKGROUND_DRAW);
+
+        GameMetrics.beginPhase(GameMetrics.OBJECT_DRAW);
+        drawList.render(g);
+        GameMetrics.endPhase(GameMetrics.OBJECT_DRAW);
+
+        GameMetrics.beginPhase(GameMetrics.HUD);
+        if (drawList.isHudVisible())
+            hud.render(g, drawList.getHudState());
+
+        renderDisplayMessage(g, drawList.getMessage(), renderCameraOrigin);
+        GameMetrics.endPhase(GameMetrics.HUD);
 
         g.dispose();
+        GameMetrics.beginPhase(GameMetrics.SHOW);
         bufferStrategy.show();
+        GameMetrics.endPhase(GameMetrics.SHOW);
 
+        GameMetrics.endFrame();
+    }
+
+    private void renderStaticTiles(Graphics g, StaticTileLayer staticTiles)
+    {
+        if (!GameObject.disableRendering)
+            staticTiles.render(g, new Rectangle(cameraOrigin.x, cameraOrigin.y, displayWidth, displayHeight));
     }
 
     private void renderHUD(Graphics g)
@@ -193,44 +373,66 @@ public class GameDisplay extends JFrame
     }
 
     //If a message is set then display it on top of the screen
-    private void renderDisplayMessage(Graphics g)
+    private void renderDisplayMessage(Graphics g, String message, Point origin)
     {
         if ( !message.isEmpty())
         {
             g.setColor(messageColor);
             g.setFont(messageFont);
-            g.drawString(message, cameraOrigin.x + messageOffsetX,
-                    cameraOrigin.y + messageOffsetY);
+            g.drawString(message, origin.x + messageOffsetX,
+                    origin.y + messageOffsetY);
         }
     }
 
-    private BufferedImage createCameraScreen()
+    /* Load the background of the current level and prepare it for rendering, this is only done
+     * when the level changes instead of on every frame. */
+    private void loadLevelBackground()
     {
-        BufferedImage cameraScreenImage;
-
-        /* The background dimensions have to be both bigger than the display dimensions to create
-         * a screen subimage, and be able to do the scroll through large background effect. Otherwise
-         * the whole background is simply scaled every time to fully fit within the display window.*/
-        if (background.getWidth() >= displayWidth &&
-                background.getHeight() >= displayHeight )
-            cameraScreenImage = background.getSubimage(cameraOrigin.x, cameraOrigin.y,
-                    displayWidth, displayHeight);
-        else
-            cameraScreenImage = background;
-
-        return cameraScreenImage;
+        //the image is loaded by the game thread as soon as the level changes (see updateCamera)
+        if (GameThread.getCurrentLevel() != backgroundLevel)
+            loadLevelBackgroundImage();
+        backgroundRenderer = background != null ?
+                new BackgroundRenderer(background, displayWidth, displayHeight, getGraphicsConfiguration()) :
+                null;
+        rendererBackground = background;
     }
 
-    private void drawCameraScreen(Graphics g)
+    /* Load the background image of the current level, the background determines how far the camera
+     * can move (and the size of the area grid), so this is needed even when there is no display. */
+    public static void loadLevelBackgroundImage()
     {
-        BufferedImage cameraScreen =
-                createCameraScreen();
-        g.drawImage(cameraScreen, cameraOrigin.x, cameraOrigin.y,  displayWidth, displayHeight, null);
+        GameLevel level = GameThread.getCurrentLevel();
+        background = level != null ?
+                GameThread.resourceManager.loadImageResource(level.getBackground(), level.getName()):
+                null;
+        backgroundLevel = level;
+    }
 
+    /* Called after every update (see GameThread.update), keeps the camera following the player whether
+     * or not frames are rendered, so the same objects are considered to be within camera view (which
+     * affects how often they are updated) with or without a display and at any frame rate. */
+    public static void updateCamera()
+    {
+        if (GameThread.getCurrentLevel() != backgroundLevel)
+            loadLevelBackgroundImage();
+
+        Player player = Player.getActivePlayer();
+        if (player != null)
+            centerCamera(new Point(player.getX(), player.getY()));
+    }
+
+    private void drawCameraScreen(Graphics g)
+    {
+        if (backgroundRenderer != null)
+            backgroundRenderer.render(g, cameraOrigin);
     }
 
+    /* Returns the camera origin, for the render thread (when rendering is pipelined) this is the camera
+     * origin of the frame being drawn, which might be an update behind the camera of the game. */
     public Point getCameraPosition()
     {
+        if (renderThread != null && Thread.currentThread() == renderThread)
+            return renderCameraOrigin;
         return cameraOrigin;
     }
 
@@ -239,6 +441,14 @@ public class GameDisplay extends JFrame
      * section of the large background at the current camera position.
      */
     public void setCameraPos(Graphics g, Point cameraCenter)
+    {
+        centerCamera(cameraCenter);
+
+        //This call effectively sets the origin of the graphics context to our desired camera position.
+        g.translate(-cameraOrigin.x, -cameraOrigin.y);
+    }
+
+    private static void centerCamera(Point cameraCenter)
     {
         cameraOrigin.x = cameraCenter.x - displayWidth / 2;
         cameraOrigin.y = cameraCenter.y - displayHeight / 2;
@@ -252,21 +462,30 @@ public class GameDisplay extends JFrame
             cameraOrigin.x = 0;
         if (cameraOrigin.y < 0)
             cameraOrigin.y = 0;
+        if (background == null)
+            return;
         if ( cameraOrigin.x > background.getWidth() - displayWidth)
             cameraOrigin.x = background.getWidth() - displayWidth;
         if ( cameraOrigin.y > background.getHeight() - displayHeight)
             cameraOrigin.y = background.getHeight() - displayHeight;
+    }
 
-        //This call effectively sets the origin of the graphics context to our desired camera position.
-        g.translate(-cameraOrigin.x, -cameraOrigin.y);
+    public static Dimension getDisplayDimension()
+    {
+        return new Dimension(displayWidth, displayHeight);
+    }
+
+    // Returns the area of the game world within the current camera view
+    public static Rectangle getCameraBounds()
+    {
+        return new Rectangle(cameraOrigin.x, cameraOrigin.y, displayWidth, displayHeight);
     }
 
     //Returns true if object is within the current camera view.
     public static boolean objectWithinCameraView(GameObject go)
     {
         boolean withinView = false;
-        Rectangle cameraBounds = new Rectangle(cameraOrigin.x, cameraOrigin.y,
-                displayWidth, displayHeight);
+        Rectangle cameraBounds = getCameraBounds();
 
         if (
                 go.isWithinBounds(cameraBounds)
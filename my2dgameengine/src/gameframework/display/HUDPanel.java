@@ -28,6 +28,9 @@ public abstract class HUDPanel
 
     private GameDisplay gameDisplay;
 
+    // game state captured for the frame being drawn by the render thread (see captureState)
+    private Object renderState = null;
+
     public HUDPanel(GameDisplay gameDisplay)
     {
         this.gameDisplay = gameDisplay;
@@ -70,6 +73,28 @@ public abstract class HUDPanel
 
     }
 
+    // Draw the HUD with the state captured for a frame
+    void render(Graphics g, Object state)
+    {
+        renderState = state;
+        render(g);
+    }
+
+    /* When rendering runs on its own thread (see GameThread.PIPELINED_RENDERING), the HUD is drawn
+     * while the game already updates the next frame. HUDs that display game state (health, score,
+     * etc) should override this method and return a copy of that state, it is called at the end of
+     * every update, and while the HUD is drawn the copy captured for that frame is returned by
+     * getRenderState (which is null when rendering isn't pipelined). */
+    public Object captureState()
+    {
+        return null;
+    }
+
+    protected Object getRenderState()
+    {
+        return renderState;
+    }
+
     public void reposition(int newPosX, int newPosY)
     {
         posX = newPosX;
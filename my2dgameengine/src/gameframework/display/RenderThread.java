@@ -0,0 +1,56 @@
+package gameframework.display;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Draws the frames captured by the game thread when rendering is pipelined (see
+ * GameThread.PIPELINED_RENDERING). The game thread publishes a draw list at the end of every update
+ * and wakes this thread up, which always draws the latest list published, so while a frame is being
+ * drawn the game can already be updating the next one.
+ */
+class RenderThread extends Thread
+{
+    // Longest time to wait for a frame before checking again (in case a wake up is missed)
+    private static final long MAX_WAIT_NANOS = 100000000;
+
+    private final GameDisplay display;
+    private final TripleBuffer<DrawList> drawLists;
+
+    RenderThread(GameDisplay display, TripleBuffer<DrawList> drawLists)
+    {
+        super("Render thread");
+        this.display = display;
+        this.drawLists = drawLists;
+        //the game ends when the game thread ends
+        setDaemon(true);
+    }
+
+    // Called by the game thread after publishing a draw list
+    void frameAvailable()
+    {
+        LockSupport.unpark(this);
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            DrawList drawList = drawLists.takeLatest();
+            if (drawList != null)
+            {
+                try
+                {
+                    display.render(drawList);
+                }
+                catch (Exception e)
+                {
+                    //a frame that can't be drawn shouldn't stop the following ones
+                    e.printStackTrace();
+                }
+            }
+            else
+                LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+        }
+    }
+}
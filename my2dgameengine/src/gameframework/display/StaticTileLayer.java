@@ -0,0 +1,239 @@
+package gameframework.display;
+
+import gameframework.animations.Animation;
+import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjects;
+import gameframework.gameobjects.InanimateObject;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/*
+ * Most of the objects in a level are tiles (inanimate objects that never move, never update and
+ * always look the same). Instead of drawing each one of them every frame, this class draws (bakes)
+ * all of them once into a grid of chunk images when the level loads, and the display draws the few
+ * chunks within the camera view instead. The tiles are still in the game objects list, so they keep
+ * working as collision geometry, they are just skipped by the display while baked.
+ */
+public class StaticTileLayer
+{
+    private static final int CHUNK_SIZE = 512;   //width and height of every chunk in pixels
+
+    /* Chunks are stored in a grid covering the area where there are tiles, the grid origin is
+     * aligned to the chunk size. */
+    private int originX;
+    private int originY;
+    private int cols;
+    private int rows;
+    private BufferedImage[] chunkImages;
+    private ArrayList<ArrayList<GameObject>> chunkTiles;   //null for chunks without tiles
+    private boolean[] chunkDirty;
+
+    private final GameObjects objects;
+    private final ArrayList<GameObject> tiles;
+    private final int z;                 //z value of the tiles, the chunks are drawn in their place
+    private int lastRemovalCount;
+
+    private StaticTileLayer(GameObjects objects, ArrayList<GameObject> tiles)
+    {
+        this.objects = objects;
+        this.tiles = tiles;
+        z = tiles.get(0).getZ();
+        lastRemovalCount = objects.getRemovalCount();
+    }
+
+    public int getZ()
+    {
+        return z;
+    }
+
+    /* Returns true if the object is a plain tile that can be baked, objects extending inanimate
+     * object are never baked since they might change their animations or draw themselves differently. */
+    public static boolean isStaticTile(GameObject go)
+    {
+        return go.getClass() == InanimateObject.class && go.isUnmovable() && !go.requiresUpdating() &&
+                go.getActiveAnimation() != null;
+    }
+
+    /* Bake all static tiles in the game objects list into chunk images, returns null if the list
+     * has no static tiles. */
+    public static StaticTileLayer bake(GameObjects objects)
+    {
+        ArrayList<GameObject> tiles = new ArrayList<GameObject>();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+        for (GameObject go : objects)
+        {
+            //all baked tiles must share the same z value (the engine gives the same z to all inanimate objects)
+            if (!isStaticTile(go) || (!tiles.isEmpty() && go.getZ() != tiles.get(0).getZ()))
+                continue;
+
+            tiles.add(go);
+            Rectangle bounds = go.getBounds();
+            minX = Math.min(minX, bounds.x);
+            minY = Math.min(minY, bounds.y);
+            maxX = Math.max(maxX, bounds.x + bounds.width);
+            maxY = Math.max(maxY, bounds.y + bounds.height);
+        }
+
+        if (tiles.isEmpty())
+            return null;
+
+        StaticTileLayer layer = new StaticTileLayer(objects, tiles);
+        layer.createChunks(minX, minY, maxX, maxY);
+        return layer;
+    }
+
+    private void createChunks(int minX, int minY, int maxX, int maxY)
+    {
+        originX = Math.floorDiv(minX, CHUNK_SIZE) * CHUNK_SIZE;
+        originY = Math.floorDiv(minY, CHUNK_SIZE) * CHUNK_SIZE;
+        cols = Math.floorDiv(maxX - 1 - originX, CHUNK_SIZE) + 1;
+        rows = Math.floorDiv(maxY - 1 - originY, CHUNK_SIZE) + 1;
+
+        chunkImages = new BufferedImage[cols * rows];
+        chunkTiles = new ArrayList<ArrayList<GameObject>>(cols * rows);
+        for (int chunk = 0; chunk < cols * rows; chunk++)
+            chunkTiles.add(null);
+        chunkDirty = new boolean[cols * rows];
+
+        //register every tile in all the chunks it overlaps
+        for (GameObject tile : tiles)
+        {
+            Rectangle bounds = tile.getBounds();
+            int startCol = (bounds.x - originX) / CHUNK_SIZE;
+            int endCol = (bounds.x + bounds.width - 1 - originX) / CHUNK_SIZE;
+            int startRow = (bounds.y - originY) / CHUNK_SIZE;
+            int endRow = (bounds.y + bounds.height - 1 - originY) / CHUNK_SIZE;
+
+            for (int row = startRow; row <= endRow; row++)
+                for (int col = startCol; col <= endCol; col++)
+                {
+                    int chunk = row * cols + col;
+                    if (chunkTiles.get(chunk) == null)
+                        chunkTiles.set(chunk, new ArrayList<GameObject>());
+                    chunkTiles.get(chunk).add(tile);
+                    chunkDirty[chunk] = true;
+                }
+            tile.setBaked(true);
+        }
+
+        for (int chunk = 0; chunk < chunkImages.length; chunk++)
+        {
+            if (chunkDirty[chunk])
+                bakeChunk(chunk);
+        }
+    }
+
+    // Draw all tiles registered in a chunk into the chunk image
+    private void bakeChunk(int chunk)
+    {
+        chunkDirty[chunk] = false;
+        ArrayList<GameObject> chunkObjects = chunkTiles.get(chunk);
+
+        if (chunkObjects == null || chunkObjects.isEmpty())
+        {
+            chunkImages[chunk] = null;
+            return;
+        }
+
+        BufferedImage image = new BufferedImage(CHUNK_SIZE, CHUNK_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.translate(-(originX + (chunk % cols) * CHUNK_SIZE), -(originY + (chunk / cols) * CHUNK_SIZE));
+
+        for (GameObject tile : chunkObjects)
+        {
+            Animation animation = tile.getActiveAnimation();
+            animation.drawFrame(g, tile.getX(), tile.getY());
+        }
+        g.dispose();
+        chunkImages[chunk] = image;
+    }
+
+    /* Tiles can still be removed from the game (for example destroyed walls), when that happens the
+     * chunks that contained them are baked again. */
+    private void removeDeletedTiles()
+    {
+        int removalCount = objects.getRemovalCount();
+        if (removalCount == lastRemovalCount)
+            return;
+        lastRemovalCount = removalCount;
+
+        for (int i = tiles.size() - 1; i >= 0; i--)
+        {
+            GameObject tile = tiles.get(i);
+            if (objects.contains(tile))
+                continue;
+
+            tiles.remove(i);
+            tile.setBaked(false);
+            for (int chunk = 0; chunk < chunkTiles.size(); chunk++)
+            {
+                if (chunkTiles.get(chunk) != null && chunkTiles.get(chunk).remove(tile))
+                    chunkDirty[chunk] = true;
+            }
+        }
+    }
+
+    /* Bake again the chunks whose tiles were removed from the game. This changes the tiles and the chunks
+     * of the layer, so it must be done by the thread updating the game (see render and addToDrawList). */
+    private void update()
+    {
+        removeDeletedTiles();
+        for (int chunk = 0; chunk < chunkDirty.length; chunk++)
+        {
+            if (chunkDirty[chunk])
+                bakeChunk(chunk);
+        }
+    }
+
+    // Draw the chunks within the given camera view
+    public void render(Graphics g, Rectangle cameraBounds)
+    {
+        update();
+
+        int startCol = Math.max(0, Math.floorDiv(cameraBounds.x - originX, CHUNK_SIZE));
+        int endCol = Math.min(cols - 1, Math.floorDiv(cameraBounds.x + cameraBounds.width - 1 - originX, CHUNK_SIZE));
+        int startRow = Math.max(0, Math.floorDiv(cameraBounds.y - originY, CHUNK_SIZE));
+        int endRow = Math.min(rows - 1, Math.floorDiv(cameraBounds.y + cameraBounds.height - 1 - originY, CHUNK_SIZE));
+
+        for (int row = startRow; row <= endRow; row++)
+            for (int col = startCol; col <= endCol; col++)
+            {
+                int chunk = row * cols + col;
+                if (chunkImages[chunk] != null)
+                    g.drawImage(chunkImages[chunk], originX + col * CHUNK_SIZE, originY + row * CHUNK_SIZE, null);
+            }
+    }
+
+    /* Add the chunks within the given camera view to a draw list (see GameDisplay.publishDrawList), in
+     * place of the tiles. A chunk baked again gets a new image, so the images in the list never change
+     * and the render thread only has to draw them. */
+    public void addToDrawList(DrawList drawList, Rectangle cameraBounds)
+    {
+        update();
+
+        int startCol = Math.max(0, Math.floorDiv(cameraBounds.x - originX, CHUNK_SIZE));
+        int endCol = Math.min(cols - 1, Math.floorDiv(cameraBounds.x + cameraBounds.width - 1 - originX, CHUNK_SIZE));
+        int startRow = Math.max(0, Math.floorDiv(cameraBounds.y - originY, CHUNK_SIZE));
+        int endRow = Math.min(rows - 1, Math.floorDiv(cameraBounds.y + cameraBounds.height - 1 - originY, CHUNK_SIZE));
+
+        for (int row = startRow; row <= endRow; row++)
+            for (int col = startCol; col <= endCol; col++)
+            {
+                int chunk = row * cols + col;
+                if (chunkImages[chunk] != null)
+                    drawList.add(chunkImages[chunk], originX + col * CHUNK_SIZE, originY + row * CHUNK_SIZE, z);
+            }
+    }
+
+    // Stop skipping the baked tiles, this has to be done if the layer is no longer used by the display
+    public void release()
+    {
+        for (GameObject tile : tiles)
+            tile.setBaked(false);
+        tiles.clear();
+    }
+}
@@ -0,0 +1,55 @@
+package gameframework.display;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Lock-free triple buffer used to hand data from one producer thread to one consumer thread, where
+ * the consumer only cares about the latest data (like frames to draw). The producer fills the back
+ * buffer and publishes it, which swaps it with the middle buffer; the consumer takes the latest
+ * published data by swapping its front buffer with the middle buffer. Neither of them ever waits
+ * for the other, and neither can see a buffer while the other one is using it. If the producer
+ * publishes faster than the consumer takes, the data in between is simply overwritten.
+ */
+public class TripleBuffer<T>
+{
+    private static final int INDEX_MASK = 3;
+    private static final int NEW_DATA = 4;      //set while the middle buffer holds data not taken yet
+
+    private final Object[] buffers;
+    private final AtomicInteger middle;         //index of the middle buffer (and the NEW_DATA flag)
+    private int back;                           //only used by the producer
+    private int front;                          //only used by the consumer
+
+    public TripleBuffer(T first, T second, T third)
+    {
+        buffers = new Object[] { first, second, third };
+        back = 0;
+        middle = new AtomicInteger(1);
+        front = 2;
+    }
+
+    // Buffer the producer fills before publishing it
+    @SuppressWarnings("unchecked")
+    public T getBackBuffer()
+    {
+        return (T)buffers[back];
+    }
+
+    // Make the back buffer the latest data, the producer gets a new back buffer
+    public void publish()
+    {
+        back = middle.getAndSet(back | NEW_DATA) & INDEX_MASK;
+    }
+
+    /* Returns the latest published data, or null if nothing was published since the last call. The
+     * returned buffer belongs to the consumer until it takes the next one. */
+    @SuppressWarnings("unchecked")
+    public T takeLatest()
+    {
+        if ((middle.get() & NEW_DATA) == 0)
+            return null;
+
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return (T)buffers[front];
+    }
+}
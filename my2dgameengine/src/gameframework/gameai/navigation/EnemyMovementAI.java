@@ -2,6 +2,7 @@ package gameframework.gameai.navigation;
 
 import gameframework.gamecharacters.GameCharacter;
 import gameframework.gameobjects.GameObjects;
+import gameframework.metrics.GameMetrics;
 
 public class EnemyMovementAI {
 
@@ -26,18 +27,23 @@ public class EnemyMovementAI {
      */
     public boolean update(GameObjects objects, long currentTime, int playerX) {
 
-        int dx = playerX - enemy.getX();
-        int dist = Math.abs(dx);
+        GameMetrics.beginPhase(GameMetrics.AI);
+        try {
+            int dx = playerX - enemy.getX();
+            int dist = Math.abs(dx);
 
-        // Player near -> CHASE
-        if (dist < detectionRange) {
-            return chase.chase(objects, currentTime, playerX);
-        }
+            // Player near -> CHASE
+            if (dist < detectionRange) {
+                return chase.chase(objects, currentTime, playerX);
+            }
 
-        // Player too far -> PATROL
-        chase.resetAssault();
-        patrol.patrol(objects);
+            // Player too far -> PATROL
+            chase.resetAssault();
+            patrol.patrol(objects);
 
-        return false;
+            return false;
+        } finally {
+            GameMetrics.endPhase(GameMetrics.AI);
+        }
     }
 }
\ No newline at end of file
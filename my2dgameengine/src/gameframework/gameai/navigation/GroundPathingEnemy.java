@@ -104,6 +104,15 @@ public abstract class GroundPathingEnemy extends GameCharacter implements EnemyP
         }
     }
 
+    /**
+     * Enemies chase the player, which may be in another region, so they are updated serially
+     * (see GameObject.canUpdateInParallel).
+     */
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     /**
      * Update called every frame to handle movement, patrolling, and chasing.
      * Patrol is resumed if the player leaves detection range.
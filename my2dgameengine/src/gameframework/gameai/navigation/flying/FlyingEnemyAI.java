@@ -2,6 +2,7 @@ package gameframework.gameai.navigation.flying;
 
 import gameframework.gamecharacters.GameCharacter;
 import gameframework.gamecharacters.Player;
+import gameframework.metrics.GameMetrics;
 
 public class FlyingEnemyAI {
 
@@ -24,21 +25,26 @@ public class FlyingEnemyAI {
 
     public boolean update(Player target) {
 
-        if (target == null) {
-            patrolBehavior.patrol();
-            return false;  // not chasing
-        }
-
-        double dx = target.getX() - enemy.getX();
-        double dy = target.getY() - enemy.getY();
-        double dist = Math.sqrt(dx * dx + dy * dy);
-
-        if (dist <= detectionRange) {
-            chaseBehavior.chase(target);
-            return true;   // chasing
-        } else {
-            patrolBehavior.patrol();
-            return false;  // patrolling
+        GameMetrics.beginPhase(GameMetrics.AI);
+        try {
+            if (target == null) {
+                patrolBehavior.patrol();
+                return false;  // not chasing
+            }
+
+            double dx = target.getX() - enemy.getX();
+            double dy = target.getY() - enemy.getY();
+            double dist = Math.sqrt(dx * dx + dy * dy);
+
+            if (dist <= detectionRange) {
+                chaseBehavior.chase(target);
+                return true;   // chasing
+            } else {
+                patrolBehavior.patrol();
+                return false;  // patrolling
+            }
+        } finally {
+            GameMetrics.endPhase(GameMetrics.AI);
         }
     }
 }
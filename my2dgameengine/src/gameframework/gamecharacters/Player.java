@@ -1,5 +1,6 @@
 package gameframework.gamecharacters;
 
+import gameframework.GameClock;
 import gameframework.gameobjects.Direction;
 import gameframework.gameobjects.GameObjectType;
 import gameframework.gameobjects.GameObjects;
@@ -112,6 +113,13 @@ public abstract class Player extends GameCharacter
         }
     }
 
+    // the player interacts with everything around it, and drives the camera and the HUD
+    @Override
+    public boolean canUpdateInParallel()
+    {
+        return false;
+    }
+
     @Override
     protected void performJump()
     {
@@ -126,7 +134,7 @@ public abstract class Player extends GameCharacter
             dashSpeed = speed * DASH_SPEED_MULTIPLIER;
             System.out.println("This is speed " + speed);
             System.out.println("This is dashSpeed " + dashSpeed);
-            long now = System.currentTimeMillis();
+            long now = GameClock.currentTimeMillis();
             if (now < DASH_COOL_DOWN) //this check is to see if someone is playing at exactly midnight, they won't be able to dash unless this is added
                 now = DASH_COOL_DOWN+1;
 
@@ -34,6 +34,13 @@ public class Collectible extends GameObject
         return false;
     }
 
+    // is collected by the player, which changes the player
+    @Override
+    public boolean canUpdateInParallel()
+    {
+        return false;
+    }
+
     @Override
     public void update(GameObjects objects)
     {
@@ -1,18 +1,21 @@
 package gameframework.gameobjects;
 
+import gameframework.GameClock;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.BorderPoint;
+import gameframework.animations.CollisionMask;
 import gameframework.animations.SpriteBorder;
 import gameframework.collision.CollisionHandler;
+import gameframework.display.DrawList;
 import gameframework.display.GameDisplay;
+import gameframework.metrics.GameMetrics;
 import gameframework.platforming.PlatformingHandler;
 import gameframework.supportfunctions.GraphicsLibrary;
 import gameframework.supportfunctions.Line;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 
 public abstract class GameObject
 {
@@ -22,6 +25,13 @@ public abstract class GameObject
     private int y;
     private int z;
 
+    /* Position of the object before the update in which it last moved (positionTick), used to draw
+     * it between its previous and current position when rendering is interpolated (see
+     * GameThread.LOOP_FIXED_TIMESTEP). */
+    private int prevX;
+    private int prevY;
+    private long positionTick = -1;
+
     private double velX;
     private double velY;
 
@@ -48,6 +58,8 @@ public abstract class GameObject
     public static boolean drawBoundsRect = false;
     public static boolean drawSpriteBorders = false;
     public static boolean disableRendering = false;
+    // true while the object is drawn as part of a static tile chunk instead of by itself
+    private boolean baked = false;
 
     // internal object attribute used to handle collisions
     private CollisionHandler collisionHandler;
@@ -55,11 +67,38 @@ public abstract class GameObject
     // internal object attribute used to manage all platforming for this object
     public boolean alwaysUseRectCollision = false;
     private PlatformingHandler platformingHandler;
+    // created once so collision checks against neighbors don't allocate on every update
+    private final GameObjects.NeighborVisitor collisionVisitor = new GameObjects.NeighborVisitor()
+    {
+        @Override
+        public boolean visit(GameObject neighbor)
+        {
+            return handleCollisionCandidate(neighbor);
+        }
+    };
 
     /* This attribute is used to keep track of which area or areas of the background a
      * given object is currently in, this is used for optimizing collision handling in
-     * the engine. */
-    private ArrayList<Point> backgroundAreas;
+     * the engine. The areas are stored as a packed range of grid columns and rows (see
+     * GameObjects.packCellRange) instead of a list of cells. */
+    private int backgroundAreas;
+
+    /* Set when the object changes position, the spatial grid is only updated for moved objects
+     * once (either at the end of the update cycle or right before the next neighbor query),
+     * instead of on every single position change. */
+    boolean gridDirty = false;
+    // id of the last neighbor query that visited this object (see GameObjects.forEachNeighbor)
+    int queryStamp = 0;
+
+    /* These attributes are maintained by the main game objects list (GameObjects) and keep track of
+     * where this object is stored inside it (z-layer and slot in the layer, and slot in the update
+     * list), so the object can be removed from the list in constant time. */
+    GameObjects storeOwner = null;
+    int storeZ;
+    int storeSlot = -1;
+    int updateSlot = -1;
+    // set if the object was removed while the update list was being iterated (see GameObjects.beginUpdate)
+    boolean updateRemovalDeferred = false;
 
     /* temporary, only for debugging!!!!*/
     public boolean isNinja() { return false;}
@@ -96,8 +135,8 @@ public abstract class GameObject
         //initialize platforming handler
         platformingHandler = new PlatformingHandler(this, null);
 
-        //intialize array that keeps track of background areas this object belongs to
-        backgroundAreas = new ArrayList<Point>();
+        //object doesn't belong to any background area until it is added to the game
+        backgroundAreas = GameObjects.NO_CELLS;
 
         // By default all objects require to be updated
         requiresUpdating = true;
@@ -111,6 +150,25 @@ public abstract class GameObject
     public int getX() {return x;}
     public int getY() {return y;}
     public int getZ() {return z;}
+
+    /* Position where the object is drawn, blended between the position before and after the last
+     * update by the interpolation alpha of the game loop. Objects that didn't move in the last
+     * update are drawn where they are. */
+    public int getRenderX()
+    {
+        double alpha = GameThread.getInterpolationAlpha();
+        if (alpha >= 1 || positionTick != GameClock.getTicks())
+            return x;
+        return (int)Math.round(prevX + (x - prevX) * alpha);
+    }
+
+    public int getRenderY()
+    {
+        double alpha = GameThread.getInterpolationAlpha();
+        if (alpha >= 1 || positionTick != GameClock.getTicks())
+            return y;
+        return (int)Math.round(prevY + (y - prevY) * alpha);
+    }
     /* Setter for x and y are provided for special cases, but should be avoided when changing the position of
      * the object in the game, that should be changed exclusively using the setPosition method, so the engine
      * can keep track internally of important object positioning and tracking info. */
@@ -199,6 +257,16 @@ public abstract class GameObject
         return requiresUpdating;
     }
 
+    /* When the parallel update is enabled (see GameThread.PARALLEL_UPDATE), objects are updated at the
+     * same time as other objects far away from them. Objects that can affect objects anywhere in the
+     * game (like the player or projectiles), or that read objects in other areas or shared state (like
+     * enemies chasing the player, or GameRandom) must return false, those objects and every object in the
+     * same area are updated one at a time after the rest. */
+    public boolean canUpdateInParallel()
+    {
+        return true;
+    }
+
     /* We use this function to render either the bounds rectangle or the actual borders of a sprite
      * depending on which of those options are enabled. */
     protected void renderBorders(Graphics g)
@@ -237,11 +305,40 @@ public abstract class GameObject
 
         if ( !disableRendering && curAnimation != null)
         {
-            curAnimation.drawFrame(g, x, y);
-            curAnimation.nextFrame();
+            curAnimation.drawFrame(g, getRenderX(), getRenderY());
         }
     }
 
+    /* Add the object to the list of images drawn in the next frame, used instead of render when
+     * rendering runs on its own thread (see GameThread.PIPELINED_RENDERING). */
+    public void addToDrawList(DrawList drawList)
+    {
+        if ( !disableRendering && curAnimation != null)
+        {
+            curAnimation.addFrameToDrawList(drawList, getRenderX(), getRenderY(), z);
+        }
+    }
+
+    /* Move the active animation to its next frame, called by the game data once every update of the object
+     * (see GameData.update). Rendering only draws the current frame, objects check the state of their
+     * animations during their updates (like waiting for an attack to end), so animations must advance the
+     * same way whether frames are rendered or not (headless mode, replays, skipped frames). */
+    public void advanceAnimation()
+    {
+        if (curAnimation != null)
+            curAnimation.nextFrame();
+    }
+
+    public boolean isBaked()
+    {
+        return baked;
+    }
+
+    public void setBaked(boolean baked)
+    {
+        this.baked = baked;
+    }
+
     public Animation getActiveAnimation() {
         return curAnimation;
     }
@@ -289,6 +386,15 @@ public abstract class GameObject
      * and in order to easily trace position changes while debugging the game.*/
     public void setPosition(int x, int y)
     {
+        // remember where the object was before the first move of this update
+        long tick = GameClock.getTicks();
+        if (positionTick != tick)
+        {
+            prevX = this.x;
+            prevY = this.y;
+            positionTick = tick;
+        }
+
         this.x = x;
         if ( y > this.y && platformingHandler.getPlatformObject() != null)
         {
@@ -297,8 +403,10 @@ public abstract class GameObject
         }
         this.y = y;
 
-        GameObjects gameObjects = GameThread.data.getObjects();
-        gameObjects.updateSpatialCells(this);
+        /* Only flag the object as moved in the game objects list it belongs to (if any), its
+         * spatial grid cells will be updated when needed. */
+        if (storeOwner != null)
+            storeOwner.markMoved(this);
     }
 
     public double getGravity()
@@ -391,7 +499,9 @@ public abstract class GameObject
         if (getGravity() > 0)
         {
             applyGravityEffect();
+            GameMetrics.beginPhase(GameMetrics.PLATFORMING);
             platformingHandler.update(objects);
+            GameMetrics.endPhase(GameMetrics.PLATFORMING);
         }
 
         /* Only objects that move need to update their position or handle their own collisions. By having
@@ -400,7 +510,15 @@ public abstract class GameObject
         if ( !isUnmovable() )
         {
             setPosition(getX() + (int)velX, getY() + (int)velY);
-            collision(objects);
+            /* When the sweep and prune broadphase or the parallel narrowphase are used, the engine
+             * handles the collisions of all objects at once after updating them (see GameData.update). */
+            if (GameThread.COLLISION_BROADPHASE != GameThread.BROADPHASE_SWEEP_AND_PRUNE &&
+                    !GameThread.PARALLEL_NARROWPHASE)
+            {
+                GameMetrics.beginPhase(GameMetrics.COLLISION);
+                collision(objects);
+                GameMetrics.endPhase(GameMetrics.COLLISION);
+            }
         }
     }
     public abstract boolean handleObjectCollision(GameObject object);
@@ -451,6 +569,17 @@ public abstract class GameObject
         return spriteBorders;
     };
 
+    /* Returns the collision mask (opaque pixels) of the current frame within the active animation,
+     * relative to the object's position. */
+    public CollisionMask getCollisionMask()
+    {
+        CollisionMask mask = null;
+
+        if (curAnimation != null)
+            mask = curAnimation.getCurrentFrameMask();
+        return mask;
+    }
+
     // This method returns true if the object collides with another
     // given object or false otherwise.
     public boolean collidesWith(GameObject otherObject)
@@ -467,48 +596,58 @@ public abstract class GameObject
 
     public void collision(GameObjects gameObjects)
     {
-        // Loop through all other objects and handle any collisions between this object
-        // and any other one
-        final int TOLERANCE_PIXELS = 10;
-
         // Retrieve only the objects that are in the same area(s) of the screen as this object and
-        // therefore could potentially collide.
-        GameObjects collisionObjects = gameObjects.getNeighborObjects(this);
-
-        for ( int i = 0; i < collisionObjects.size(); i++)
-        {
-            GameObject go = collisionObjects.get(i);
-
-            if (go == this)
-                continue;
+        // therefore could potentially collide, and handle any collisions with each one of them.
+        gameObjects.forEachNeighbor(this, collisionVisitor);
+    }
 
-            //Ignore objects that should not collide with this one
-            if (shouldIgnoreCollisionWith(go) || go.shouldIgnoreCollisionWith(this) || go.isDisableCollision())
-                continue;
+    /* Handle collision between this object and another object that might be colliding with it (one
+     * of its neighbors or a candidate pair found by the collision broadphase), returns false if the
+     * collision couldn't be handled, which stops checking the remaining neighbors. */
+    public boolean handleCollisionCandidate(GameObject go)
+    {
+        if (!isCollisionCandidate(go))
+            return true;
 
-            // ignore objects that are acting as a platform for this one
-            // as those are handled by the platforming handler
-            if (isPlacedOnTopOf(go) ||
-                    // objects vertically aligned with this object's platform could be sections of the same platform
-                    go.isAtSimilarHeightAs(platformingHandler.getPlatformObject(), TOLERANCE_PIXELS))
-                continue;
+        // Handle collision here for any objects that require some action
+        // by the game object or character when collision occurs
+        GameMetrics.count(GameMetrics.COLLISION_PAIRS_TESTED, 1);
+        if ( collidesWith(go))
+        {
+            // allow each character/object to handle the collision in a specific way
+            boolean handled = handleObjectCollision(go);
 
-            // Handle collision here for any objects that require some action
-            // by the game object or character when collision occurs
-            if ( collidesWith(go))
+            if (!handled)
             {
-                // allow each character/object to handle the collision in a specific way
-                boolean handled = handleObjectCollision(go);
-
-                if (!handled)
-                {
-                    /*System.out.println("Unable to handle collision with object "
-                            + go.getName());*/
-                    break;
-                }
+                /*System.out.println("Unable to handle collision with object "
+                        + go.getName());*/
+                return false;
             }
         }
-        return;
+        return true;
+    }
+
+    /* Returns false if a collision with the given object should not be checked at all by this object
+     * (itself, objects it ignores and objects acting as its platform). */
+    public boolean isCollisionCandidate(GameObject go)
+    {
+        final int TOLERANCE_PIXELS = 10;
+
+        if (go == this)
+            return false;
+
+        //Ignore objects that should not collide with this one
+        if (shouldIgnoreCollisionWith(go) || go.shouldIgnoreCollisionWith(this) || go.isDisableCollision())
+            return false;
+
+        // ignore objects that are acting as a platform for this one
+        // as those are handled by the platforming handler
+        if (isPlacedOnTopOf(go) ||
+                // objects vertically aligned with this object's platform could be sections of the same platform
+                go.isAtSimilarHeightAs(platformingHandler.getPlatformObject(), TOLERANCE_PIXELS))
+            return false;
+
+        return true;
     }
 
     // Determine if an object is fully contained within the given bounds.
@@ -621,15 +760,14 @@ public abstract class GameObject
         return success;
     }
 
-    public ArrayList<Point> getBackgroundAreas()
+    public int getBackgroundAreas()
     {
         return backgroundAreas;
     }
 
-    public void setBackgroundAreas(ArrayList<Point> backgroundAreas)
+    void setBackgroundAreas(int backgroundAreas)
     {
-        if (backgroundAreas != null && !backgroundAreas.isEmpty())
-            this.backgroundAreas = backgroundAreas;
+        this.backgroundAreas = backgroundAreas;
     }
 
     public boolean shouldIgnoreCollisionWith(GameObject other)
@@ -0,0 +1,117 @@
+package gameframework.gameobjects;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/* This class is a dense, contiguous array of game objects. Appending is O(1) and removal is done
+ * by moving the last element into the freed slot (swap-remove), which is also O(1) when the index
+ * is known. Because of this, the order of the objects is not preserved after a removal, so this
+ * class should only be used where the order doesn't matter (update lists, z-layers, grid cells).
+ */
+public class GameObjectArray extends AbstractList<GameObject> implements RandomAccess
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private GameObject[] elements;
+    private int size;
+
+    public GameObjectArray()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GameObjectArray(int initialCapacity)
+    {
+        elements = new GameObject[Math.max(1, initialCapacity)];
+        size = 0;
+    }
+
+    @Override
+    public GameObject get(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return elements[index];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    // Append an object at the end of the array, returns the slot the object was stored at
+    public int append(GameObject go)
+    {
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        elements[size] = go;
+        modCount++;
+        return size++;
+    }
+
+    @Override
+    public boolean add(GameObject go)
+    {
+        append(go);
+        return true;
+    }
+
+    /* Remove the object at the given slot by moving the last object of the array into it. Returns
+     * the object that was moved into the freed slot (so callers that keep track of slots can update
+     * it), or null if the removed object was the last one. */
+    public GameObject swapRemove(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        GameObject moved = null;
+        int last = size - 1;
+
+        if (index != last)
+        {
+            moved = elements[last];
+            elements[index] = moved;
+        }
+        elements[last] = null;
+        size--;
+        modCount++;
+        return moved;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        swapRemove(index);
+        return true;
+    }
+
+    @Override
+    public int indexOf(Object o)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (elements[i] == o)
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+}
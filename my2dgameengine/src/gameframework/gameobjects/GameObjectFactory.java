@@ -1,5 +1,7 @@
 package gameframework.gameobjects;
 
+import gameframework.GameThread;
+
 import java.util.Scanner;
 
 /*
@@ -22,15 +24,29 @@ public class GameObjectFactory
 
     public GameObject createGameObject(String objectStr)
     {
-        GameObject gameObject = null;
         Scanner scanner = new Scanner(objectStr);
         scanner.next();          //All object info description lines in the level file are enclosed in '<' and '>', this skips the starting '<'
-        posX = scanner.nextInt();
-        posY = scanner.nextInt();
-        type = scanner.nextInt();
-        subtype = scanner.next();
-        scaleWidth = scanner.nextInt();
-        scaleHeight = scanner.nextInt();
+        int posX = scanner.nextInt();
+        int posY = scanner.nextInt();
+        int type = scanner.nextInt();
+        String subtype = scanner.next();
+        int scaleWidth = scanner.nextInt();
+        int scaleHeight = scanner.nextInt();
+
+        return createGameObject(posX, posY, type, subtype, scaleWidth, scaleHeight);
+    }
+
+    /* Create a game object from attributes that were already read (for example from a compiled level,
+     * see CompiledLevel). Game specific factories should override this method. */
+    public GameObject createGameObject(int posX, int posY, int type, String subtype, int scaleWidth, int scaleHeight)
+    {
+        GameObject gameObject = null;
+        this.posX = posX;
+        this.posY = posY;
+        this.type = type;
+        this.subtype = subtype;
+        this.scaleWidth = scaleWidth;
+        this.scaleHeight = scaleHeight;
 
         switch (type)
         {
@@ -47,4 +63,19 @@ public class GameObjectFactory
         return gameObject;
     }
 
+    /* Start loading the resources used by the objects of a type and subtype in the background, called
+     * for every type and subtype of a level before its objects are created (see GameLevel.requestResources),
+     * which might happen while another level is being played. Game specific factories should override this
+     * method for the objects they create. */
+    public void requestResources(int type, String subtype, String levelName)
+    {
+        switch (type)
+        {
+            case GameObjectType.INANIMATE:
+            case GameObjectType.COLLECTIBLE:
+                GameThread.resourceManager.loadImageResourceAsync(subtype + ".png", levelName);
+                break;
+        }
+    }
+
 }
@@ -1,55 +1,115 @@
 package gameframework.gameobjects;
 
 import gameframework.GameThread;
+import gameframework.collision.SweepAndPrune;
 import gameframework.display.GameDisplay;
+import gameframework.metrics.GameMetrics;
 
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.awt.*;
 import java.util.Set;
 
-/* This class extends the functionality of a normal LinkedList of
- * game objects in order to be able to add objects to the list based on
- * z order or optionally track objects that require frequent updating on
- * a hidden internal list, among other features.
+/* This class is the list of game objects used by the engine, it allows us to add objects to the
+ * list based on z order or optionally track objects that require frequent updating on a hidden
+ * internal list, among other features.
  * Updated: We have added functionality to the list in order to maintain
  * hidden spatial area sublists (grid cells) to group nearby objects together
  * and speed up collision checks and other object interactions.
+ * Updated: The list used to extend LinkedList, which made z ordered insertion O(n^2) (walking
+ * backwards with get(index)) and made every update chase pointers. Objects are now stored in
+ * dense arrays, one per z value (z-layer), layers are kept sorted by z so iterating the list
+ * still returns objects in z order (objects with a higher z priority, lower value, come after).
+ * Adding is an O(1) append to the right layer and removing is an O(1) swap-remove. Note that
+ * the order of objects within the same z-layer is not preserved after removals.
  */
-public class GameObjects extends LinkedList<GameObject>
+public class GameObjects extends AbstractList<GameObject> implements RandomAccess
 {
+    private static final int INITIAL_LAYER_CAPACITY = 4;
+
+    /* z-layers, sorted by descending z value, each layer keeps the objects sharing the same z
+     * value in a contiguous array. */
+    private GameObjectArray[] layers;
+    private int[] layerZ;
+    private int layerCount;
+    private int size;
+
+    /* The main object list of the game (the one with sublists enabled) stores the slot of each
+     * object inside the object itself, that way removing an object doesn't require a search.
+     * Any other lists (temporary lists, query results, etc.) simply search for the object. */
+    private final boolean trackSlots;
+
     /* This list is to store references only to objects
      * that require frequent updating (objects that are
      * moving or changing state)
      */
-    private GameObjects updateObjects;
+    private GameObjectArray updateObjects;
 
     /* This is a grid of cells representing game areas, the entire game background
      * is divided into areas, and an object list is assigned to each area, only the objects
      * in that area are included on each list. If in an object is part of more than one area,
      * its reference its added to all appropriate lists. This is independent of the main list that
-     * has objects sorted by  z-order. */
-    private ArrayList<ArrayList<GameObjects>> spatialGrid;
+     * has objects sorted by  z-order. Cells are stored row by row (index = row * gridCols + col). */
+    private GameObjectArray[] spatialGrid;
     private int gridCols;
     private int gridRows;
     private int cellWidth;
     private int cellHeight;
+    // objects that changed position since their grid cells were last updated
+    private GameObjectArray movedObjects;
+
+    /* When the sweep and prune collision broadphase is selected, the main list keeps it
+     * up to date with the objects in the game. */
+    private SweepAndPrune broadphase;
+
+    // id of the last neighbor query, used to visit objects spanning several cells only once
+    private int queryStamp = 0;
+    private boolean queryInProgress = false;
+
+    /* Set while objects are updated by several threads at once (see GameThread.PARALLEL_UPDATE), the
+     * grid cells aren't changed during that time and neighbor queries don't use stamps. */
+    private volatile boolean parallelUpdateInProgress = false;
+
+    // number of objects removed so far, lets other classes find out cheaply if objects were removed
+    private int removalCount = 0;
+
+    /* Set while the game data iterates the update list (see beginUpdate), objects removed meanwhile keep
+     * their slot in the update list until endUpdate. */
+    private boolean updateInProgress = false;
+    private GameObjectArray deferredUpdateRemovals;
 
     public GameObjects(boolean enableSublists)
     {
         super();
+        layers = new GameObjectArray[INITIAL_LAYER_CAPACITY];
+        layerZ = new int[INITIAL_LAYER_CAPACITY];
+        layerCount = 0;
+        size = 0;
+        trackSlots = enableSublists;
+
         if (enableSublists)
         {
-            updateObjects = new GameObjects(false);
+            updateObjects = new GameObjectArray();
+            deferredUpdateRemovals = new GameObjectArray();
+            movedObjects = new GameObjectArray();
             // Initialize spatial partitioning grid
             initializeSpatialGrid();
+            if (GameThread.COLLISION_BROADPHASE == GameThread.BROADPHASE_SWEEP_AND_PRUNE)
+                broadphase = new SweepAndPrune();
         }
         else
         {
             updateObjects = null;
+            deferredUpdateRemovals = null;
+            movedObjects = null;
             spatialGrid = null;
+            broadphase = null;
         }
     }
 
@@ -65,22 +125,68 @@ public class GameObjects extends LinkedList<GameObject>
             return;
         }
 
-        gridCols = Math.max(1, GameThread.AREA_GRID_COLS);
-        gridRows = Math.max(1, GameThread.AREA_GRID_ROWS);
+        gridCols = Math.min(MAX_GRID_DIMENSION, Math.max(1, GameThread.AREA_GRID_COLS));
+        gridRows = Math.min(MAX_GRID_DIMENSION, Math.max(1, GameThread.AREA_GRID_ROWS));
 
         cellWidth = background.getWidth() / gridCols;
         cellHeight = background.getHeight() / gridRows;
 
-        spatialGrid = new ArrayList<>();
-        for (int row = 0; row < gridRows; row++)
+        spatialGrid = new GameObjectArray[gridRows * gridCols];
+        for (int i = 0; i < spatialGrid.length; i++)
+            spatialGrid[i] = new GameObjectArray();
+    }
+
+    /* Make the area grid match the background of the current level (levels can have backgrounds of
+     * different sizes), only done while the list is empty, before the objects of a level are added. */
+    public void fitSpatialGridToBackground()
+    {
+        if (trackSlots && size == 0)
+            initializeSpatialGrid();
+    }
+
+    private GameObjectArray getCell(int col, int row)
+    {
+        return spatialGrid[row * gridCols + col];
+    }
+
+    /* Returns the position of the layer for the given z value within the layers array, or
+     * -(insertion point + 1) if there is no layer for that z value yet. Layers are sorted by
+     * descending z. */
+    private int findLayer(int z)
+    {
+        int low = 0, high = layerCount - 1;
+
+        while (low <= high)
         {
-            ArrayList<GameObjects> rowList = new ArrayList<>();
-            for (int col = 0; col < gridCols; col++)
-            {
-                rowList.add(new GameObjects(false));
-            }
-            spatialGrid.add(rowList);
+            int mid = (low + high) >>> 1;
+            if (layerZ[mid] > z)
+                low = mid + 1;
+            else if (layerZ[mid] < z)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    private GameObjectArray getOrCreateLayer(int z)
+    {
+        int pos = findLayer(z);
+        if (pos >= 0)
+            return layers[pos];
+
+        pos = -(pos + 1);
+        if (layerCount == layers.length)
+        {
+            layers = Arrays.copyOf(layers, layerCount * 2);
+            layerZ = Arrays.copyOf(layerZ, layerCount * 2);
         }
+        System.arraycopy(layers, pos, layers, pos + 1, layerCount - pos);
+        System.arraycopy(layerZ, pos, layerZ, pos + 1, layerCount - pos);
+        layers[pos] = new GameObjectArray();
+        layerZ[pos] = z;
+        layerCount++;
+        return layers[pos];
     }
 
     @Override
@@ -94,29 +200,36 @@ public class GameObjects extends LinkedList<GameObject>
          */
         boolean success = true;
 
-        int index = size() - 1;
-        int curZ = 0;
+        // An object can only be stored once in the main list
+        if (trackSlots && go.storeOwner == this)
+            return false;
 
-        if (index != -1)
-            curZ = get(index).getZ();
+        int z = go.getZ();
+        int slot = getOrCreateLayer(z).append(go);
+        size++;
+        modCount++;
 
-        while (go.getZ() > curZ && index >= 0)
+        if (trackSlots)
         {
-            index--;
-            if (index >= 0)
-                curZ = get(index).getZ();
+            go.storeOwner = this;
+            go.storeZ = z;
+            go.storeSlot = slot;
         }
-        add(index + 1, go);
 
         //add objects that require frequent
-        //updating to the update list
-        if (go.requiresUpdating() && updateObjects != null)
-            updateObjects.add(go);
+        //updating to the update list (an object removed and added back during the same update keeps its slot)
+        if (go.updateRemovalDeferred)
+            go.updateRemovalDeferred = false;
+        else if (go.requiresUpdating() && updateObjects != null)
+            go.updateSlot = updateObjects.append(go);
 
         // Add to one or more spatial areas
         if (spatialGrid != null)
             addToSpatialCells(go);
 
+        if (broadphase != null)
+            broadphase.add(go);
+
         return success;
     }
 
@@ -125,46 +238,283 @@ public class GameObjects extends LinkedList<GameObject>
     {
         //Overwritten to also remove object from internal update
         //list when appropriate and to update spatial area lists
-        boolean success = true;
+        if (!(go instanceof GameObject))
+            return false;
 
         GameObject gameObject = (GameObject)go;
 
-        if (gameObject.requiresUpdating() && updateObjects != null)
-            updateObjects.remove(gameObject);
+        if (trackSlots)
+        {
+            if (gameObject.storeOwner != this)
+                return false;
+
+            GameObjectArray layer = layers[findLayer(gameObject.storeZ)];
+            GameObject moved = layer.swapRemove(gameObject.storeSlot);
+            if (moved != null)
+                moved.storeSlot = gameObject.storeSlot;
+            gameObject.storeOwner = null;
+            gameObject.storeSlot = -1;
+
+            if (gameObject.updateSlot >= 0 && updateObjects != null)
+            {
+                /* The swap-remove would move the last object of the update list into a slot the game data
+                 * might have already updated in this cycle, so that object would miss its update. */
+                if (updateInProgress)
+                {
+                    gameObject.updateRemovalDeferred = true;
+                    deferredUpdateRemovals.append(gameObject);
+                }
+                else
+                    removeFromUpdateList(gameObject);
+            }
+        }
+        else if (!removeFromLayers(gameObject))
+            return false;
+
+        size--;
+        modCount++;
+        removalCount++;
 
         if (spatialGrid != null)
             removeFromSpatialCells(gameObject);
 
-        success = super.remove(go);
+        if (broadphase != null)
+            broadphase.remove(gameObject);
 
-        return success;
+        return true;
+    }
+
+    private void removeFromUpdateList(GameObject gameObject)
+    {
+        GameObject moved = updateObjects.swapRemove(gameObject.updateSlot);
+        if (moved != null)
+            moved.updateSlot = gameObject.updateSlot;
+        gameObject.updateSlot = -1;
+    }
+
+    /* Called by the game data before iterating the update list, objects removed from now on (by objects
+     * that remove others directly during their update, instead of using GameData.removeObjectWhenSafe)
+     * stay in the update list until endUpdate, so no other object changes slot while the list is being
+     * iterated. Removed objects are no longer contained in the list, so they can be skipped. */
+    public void beginUpdate()
+    {
+        updateInProgress = true;
+    }
+
+    // Remove the objects removed since beginUpdate from the update list
+    public void endUpdate()
+    {
+        updateInProgress = false;
+        if (deferredUpdateRemovals == null)
+            return;
+
+        for (int i = 0; i < deferredUpdateRemovals.size(); i++)
+        {
+            GameObject gameObject = deferredUpdateRemovals.get(i);
+            //objects added back to the list in the meantime kept their slot
+            if (gameObject.updateRemovalDeferred)
+            {
+                gameObject.updateRemovalDeferred = false;
+                removeFromUpdateList(gameObject);
+            }
+        }
+        deferredUpdateRemovals.clear();
+    }
+
+    // Search for an object in every layer (used by lists that don't keep track of slots)
+    private boolean removeFromLayers(GameObject gameObject)
+    {
+        // Try the layer of the object's current z value first
+        int pos = findLayer(gameObject.getZ());
+        if (pos >= 0 && layers[pos].remove(gameObject))
+            return true;
+
+        for (int i = 0; i < layerCount; i++)
+        {
+            if (i != pos && layers[i].remove(gameObject))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        if (!(o instanceof GameObject))
+            return false;
+
+        if (trackSlots)
+            return ((GameObject)o).storeOwner == this;
+
+        for (int i = 0; i < layerCount; i++)
+        {
+            if (layers[i].contains(o))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public GameObject get(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        int layer = 0;
+        while (index >= layers[layer].size())
+        {
+            index -= layers[layer].size();
+            layer++;
+        }
+        return layers[layer].get(index);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    //Removes and returns the first object in the list (the one with the highest z value)
+    public GameObject removeFirst()
+    {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        GameObject first = get(0);
+        remove(first);
+        return first;
+    }
+
+    /* Iterates through the layers directly instead of relying on get(index), objects are returned
+     * in z order. Like the linked list this class used to extend, the iterator fails fast if the
+     * list is modified while iterating. */
+    @Override
+    public Iterator<GameObject> iterator()
+    {
+        return new Iterator<GameObject>()
+        {
+            private int layer = 0;
+            private int index = 0;
+            private int expectedModCount = modCount;
+            private GameObject lastReturned = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (layer < layerCount && index >= layers[layer].size())
+                {
+                    layer++;
+                    index = 0;
+                }
+                return layer < layerCount;
+            }
+
+            @Override
+            public GameObject next()
+            {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                lastReturned = layers[layer].get(index++);
+                return lastReturned;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (lastReturned == null)
+                    throw new IllegalStateException();
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+
+                /* The last object of the layer is swapped into the removed slot, so step back
+                 * to make sure it gets visited. */
+                GameObjects.this.remove(lastReturned);
+                index--;
+                lastReturned = null;
+                expectedModCount = modCount;
+            }
+        };
     }
 
     @Override
     public void clear()
     {
-        super.clear();
+        // Objects in the main list must forget their slots so they can be added again later
+        if (trackSlots)
+        {
+            for (int i = 0; i < layerCount; i++)
+            {
+                for (GameObject go : layers[i])
+                {
+                    go.storeOwner = null;
+                    go.storeSlot = -1;
+                    go.updateSlot = -1;
+                    go.setBackgroundAreas(NO_CELLS);
+                }
+            }
+
+            for (GameObject go : deferredUpdateRemovals)
+            {
+                go.updateRemovalDeferred = false;
+                go.updateSlot = -1;
+            }
+            deferredUpdateRemovals.clear();
+        }
+
+        for (int i = 0; i < layerCount; i++)
+            layers[i].clear();
+        size = 0;
+        modCount++;
+        removalCount++;
 
         //Make sure to clear any objects from the internal
         //objects update list if any
         if (updateObjects != null)
             updateObjects.clear();
 
+        if (broadphase != null)
+            broadphase.clear();
+
         //clear the collision area lists
         if (spatialGrid != null)
         {
-            for (ArrayList<GameObjects> cellRow : spatialGrid)
-            {
-                for (GameObjects cell : cellRow)
-                {
-                    cell.clear();  // clear the objects inside the collision area cell
-                }
-            }
+            for (GameObject go : movedObjects)
+                go.gridDirty = false;
+            movedObjects.clear();
+
+            for (GameObjectArray cell : spatialGrid)
+                cell.clear();  // clear the objects inside the collision area cell
         }
     }
 
+    /* Grid cells covered by an object are stored as a packed range (first and last column, first
+     * and last row, 8 bits each) instead of a list of cells, NO_CELLS means the object isn't in
+     * any cell. This limits the grid to MAX_GRID_DIMENSION columns and rows. */
+    public static final int NO_CELLS = -1;
+    private static final int MAX_GRID_DIMENSION = 255;
+
+    private static int packCellRange(int startCol, int endCol, int startRow, int endRow)
+    {
+        return startCol | (endCol << 8) | (startRow << 16) | (endRow << 24);
+    }
+
+    private static int startCol(int cells) { return cells & 0xFF; }
+    private static int endCol(int cells)   { return (cells >>> 8) & 0xFF; }
+    private static int startRow(int cells) { return (cells >>> 16) & 0xFF; }
+    private static int endRow(int cells)   { return cells >>> 24; }
+
+    private static boolean rangeContains(int cells, int col, int row)
+    {
+        return cells != NO_CELLS &&
+                col >= startCol(cells) && col <= endCol(cells) &&
+                row >= startRow(cells) && row <= endRow(cells);
+    }
+
     // Compute which grid cells an object's bounds overlap
-    private ArrayList<Point> computeCellsForObject(GameObject go)
+    private int computeCellsForObject(GameObject go)
     {
         Rectangle bounds = go.getCollisionBounds();
 
@@ -173,68 +523,236 @@ public class GameObjects extends LinkedList<GameObject>
         int startRow = Math.max(0, bounds.y / cellHeight);
         int endRow   = Math.min(gridRows - 1, (bounds.y + bounds.height) / cellHeight);
 
-        ArrayList<Point> cells = new ArrayList<>();
-        for (int row = startRow; row <= endRow; row++)
-        {
-            for (int col = startCol; col <= endCol; col++)
-            {
-                cells.add(new Point(col, row));
-            }
-        }
-        return cells;
+        // Object is completely outside the grid
+        if (startCol > endCol || startRow > endRow)
+            return NO_CELLS;
+
+        return packCellRange(startCol, endCol, startRow, endRow);
     }
 
     private void addToSpatialCells(GameObject go)
     {
-        ArrayList<Point> newCells = computeCellsForObject(go);
-        for (Point cell : newCells)
+        int newCells = computeCellsForObject(go);
+
+        if (newCells != NO_CELLS)
         {
-            spatialGrid.get(cell.y).get(cell.x).add(go);
+            for (int row = startRow(newCells); row <= endRow(newCells); row++)
+                for (int col = startCol(newCells); col <= endCol(newCells); col++)
+                    getCell(col, row).append(go);
         }
 
         // store background areas in the object itself for efficient retrieval later
         go.setBackgroundAreas(newCells);
+        go.gridDirty = false;
     }
 
     private void removeFromSpatialCells(GameObject go)
     {
-        ArrayList<Point> oldCells = go.getBackgroundAreas();
+        int oldCells = go.getBackgroundAreas();
 
-        for (Point cell : oldCells)
+        if (oldCells != NO_CELLS)
         {
-            spatialGrid.get(cell.y).get(cell.x).remove(go);
+            for (int row = startRow(oldCells); row <= endRow(oldCells); row++)
+                for (int col = startCol(oldCells); col <= endCol(oldCells); col++)
+                    getCell(col, row).remove(go);
         }
-        oldCells.clear();
-
 
         // remove the background areas from the object itself
-        go.getBackgroundAreas().clear();
+        go.setBackgroundAreas(NO_CELLS);
     }
 
-    public GameObjects getNeighborObjects(GameObject go)
+    /* Visitor used to iterate through the neighbors of an object without building a list, the
+     * visit method must return true to keep visiting neighbors or false to stop the query. */
+    public interface NeighborVisitor
+    {
+        boolean visit(GameObject neighbor);
+    }
+
+    /* Visit every object that is in the same area(s) of the game background as the given object
+     * (the object itself included), each neighbor is visited only once even if it shares more than
+     * one cell with the object. Objects spanning several cells are de-duplicated by stamping them
+     * with an id unique to each query, so this method doesn't allocate anything. If spatial
+     * partitioning isn't enabled then every object in the list is visited. */
+    public void forEachNeighbor(GameObject go, NeighborVisitor visitor)
     {
-        GameObjects result = new GameObjects(false);
+        if (spatialGrid == null)
+        {
+            for (int i = 0; i < layerCount; i++)
+            {
+                GameObjectArray layer = layers[i];
+                for (int j = 0; j < layer.size(); j++)
+                {
+                    if (!visitor.visit(layer.get(j)))
+                        return;
+                }
+            }
+            return;
+        }
+
+        // Make sure the grid reflects the latest position of every object before querying it
+        reindexMovedObjects();
 
-        if (spatialGrid == null) {
-            // if spatial partitioning not enabled, just return everything
-            result.addAll(this);
-            return result;
+        int cells = computeCellsForObject(go);
+        if (cells == NO_CELLS)
+            return;
+
+        /* Several threads can be querying at once, so instead of stamping the objects spanning several
+         * cells, they are only visited from the first cell they share with the query. */
+        if (parallelUpdateInProgress)
+        {
+            for (int row = startRow(cells); row <= endRow(cells); row++)
+            {
+                for (int col = startCol(cells); col <= endCol(cells); col++)
+                {
+                    GameObjectArray cell = getCell(col, row);
+                    for (int i = 0; i < cell.size(); i++)
+                    {
+                        GameObject neighbor = cell.get(i);
+                        int neighborCells = neighbor.getBackgroundAreas();
+                        if (Math.max(startCol(cells), startCol(neighborCells)) != col ||
+                                Math.max(startRow(cells), startRow(neighborCells)) != row)
+                            continue;
+                        if (!visitor.visit(neighbor))
+                            return;
+                    }
+                }
+            }
+            return;
         }
 
-        // Use a HashSet to avoid duplicates
-        Set<GameObject> objectSet = new HashSet<>();
+        /* Stamps are only valid for one query at a time, if a visitor issues another neighbor
+         * query while we are still visiting, fall back to de-duplicating with a set. */
+        if (queryInProgress)
+        {
+            forEachNeighborNested(cells, visitor);
+            return;
+        }
+
+        int stamp = ++queryStamp;
+        int visitedCount = 0;
+        queryInProgress = true;
+        try
+        {
+            for (int row = startRow(cells); row <= endRow(cells); row++)
+            {
+                for (int col = startCol(cells); col <= endCol(cells); col++)
+                {
+                    GameObjectArray cell = getCell(col, row);
+                    for (int i = 0; i < cell.size(); i++)
+                    {
+                        GameObject neighbor = cell.get(i);
+                        if (neighbor.queryStamp == stamp)
+                            continue;
+                        neighbor.queryStamp = stamp;
+                        visitedCount++;
+                        if (!visitor.visit(neighbor))
+                            return;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            queryInProgress = false;
+            GameMetrics.recordCount(GameMetrics.NEIGHBOR_QUERY_SIZE, visitedCount);
+        }
+    }
 
-        // Figure out which cells the object overlaps
-        for (Point cell : computeCellsForObject(go))
+    /* A query issued by a visitor while another query visits the grid can't reindex the objects that moved
+     * since the outer query started (that would change the cells being visited), instead it ignores their
+     * stale cells and checks the cells each of them covers now. */
+    private void forEachNeighborNested(int cells, NeighborVisitor visitor)
+    {
+        Set<GameObject> visited = new HashSet<>();
+        for (int row = startRow(cells); row <= endRow(cells); row++)
+            for (int col = startCol(cells); col <= endCol(cells); col++)
+                for (GameObject neighbor : getCell(col, row))
+                    if (!neighbor.gridDirty && visited.add(neighbor) && !visitor.visit(neighbor))
+                        return;
+
+        for (int i = 0; i < movedObjects.size(); i++)
         {
-            objectSet.addAll(spatialGrid.get(cell.y).get(cell.x));
+            GameObject moved = movedObjects.get(i);
+            if (moved.storeOwner != this)
+                continue;
+
+            int movedCells = computeCellsForObject(moved);
+            if (movedCells == NO_CELLS ||
+                    startCol(movedCells) > endCol(cells) || endCol(movedCells) < startCol(cells) ||
+                    startRow(movedCells) > endRow(cells) || endRow(movedCells) < startRow(cells))
+                continue;
+
+            if (visited.add(moved) && !visitor.visit(moved))
+                return;
         }
+    }
 
-        // Transfer to result list
-        result.addAll(objectSet);
+    /* Returns a new list with the neighbors of the given object, prefer forEachNeighbor on code
+     * that runs every update since it doesn't allocate. */
+    public GameObjects getNeighborObjects(GameObject go)
+    {
+        final GameObjects result = new GameObjects(false);
+
+        forEachNeighbor(go, new NeighborVisitor()
+        {
+            @Override
+            public boolean visit(GameObject neighbor)
+            {
+                return result.add(neighbor);
+            }
+        });
         return result;
     }
 
+    /* Called whenever an object in this list changes position. Rather than recomputing the
+     * grid cells of the object right away (positions can change many times during a single
+     * update, for example while resolving a collision), we only queue the object once and
+     * update its cells later in reindexMovedObjects. */
+    void markMoved(GameObject go)
+    {
+        if (spatialGrid == null || go.gridDirty)
+            return;
+
+        if (parallelUpdateInProgress)
+        {
+            synchronized (movedObjects)
+            {
+                if (!go.gridDirty)
+                {
+                    go.gridDirty = true;
+                    movedObjects.append(go);
+                }
+            }
+            return;
+        }
+
+        go.gridDirty = true;
+        movedObjects.append(go);
+    }
+
+    /* Update the grid cells of every object that moved since the last time this method was
+     * called. The engine calls it at the end of every update cycle, and also right before any
+     * neighbor query so queries issued in the middle of an update always see correct results.
+     * Queries issued while another query is visiting the grid can't reindex it, they account for
+     * the objects that moved meanwhile instead (see forEachNeighborNested). */
+    public void reindexMovedObjects()
+    {
+        // Cells can't change while a neighbor query is visiting them
+        if (spatialGrid == null || queryInProgress || parallelUpdateInProgress)
+            return;
+
+        for (int i = 0; i < movedObjects.size(); i++)
+        {
+            GameObject go = movedObjects.get(i);
+            go.gridDirty = false;
+
+            // Skip objects that were removed from the list after they moved
+            if (go.storeOwner == this)
+                updateSpatialCells(go);
+        }
+        movedObjects.clear();
+    }
+
     /**
      * Efficiently update which spatial grid cells this object belongs to.
      * Only moves it if the set of cells actually changed. */
@@ -242,26 +760,30 @@ public class GameObjects extends LinkedList<GameObject>
     {
         if (spatialGrid == null) return;
 
-        // Build new set of cells this object should be in
-        ArrayList<Point> newCells = computeCellsForObject(go);
-        // Get the object’s currently tracked cells (stored inside GameObject)
-        ArrayList<Point> oldCells = go.getBackgroundAreas();
+        // Build new range of cells this object should be in
+        int newCells = computeCellsForObject(go);
+        // Get the object's currently tracked cells (stored inside GameObject)
+        int oldCells = go.getBackgroundAreas();
 
         // If no change, then skip
-        if (oldCells.equals(newCells)) return;
+        if (oldCells == newCells) return;
 
         // Remove from cells no longer relevant
-        for (Point cell : oldCells)
+        if (oldCells != NO_CELLS)
         {
-            if (!newCells.contains(cell))
-                spatialGrid.get(cell.y).get(cell.x).remove(go);
+            for (int row = startRow(oldCells); row <= endRow(oldCells); row++)
+                for (int col = startCol(oldCells); col <= endCol(oldCells); col++)
+                    if (!rangeContains(newCells, col, row))
+                        getCell(col, row).remove(go);
         }
 
         // Add newly relevant cells
-        for (Point cell : newCells)
+        if (newCells != NO_CELLS)
         {
-            if (!oldCells.contains(cell))
-                spatialGrid.get(cell.y).get(cell.x).add(go);
+            for (int row = startRow(newCells); row <= endRow(newCells); row++)
+                for (int col = startCol(newCells); col <= endCol(newCells); col++)
+                    if (!rangeContains(oldCells, col, row))
+                        getCell(col, row).append(go);
         }
 
         // Update the cell areas in the object
@@ -303,9 +825,71 @@ public class GameObjects extends LinkedList<GameObject>
 
     }
 
-    public GameObjects getUpdateObjects()
+    public int getRemovalCount()
+    {
+        return removalCount;
+    }
+
+    public GameObjectArray getUpdateObjects()
     {
         return updateObjects;
     }
 
+    /* Areas of the grid used as regions of the parallel update (see GameThread.PARALLEL_UPDATE), every
+     * grid cell is a region, 0 if the grid isn't enabled. */
+    public int getRegionCount()
+    {
+        return spatialGrid != null ? spatialGrid.length : 0;
+    }
+
+    /* Returns the region an object can be updated in while other regions are updated by other threads,
+     * or -1 if it has to be updated serially. That is only the case for objects fully inside one grid
+     * cell and at least margin pixels away from any neighboring cell, so that moving during their update
+     * can't take them into a different cell (and their neighbor queries only see objects in their cell).
+     * The grid must be up to date (see reindexMovedObjects). */
+    public int getParallelRegion(GameObject go, int margin)
+    {
+        int cells = go.getBackgroundAreas();
+        if (spatialGrid == null || cells == NO_CELLS || go.gridDirty ||
+                startCol(cells) != endCol(cells) || startRow(cells) != endRow(cells))
+            return -1;
+
+        int col = startCol(cells);
+        int row = startRow(cells);
+        Rectangle bounds = go.getCollisionBounds();
+
+        // sides at the edge of the grid have no neighboring cell
+        if ((col > 0 && bounds.x - margin < col * cellWidth) ||
+                (col < gridCols - 1 && bounds.x + bounds.width + margin >= (col + 1) * cellWidth) ||
+                (row > 0 && bounds.y - margin < row * cellHeight) ||
+                (row < gridRows - 1 && bounds.y + bounds.height + margin >= (row + 1) * cellHeight))
+            return -1;
+
+        return row * gridCols + col;
+    }
+
+    // Flag every region an object is in (regions are indexed as returned by getParallelRegion)
+    public void markRegions(GameObject go, boolean[] regions)
+    {
+        int cells = go.getBackgroundAreas();
+        if (spatialGrid == null || cells == NO_CELLS)
+            return;
+
+        for (int row = startRow(cells); row <= endRow(cells); row++)
+            for (int col = startCol(cells); col <= endCol(cells); col++)
+                regions[row * gridCols + col] = true;
+    }
+
+    // Called by the game data before and after updating objects in parallel
+    public void setParallelUpdateInProgress(boolean inProgress)
+    {
+        parallelUpdateInProgress = inProgress;
+    }
+
+    // Returns the sweep and prune broadphase, or null if the engine isn't using it
+    public SweepAndPrune getBroadphase()
+    {
+        return broadphase;
+    }
+
 }
@@ -0,0 +1,74 @@
+package gameframework.inputhandlers;
+
+/*
+ * An input action triggered by the player (a key handler action being pressed or released, or a
+ * mouse button being pressed or released). Input handlers don't perform the actions as soon as the
+ * input events arrive, they queue them as input actions which the game performs at the beginning of
+ * the next update (see InputQueue). Actions only hold what the handlers need to perform them, so
+ * they can also be recorded and replayed later.
+ */
+public class InputAction
+{
+    public static final int KEY_PRESSED = 0;
+    public static final int KEY_RELEASED = 1;
+    public static final int MOUSE_PRESSED = 2;
+    public static final int MOUSE_RELEASED = 3;
+
+    // Tick of actions that are performed at the next update
+    public static final long NEXT_TICK = -1;
+
+    private final long tick;          //update (see GameClock) in which the action is performed
+    private final int kind;
+    private final int action;         //keyboard handler id for key actions, button for mouse actions
+    private final boolean controlDown;
+    private final int x;              //world position of the mouse pointer for mouse actions
+    private final int y;
+
+    public InputAction(long tick, int kind, int action, boolean controlDown, int x, int y)
+    {
+        this.tick = tick;
+        this.kind = kind;
+        this.action = action;
+        this.controlDown = controlDown;
+        this.x = x;
+        this.y = y;
+    }
+
+    public static InputAction keyPressed(int action, boolean controlDown)
+    {
+        return new InputAction(NEXT_TICK, KEY_PRESSED, action, controlDown, 0, 0);
+    }
+
+    public static InputAction keyReleased(int action)
+    {
+        return new InputAction(NEXT_TICK, KEY_RELEASED, action, false, 0, 0);
+    }
+
+    public static InputAction mousePressed(int button, int x, int y)
+    {
+        return new InputAction(NEXT_TICK, MOUSE_PRESSED, button, false, x, y);
+    }
+
+    public static InputAction mouseReleased(int button, int x, int y)
+    {
+        return new InputAction(NEXT_TICK, MOUSE_RELEASED, button, false, x, y);
+    }
+
+    // Returns a copy of this action stamped with the tick in which it was performed
+    public InputAction atTick(long tick)
+    {
+        return new InputAction(tick, kind, action, controlDown, x, y);
+    }
+
+    public long getTick() { return tick; }
+    public int getKind() { return kind; }
+    public int getAction() { return action; }
+    public boolean isControlDown() { return controlDown; }
+    public int getX() { return x; }
+    public int getY() { return y; }
+
+    public boolean isKeyAction()
+    {
+        return kind == KEY_PRESSED || kind == KEY_RELEASED;
+    }
+}
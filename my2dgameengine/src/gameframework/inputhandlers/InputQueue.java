@@ -0,0 +1,99 @@
+package gameframework.inputhandlers;
+
+import gameframework.replay.InputRecording;
+
+import java.util.ArrayList;
+
+/*
+ * Input events arrive on the input (AWT) thread at any moment, even in the middle of an update. If
+ * they changed the player right away, the same input could have different effects depending on
+ * when exactly it arrived, and no game could be reproduced. Instead, the input handlers post the
+ * input actions to this queue and the game performs all queued actions at the beginning of every
+ * update, in the game thread. This is also the place where the input of a game is recorded (every
+ * action is stored with the tick it was performed in), and where a replay feeds the recorded input.
+ */
+public class InputQueue
+{
+    private final ArrayList<InputAction> pending = new ArrayList<InputAction>();
+    private final ArrayList<InputAction> performing = new ArrayList<InputAction>();
+    private KeyboardHandler keyboardHandler;
+    private MouseHandler mouseHandler;
+    private InputRecording recording;
+
+    // Handlers that perform the queued actions (set by the display, or by a replay)
+    public synchronized void setKeyboardHandler(KeyboardHandler keyboardHandler)
+    {
+        this.keyboardHandler = keyboardHandler;
+    }
+
+    public synchronized void setMouseHandler(MouseHandler mouseHandler)
+    {
+        this.mouseHandler = mouseHandler;
+    }
+
+    public synchronized KeyboardHandler getKeyboardHandler()
+    {
+        return keyboardHandler;
+    }
+
+    public synchronized MouseHandler getMouseHandler()
+    {
+        return mouseHandler;
+    }
+
+    // Queue an action to be performed at the beginning of the next update
+    public synchronized void post(InputAction action)
+    {
+        pending.add(action);
+    }
+
+    // Record every action performed from now on into the given recording
+    public synchronized void startRecording(InputRecording recording)
+    {
+        this.recording = recording;
+    }
+
+    public synchronized InputRecording stopRecording()
+    {
+        InputRecording stoppedRecording = recording;
+        recording = null;
+        return stoppedRecording;
+    }
+
+    /* Perform all queued actions, called by the game data at the beginning of every update with
+     * the number of the update (see GameClock). */
+    public void performQueuedInput(long tick)
+    {
+        KeyboardHandler curKeyboardHandler;
+        MouseHandler curMouseHandler;
+        InputRecording curRecording;
+
+        synchronized (this)
+        {
+            if (pending.isEmpty())
+                return;
+            performing.addAll(pending);
+            pending.clear();
+            curKeyboardHandler = keyboardHandler;
+            curMouseHandler = mouseHandler;
+            curRecording = recording;
+        }
+
+        for (int i = 0; i < performing.size(); i++)
+        {
+            InputAction action = performing.get(i);
+
+            if (action.isKeyAction())
+            {
+                if (curKeyboardHandler != null)
+                    curKeyboardHandler.performAction(action);
+            }
+            else if (curMouseHandler != null)
+                curMouseHandler.performAction(action);
+
+            if (curRecording != null)
+                curRecording.add(action.atTick(tick));
+        }
+        performing.clear();
+    }
+}
@@ -4,6 +4,8 @@ import gameframework.GameThread;
 import gameframework.gamecharacters.Player;
 import gameframework.gameobjects.GameObject;
 
+import java.awt.*;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.util.HashSet;
@@ -50,6 +52,9 @@ public class KeyboardHandler implements KeyListener
     public static final int HANDLER_DASH = 27;
     public HashSet<Integer> keysHeld;
 
+    // source of the key events created to perform queued actions (the handlers need a key event)
+    private static final Component ACTION_EVENT_SOURCE = new Component() {};
+
     public KeyboardHandler()
     {
         keysHeld = new HashSet<>();
@@ -65,92 +70,91 @@ public class KeyboardHandler implements KeyListener
     public void keyPressed(KeyEvent ke)
     {
         int keyCode = ke.getKeyCode();
-        int keyHeldId = -1;
 
         switch (keyCode)
         {
             case KeyEvent.VK_RIGHT:
-                keyPressedActionHandler(HANDLER_MOVE_RIGHT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_RIGHT, ke);
                 break;
             case KeyEvent.VK_LEFT:
-                keyPressedActionHandler(HANDLER_MOVE_LEFT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_LEFT, ke);
                 break;
             case KeyEvent.VK_DOWN:
-                keyPressedActionHandler(HANDLER_MOVE_DOWN, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_DOWN, ke);
                 break;
             case KeyEvent.VK_UP:
-                keyPressedActionHandler(HANDLER_MOVE_UP, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_UP, ke);
                 break;
             case KeyEvent.VK_D:
-                keyPressedActionHandler(HANDLER_ATTACK_RIGHT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_ATTACK_RIGHT, ke);
                 break;
             case KeyEvent.VK_SPACE:
-                keyPressedActionHandler(HANDLER_JUMP, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_JUMP, ke);
                 break;
             case KeyEvent.VK_SHIFT:
-                keyPressedActionHandler(HANDLER_DASH, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_DASH, ke);
                 break;
             case KeyEvent.VK_A:
-                keyPressedActionHandler(HANDLER_ATTACK_LEFT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_ATTACK_LEFT, ke);
                 break;
             case KeyEvent.VK_S:
-                keyPressedActionHandler(HANDLER_ATTACK_DOWN, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_ATTACK_DOWN, ke);
                 break;
             case KeyEvent.VK_W:
-                keyPressedActionHandler(HANDLER_ATTACK_UP, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_ATTACK_UP, ke);
                 break;
             case KeyEvent.VK_H:
-                keyPressedActionHandler(HANDLER_RANGED_ATTACK_RIGHT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_RANGED_ATTACK_RIGHT, ke);
                 break;
             case KeyEvent.VK_F:
-                keyPressedActionHandler(HANDLER_RANGED_ATTACK_LEFT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_RANGED_ATTACK_LEFT, ke);
                 break;
             case KeyEvent.VK_T:
-                keyPressedActionHandler(HANDLER_RANGED_ATTACK_UP, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_RANGED_ATTACK_UP, ke);
                 break;
             case KeyEvent.VK_G:
-                keyPressedActionHandler(HANDLER_RANGED_ATTACK_DOWN, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_RANGED_ATTACK_DOWN, ke);
                 break;
             case KeyEvent.VK_F3:
-                keyPressedActionHandler(HANDLER_DISPLAY_STATUS, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_DISPLAY_STATUS, ke);
                 break;
             case KeyEvent.VK_U:
-                keyPressedActionHandler(HANDLER_DUMP_OBJECTS, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_DUMP_OBJECTS, ke);
                 break;
             case KeyEvent.VK_L:
-                keyPressedActionHandler(HANDLER_NEXT_LEVEL, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_NEXT_LEVEL, ke);
                 break;
             case KeyEvent.VK_R:
-                keyPressedActionHandler(HANDLER_RESTART_GAME, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_RESTART_GAME, ke);
                 break;
             case KeyEvent.VK_I:
-                keyPressedActionHandler(HANDLER_INVENTORY, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_INVENTORY, ke);
                 break;
             case KeyEvent.VK_P:
                 //Use 'P' key to change between playable characters
-                keyPressedActionHandler(HANDLER_CHANGE_CHARACTER, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_CHANGE_CHARACTER, ke);
                 break;
             case KeyEvent.VK_Z:
                 //Use 'Z' key for player to perform an action on an item (for example open a chest)
-                keyPressedActionHandler(HANDLER_OBJECT_ACTION, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_OBJECT_ACTION, ke);
                 break;
             case KeyEvent.VK_F1:
-                keyPressedActionHandler(HANDLER_DISPLAY_FRAMERATE, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_DISPLAY_FRAMERATE, ke);
                 break;
             case KeyEvent.VK_F4:
-                keyPressedActionHandler(HANDLER_BOUNDSONLY_MODE, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_BOUNDSONLY_MODE, ke);
                 break;
             case KeyEvent.VK_F5:
-                keyPressedActionHandler(HANDLER_BORDERSONLY_MODE, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_BORDERSONLY_MODE, ke);
                 break;
             case KeyEvent.VK_F6:
-                keyPressedActionHandler(HANDLER_DEBUG_MODE, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_DEBUG_MODE, ke);
                 break;
             case KeyEvent.VK_F7:
-                keyPressedActionHandler(HANDLER_ENABLE_SOUNDEFFECTS, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_ENABLE_SOUNDEFFECTS, ke);
                 break;
             case KeyEvent.VK_F8:
-                keyPressedActionHandler(HANDLER_GAME_PAUSED, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_GAME_PAUSED, ke);
                 break;
             default:
         }
@@ -164,23 +168,49 @@ public class KeyboardHandler implements KeyListener
         switch (keyCode)
         {
             case KeyEvent.VK_RIGHT:
-                keyReleasedActionHandler(HANDLER_MOVE_RIGHT);
+                queueKeyReleasedAction(HANDLER_MOVE_RIGHT);
                 break;
             case KeyEvent.VK_LEFT:
-                keyReleasedActionHandler(HANDLER_MOVE_LEFT);
+                queueKeyReleasedAction(HANDLER_MOVE_LEFT);
                 break;
             case KeyEvent.VK_DOWN:
-                keyReleasedActionHandler(HANDLER_MOVE_DOWN);
+                queueKeyReleasedAction(HANDLER_MOVE_DOWN);
                 break;
             case KeyEvent.VK_UP:
-                keyReleasedActionHandler(HANDLER_MOVE_UP);
+                queueKeyReleasedAction(HANDLER_MOVE_UP);
                 break;
             case KeyEvent.VK_Z:
-                keyReleasedActionHandler(HANDLER_OBJECT_ACTION);
+                queueKeyReleasedAction(HANDLER_OBJECT_ACTION);
                 break;
         }
     }
 
+    /* Actions are not performed as soon as the keys are pressed or released, they are queued and the
+     * game performs them at the beginning of the next update (see InputQueue). */
+    protected void queueKeyPressedAction(int action, KeyEvent ke)
+    {
+        GameThread.inputQueue.post(InputAction.keyPressed(action, ke.isControlDown()));
+    }
+
+    protected void queueKeyReleasedAction(int action)
+    {
+        GameThread.inputQueue.post(InputAction.keyReleased(action));
+    }
+
+    // Perform a queued (or replayed) key action
+    public void performAction(InputAction inputAction)
+    {
+        if (inputAction.getKind() == InputAction.KEY_PRESSED)
+        {
+            KeyEvent ke = new KeyEvent(ACTION_EVENT_SOURCE, KeyEvent.KEY_PRESSED, 0,
+                    inputAction.isControlDown() ? InputEvent.CTRL_DOWN_MASK : 0,
+                    KeyEvent.VK_UNDEFINED, KeyEvent.CHAR_UNDEFINED);
+            keyPressedActionHandler(inputAction.getAction(), ke, -1);
+        }
+        else if (inputAction.getKind() == InputAction.KEY_RELEASED)
+            keyReleasedActionHandler(inputAction.getAction());
+    }
+
     protected void keyPressedActionHandler(int action, KeyEvent ke, int keyHeldId)
     {
         //Handle corresponding input command
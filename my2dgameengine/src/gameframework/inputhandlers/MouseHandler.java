@@ -1,6 +1,7 @@
 package gameframework.inputhandlers;
 
 import gameframework.GameData;
+import gameframework.GameThread;
 import gameframework.display.GameDisplay;
 import gameframework.gamecharacters.Player;
 
@@ -37,6 +38,8 @@ public class MouseHandler implements MouseInputListener,
 
     }
 
+    /* Mouse actions are not performed right away, they are queued (along with the position of the
+     * pointer in the game world) and the game performs them at the beginning of the next update. */
     @Override
     public void mousePressed(MouseEvent me)
     {
@@ -45,44 +48,59 @@ public class MouseHandler implements MouseInputListener,
 //                     " Y: " + (me.getY() + display.getCameraPosition().y),
 //                     "Mouse Position Info", JOptionPane.INFORMATION_MESSAGE);
 //
-        if (me.getButton() == MouseEvent.BUTTON1)
-        {
-            System.out.println("Left button clicked");
-            targetX = me.getX() + display.getCameraPosition().x;
-            targetY = me.getY() + display.getCameraPosition().y;
-            Player.getActivePlayer().specialActionA(true);
-
-        }
-        else if (me.getButton() == MouseEvent.BUTTON2)
-        {
-            System.out.println("Middle button clicked");
-            Player.getActivePlayer().specialActionB(true);
-        }
-        else if (me.getButton() == MouseEvent.BUTTON3)
-        {
-            System.out.println("Right button clicked");
-            Player.getActivePlayer().specialActionC(true);
-        }
+        GameThread.inputQueue.post(InputAction.mousePressed(me.getButton(),
+                me.getX() + display.getCameraPosition().x, me.getY() + display.getCameraPosition().y));
     }
 
     @Override
     public void mouseReleased(MouseEvent me)
     {
-        if (me.getButton() == MouseEvent.BUTTON1)
-        {
-            System.out.println("Left button released");
-            Player.getActivePlayer().specialActionA(false);
+        GameThread.inputQueue.post(InputAction.mouseReleased(me.getButton(),
+                me.getX() + display.getCameraPosition().x, me.getY() + display.getCameraPosition().y));
+    }
 
-        }
-        else if (me.getButton() == MouseEvent.BUTTON2)
+    // Perform a queued (or replayed) mouse action
+    public void performAction(InputAction inputAction)
+    {
+        if (inputAction.getKind() == InputAction.MOUSE_PRESSED)
         {
-            System.out.println("Middle button released");
-            Player.getActivePlayer().specialActionB(false);
+            if (inputAction.getAction() == MouseEvent.BUTTON1)
+            {
+                System.out.println("Left button clicked");
+                targetX = inputAction.getX();
+                targetY = inputAction.getY();
+                Player.getActivePlayer().specialActionA(true);
+
+            }
+            else if (inputAction.getAction() == MouseEvent.BUTTON2)
+            {
+                System.out.println("Middle button clicked");
+                Player.getActivePlayer().specialActionB(true);
+            }
+            else if (inputAction.getAction() == MouseEvent.BUTTON3)
+            {
+                System.out.println("Right button clicked");
+                Player.getActivePlayer().specialActionC(true);
+            }
         }
-        else if (me.getButton() == MouseEvent.BUTTON3)
+        else if (inputAction.getKind() == InputAction.MOUSE_RELEASED)
         {
-            System.out.println("Right button released");
-            Player.getActivePlayer().specialActionC(false);
+            if (inputAction.getAction() == MouseEvent.BUTTON1)
+            {
+                System.out.println("Left button released");
+                Player.getActivePlayer().specialActionA(false);
+
+            }
+            else if (inputAction.getAction() == MouseEvent.BUTTON2)
+            {
+                System.out.println("Middle button released");
+                Player.getActivePlayer().specialActionB(false);
+            }
+            else if (inputAction.getAction() == MouseEvent.BUTTON3)
+            {
+                System.out.println("Right button released");
+                Player.getActivePlayer().specialActionC(false);
+            }
         }
     }
 
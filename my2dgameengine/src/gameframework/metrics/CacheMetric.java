@@ -0,0 +1,56 @@
+package gameframework.metrics;
+
+import gameframework.GameThread;
+import gameframework.resourcemanagement.ResourceManager;
+
+/*
+ * The statistics of the resource cache, as published through JMX. The values are read from the
+ * resource manager of the game every time they are shown, they are 0 until the game creates it.
+ */
+public class CacheMetric implements CacheMetricMBean
+{
+    CacheMetric()
+    {
+    }
+
+    @Override
+    public long getHits()
+    {
+        ResourceManager resources = GameThread.resourceManager;
+        return resources == null ? 0 : resources.getCacheHits();
+    }
+
+    @Override
+    public long getMisses()
+    {
+        ResourceManager resources = GameThread.resourceManager;
+        return resources == null ? 0 : resources.getCacheMisses();
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        ResourceManager resources = GameThread.resourceManager;
+        return resources == null ? 0 : resources.getCacheEvictions();
+    }
+
+    @Override
+    public long getCachedKB()
+    {
+        ResourceManager resources = GameThread.resourceManager;
+        return resources == null ? 0 : resources.getCachedBytes() / 1024;
+    }
+
+    @Override
+    public long getBudgetKB()
+    {
+        return ResourceManager.MEMORY_BUDGET / 1024;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%-20s hits %d  misses %d  evictions %d  %d of %d KB", "resourceCache",
+                getHits(), getMisses(), getEvictions(), getCachedKB(), getBudgetKB());
+    }
+}
@@ -0,0 +1,14 @@
+package gameframework.metrics;
+
+/*
+ * Management interface of the resource cache statistics (see ResourceManager), published along with
+ * the other engine metrics (see GameMetrics.registerMBeans).
+ */
+public interface CacheMetricMBean
+{
+    long getHits();
+    long getMisses();
+    long getEvictions();
+    long getCachedKB();
+    long getBudgetKB();
+}
@@ -0,0 +1,193 @@
+package gameframework.metrics;
+
+import gameframework.GameThread;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Registry of the engine metrics: the time taken by each phase of the updates and the rendered
+ * frames, and counts of the work done per update (objects updated, collision pairs tested and the
+ * size of the neighbor queries). Everything is kept in histograms, so we see how long a phase
+ * usually takes (p50) and how bad the occasional spikes are (p99 and max) instead of an average.
+ *
+ * The engine code marks the beginning and end of each phase with beginPhase/endPhase, and the end
+ * of each update or frame with endUpdate/endFrame. Nothing is measured unless metrics are enabled
+ * (GameThread.ENABLE_METRICS), in which case the metrics (and the statistics of the resource cache)
+ * are also published as MBeans under the "gameframework" domain so live games can be watched with
+ * JConsole.
+ */
+public class GameMetrics
+{
+    // Phases of an update
+    public static final int INPUT = 0;
+    public static final int PHYSICS = 1;          //object updates not included in any other phase
+    public static final int PLATFORMING = 2;
+    public static final int COLLISION = 3;
+    public static final int AI = 4;
+    public static final int WEAPONS = 5;          //updates of weapons and projectiles
+    public static final int POST_UPDATE = 6;
+    public static final int SNAPSHOT = 7;         //capturing the draw list for the render thread
+    // Phases of a rendered frame
+    public static final int BACKGROUND_DRAW = 8;
+    public static final int OBJECT_DRAW = 9;
+    public static final int HUD = 10;
+    public static final int SHOW = 11;
+    public static final int PHASE_COUNT = 12;
+
+    private static final String[] PHASE_NAMES = { "input", "physics", "platforming", "collision", "ai",
+            "weapons", "postUpdate", "snapshot", "backgroundDraw", "objectDraw", "hud", "show" };
+
+    // Counts recorded once per update
+    public static final int OBJECTS_UPDATED = 0;
+    public static final int COLLISION_PAIRS_TESTED = 1;
+    // Counts recorded once per query
+    public static final int NEIGHBOR_QUERY_SIZE = 2;
+    public static final int COUNT_METRICS = 3;
+
+    private static final String[] COUNT_NAMES = { "objectsUpdated", "collisionPairsTested",
+            "neighborQuerySize" };
+
+    private static final Metric[] phaseMetrics = new Metric[PHASE_COUNT];
+    private static final Histogram[] phaseHistograms = new Histogram[PHASE_COUNT];
+    private static final Metric[] countMetrics = new Metric[COUNT_METRICS];
+    private static final CacheMetric cacheMetric = new CacheMetric();
+
+    private static final PhaseTimer updateTimer = new PhaseTimer(PHASE_COUNT);
+    private static final PhaseTimer renderTimer = new PhaseTimer(PHASE_COUNT);
+    /* per update counts, added to by the thread updating the game and the threads of the parallel update
+     * and the parallel narrowphase */
+    private static final LongAdder[] updateCounts = new LongAdder[COUNT_METRICS];
+
+    private static boolean registered = false;
+
+    static
+    {
+        for (int i = 0; i < PHASE_COUNT; i++)
+        {
+            phaseMetrics[i] = Metric.time(PHASE_NAMES[i]);
+            phaseHistograms[i] = phaseMetrics[i].getHistogram();
+        }
+        for (int i = 0; i < COUNT_METRICS; i++)
+        {
+            countMetrics[i] = Metric.count(COUNT_NAMES[i]);
+            updateCounts[i] = new LongAdder();
+        }
+    }
+
+    public static void beginPhase(int phase)
+    {
+        if (GameThread.ENABLE_METRICS)
+            timerFor(phase).begin(phase);
+    }
+
+    public static void endPhase(int phase)
+    {
+        if (GameThread.ENABLE_METRICS)
+            timerFor(phase).end();
+    }
+
+    // Add to one of the per update counts, from any thread
+    public static void count(int countMetric, long amount)
+    {
+        if (GameThread.ENABLE_METRICS)
+            updateCounts[countMetric].add(amount);
+    }
+
+    // Record a count that isn't accumulated per update (like the size of a single query)
+    public static void recordCount(int countMetric, long value)
+    {
+        if (GameThread.ENABLE_METRICS)
+            countMetrics[countMetric].getHistogram().record(value);
+    }
+
+    // Called by the game data at the end of every update
+    public static void endUpdate()
+    {
+        if (!GameThread.ENABLE_METRICS)
+            return;
+
+        updateTimer.endTick(phaseHistograms);
+        countMetrics[OBJECTS_UPDATED].getHistogram().record(updateCounts[OBJECTS_UPDATED].sumThenReset());
+        countMetrics[COLLISION_PAIRS_TESTED].getHistogram().record(updateCounts[COLLISION_PAIRS_TESTED].sumThenReset());
+    }
+
+    /* Called by the display at the end of every rendered frame (which happens in the render thread
+     * when rendering is pipelined, render phases are timed apart from update phases for that reason) */
+    public static void endFrame()
+    {
+        if (GameThread.ENABLE_METRICS)
+            renderTimer.endTick(phaseHistograms);
+    }
+
+    private static PhaseTimer timerFor(int phase)
+    {
+        return phase >= BACKGROUND_DRAW ? renderTimer : updateTimer;
+    }
+
+    public static MetricMBean getPhaseMetric(int phase)
+    {
+        return phaseMetrics[phase];
+    }
+
+    public static MetricMBean getCountMetric(int countMetric)
+    {
+        return countMetrics[countMetric];
+    }
+
+    public static CacheMetricMBean getCacheMetric()
+    {
+        return cacheMetric;
+    }
+
+    public static void reset()
+    {
+        for (Metric metric : phaseMetrics)
+            metric.reset();
+        for (Metric metric : countMetrics)
+            metric.reset();
+    }
+
+    // Publish every metric in the platform MBean server (only done once)
+    public static synchronized void registerMBeans()
+    {
+        if (registered)
+            return;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            for (Metric metric : phaseMetrics)
+                server.registerMBean(metric, new ObjectName("gameframework:type=Phase,name=" + metric.getName()));
+            for (Metric metric : countMetrics)
+                server.registerMBean(metric, new ObjectName("gameframework:type=Count,name=" + metric.getName()));
+            server.registerMBean(cacheMetric, new ObjectName("gameframework:type=ResourceCache,name=resourceCache"));
+            registered = true;
+        }
+        catch (JMException e)
+        {
+            System.out.println("Unable to publish the engine metrics: " + e.getMessage());
+        }
+    }
+
+    public static void printSummary()
+    {
+        System.out.println("Engine metrics:");
+        for (Metric metric : phaseMetrics)
+        {
+            if (metric.getCount() > 0)
+                System.out.println("  " + metric);
+        }
+        for (Metric metric : countMetrics)
+        {
+            if (metric.getCount() > 0)
+                System.out.println("  " + metric);
+        }
+
+        if (GameThread.resourceManager != null)
+            System.out.println("  " + cacheMetric);
+    }
+}
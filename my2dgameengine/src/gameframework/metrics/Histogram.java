@@ -0,0 +1,107 @@
+package gameframework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Lock-free histogram of non negative long values (nanoseconds, object counts, etc). Values are
+ * counted in log-linear buckets: values below 16 get a bucket each, and every power of two above
+ * that is split into 8 buckets, so any value is known within 12.5% while the whole range of longs
+ * fits in a few hundred buckets. Recording is a couple of atomic increments, so the game thread can
+ * record values while the JMX threads read percentiles, without any of them ever waiting.
+ */
+public class Histogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (62 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value)
+    {
+        if (value < 0)
+            value = 0;
+
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long curMax = max.get();
+        while (value > curMax && !max.compareAndSet(curMax, value))
+            curMax = max.get();
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public double getMean()
+    {
+        long curCount = count.get();
+        return curCount > 0 ? (double)sum.get() / curCount : 0;
+    }
+
+    /* Returns the value below which the given fraction (0 to 1) of the recorded values fall, as the
+     * upper end of the bucket holding it (never above the maximum recorded value). */
+    public long getPercentile(double fraction)
+    {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += buckets.get(i);
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return Math.min(bucketUpperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /* Values recorded while resetting may be lost or partially counted, which is fine for metrics
+     * that are watched live. */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            buckets.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    private static int bucketIndex(long value)
+    {
+        if (value < LINEAR_BUCKETS)
+            return (int)value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index)
+    {
+        if (index < LINEAR_BUCKETS)
+            return index;
+
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long)(SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+    }
+}
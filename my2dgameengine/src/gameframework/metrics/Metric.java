@@ -0,0 +1,84 @@
+package gameframework.metrics;
+
+/*
+ * A named histogram, as published through JMX. Times are recorded in nanoseconds but shown in
+ * microseconds, which is a more readable unit for the phases of a tick.
+ */
+public class Metric implements MetricMBean
+{
+    private final String name;
+    private final String unit;
+    private final double scale;       //recorded values are divided by this before being shown
+    private final Histogram histogram = new Histogram();
+
+    Metric(String name, String unit, double scale)
+    {
+        this.name = name;
+        this.unit = unit;
+        this.scale = scale;
+    }
+
+    static Metric time(String name)
+    {
+        return new Metric(name, "us", 1000.0);
+    }
+
+    static Metric count(String name)
+    {
+        return new Metric(name, "count", 1.0);
+    }
+
+    Histogram getHistogram()
+    {
+        return histogram;
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public String getUnit() { return unit; }
+
+    @Override
+    public long getCount()
+    {
+        return histogram.getCount();
+    }
+
+    @Override
+    public double getMean()
+    {
+        return histogram.getMean() / scale;
+    }
+
+    @Override
+    public double getP50()
+    {
+        return histogram.getPercentile(0.50) / scale;
+    }
+
+    @Override
+    public double getP99()
+    {
+        return histogram.getPercentile(0.99) / scale;
+    }
+
+    @Override
+    public double getMax()
+    {
+        return histogram.getMax() / scale;
+    }
+
+    @Override
+    public void reset()
+    {
+        histogram.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%-20s %8d  mean %10.1f  p50 %10.1f  p99 %10.1f  max %10.1f %s",
+                name, getCount(), getMean(), getP50(), getP99(), getMax(), unit);
+    }
+}
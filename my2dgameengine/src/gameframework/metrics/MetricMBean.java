@@ -0,0 +1,17 @@
+package gameframework.metrics;
+
+/*
+ * Management interface of the engine metrics, every phase time and count is published as one of
+ * these (see GameMetrics.registerMBeans) so they can be watched live with JConsole.
+ */
+public interface MetricMBean
+{
+    String getName();
+    String getUnit();
+    long getCount();
+    double getMean();
+    double getP50();
+    double getP99();
+    double getMax();
+    void reset();
+}
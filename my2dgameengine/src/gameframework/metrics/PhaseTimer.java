@@ -0,0 +1,165 @@
+package gameframework.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Measures how long each phase of a tick (an update or a rendered frame) takes. Phases can be
+ * nested, for example the platforming and collision phases run inside the update of each object
+ * (the physics phase), in which case the time is only charged to the innermost phase, so the times
+ * of all phases add up to the time of the whole tick. Times are accumulated during the tick, since
+ * most phases are entered once per object, and recorded into the histograms when the tick ends.
+ *
+ * Each timer has one owner thread (the update and render phases each have their own timer), the first
+ * thread that uses it in a tick. Other threads working for the owner (like the threads of the parallel
+ * update) keep track of their own nested phases, and their times are added to the times of the owner
+ * when the tick ends. Note that the work of those threads overlaps, so with the parallel update the
+ * times of the phases they run are the sum over all threads and can add up to more than the tick.
+ */
+class PhaseTimer
+{
+    private final long[] phaseNanos;
+    private final boolean[] phaseEntered;
+    private int[] stack = new int[8];
+    private int depth = 0;
+    private long lastMark;
+    private volatile Thread owner;
+
+    // time of every phase in the threads other than the owner, and the phases they entered this tick
+    private final AtomicLongArray workerNanos;
+    private final AtomicIntegerArray workerEntered;
+    private final ThreadLocal<WorkerPhases> workerPhases;
+    private volatile int tick = 0;
+
+    // Phases a thread other than the owner is in
+    private static class WorkerPhases
+    {
+        int[] stack = new int[8];
+        int depth = 0;
+        long lastMark;
+        int tick;
+    }
+
+    PhaseTimer(int phaseCount)
+    {
+        phaseNanos = new long[phaseCount];
+        phaseEntered = new boolean[phaseCount];
+        workerNanos = new AtomicLongArray(phaseCount);
+        workerEntered = new AtomicIntegerArray(phaseCount);
+        workerPhases = new ThreadLocal<WorkerPhases>()
+        {
+            @Override
+            protected WorkerPhases initialValue()
+            {
+                return new WorkerPhases();
+            }
+        };
+    }
+
+    private boolean isOwner()
+    {
+        Thread current = Thread.currentThread();
+        if (owner == null)
+            owner = current;
+        return owner == current;
+    }
+
+    void begin(int phase)
+    {
+        if (!isOwner())
+        {
+            beginWorker(phase);
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        // pause the phase we are in (if any), the time from now on goes to the nested phase
+        if (depth > 0)
+            phaseNanos[stack[depth - 1]] += now - lastMark;
+
+        if (depth == stack.length)
+            stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = phase;
+        phaseEntered[phase] = true;
+        lastMark = now;
+    }
+
+    void end()
+    {
+        if (!isOwner())
+        {
+            endWorker();
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if (depth > 0)
+        {
+            phaseNanos[stack[depth - 1]] += now - lastMark;
+            depth--;
+        }
+        lastMark = now;
+    }
+
+    private WorkerPhases getWorkerPhases()
+    {
+        WorkerPhases worker = workerPhases.get();
+        //phases left open in a previous tick are not charged in this one
+        if (worker.tick != tick)
+        {
+            worker.tick = tick;
+            worker.depth = 0;
+        }
+        return worker;
+    }
+
+    private void beginWorker(int phase)
+    {
+        WorkerPhases worker = getWorkerPhases();
+        long now = System.nanoTime();
+
+        if (worker.depth > 0)
+            workerNanos.addAndGet(worker.stack[worker.depth - 1], now - worker.lastMark);
+
+        if (worker.depth == worker.stack.length)
+            worker.stack = Arrays.copyOf(worker.stack, worker.depth * 2);
+        worker.stack[worker.depth++] = phase;
+        workerEntered.set(phase, 1);
+        worker.lastMark = now;
+    }
+
+    private void endWorker()
+    {
+        WorkerPhases worker = getWorkerPhases();
+        long now = System.nanoTime();
+
+        if (worker.depth > 0)
+        {
+            workerNanos.addAndGet(worker.stack[worker.depth - 1], now - worker.lastMark);
+            worker.depth--;
+        }
+        worker.lastMark = now;
+    }
+
+    /* Record the time of every phase entered during the tick (phases that didn't run are not
+     * recorded, otherwise their percentiles would be meaningless) and start a new tick. */
+    void endTick(Histogram[] phaseHistograms)
+    {
+        owner = Thread.currentThread();
+        for (int phase = 0; phase < phaseNanos.length; phase++)
+        {
+            long nanos = phaseNanos[phase] + workerNanos.getAndSet(phase, 0);
+            boolean entered = workerEntered.getAndSet(phase, 0) != 0 || phaseEntered[phase];
+            if (entered && phaseHistograms[phase] != null)
+                phaseHistograms[phase].record(nanos);
+            phaseNanos[phase] = 0;
+            phaseEntered[phase] = false;
+        }
+        //a phase left open (by an exception) must not be charged in the next tick
+        depth = 0;
+        tick++;
+    }
+}
@@ -32,6 +32,23 @@ public class PlatformingHandler
      * caused by pixel rounding or uneven sprite boundaries. */
     private static final int PLATFORM_LATCH_OFFSET = 5;
 
+    // Result of the last relatching attempt, set by the relatch visitor
+    private boolean relatched;
+    // created once so relatching to nearby platforms doesn't allocate on every update
+    private final GameObjects.NeighborVisitor relatchVisitor = new GameObjects.NeighborVisitor()
+    {
+        @Override
+        public boolean visit(GameObject candidatePlatform)
+        {
+            if (mainObject.isLandingOnTopOf(candidatePlatform))
+            {
+                relatched = latch(candidatePlatform);
+                return false;
+            }
+            return true;
+        }
+    };
+
     public PlatformingHandler(GameObject object, GameObject platformObject)
     {
         mainObject = object;
@@ -127,20 +144,12 @@ public class PlatformingHandler
      */
     private boolean relatchToAdjacentPlatform(GameObjects objects)
     {
-        boolean success = false;
-
         if (mainObject.disableAutoRelatching())
             return false;
 
-        for (GameObject candidatePlatform : objects.getNeighborObjects(mainObject))
-        {
-            if (mainObject.isLandingOnTopOf(candidatePlatform))
-            {
-                success = latch(candidatePlatform);
-                break;
-            }
-        }
-        return success;
+        relatched = false;
+        objects.forEachNeighbor(mainObject, relatchVisitor);
+        return relatched;
     }
 
     //returns true if the object is no longer standing on a platform
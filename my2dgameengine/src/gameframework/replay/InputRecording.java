@@ -0,0 +1,143 @@
+package gameframework.replay;
+
+import gameframework.inputhandlers.InputAction;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * The input of a game, recorded so the game can be replayed later: the seed of the game's random
+ * numbers (see GameRandom), every input action performed stamped with the tick (update) it was
+ * performed in, and the total number of ticks the game ran. The checksum of the state of the game
+ * when the recording stopped (see ReplayDriver.computeStateChecksum) is saved too, so a replay can
+ * verify it simulated the same game. Recordings are stored as text files, one action per line:
+ *
+ *   seed <seed>
+ *   ticks <total number of ticks>
+ *   checksum <state checksum in hex>      (optional)
+ *   <tick> <kind> <handler id or mouse button> <control down (0/1)> <x> <y>
+ */
+public class InputRecording
+{
+    private final long seed;
+    private long length;
+    private boolean hasStateChecksum;
+    private long stateChecksum;
+    private final ArrayList<InputAction> actions = new ArrayList<InputAction>();
+
+    public InputRecording(long seed)
+    {
+        this.seed = seed;
+        length = 0;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    // Number of ticks the recorded game ran
+    public synchronized long getLength()
+    {
+        return length;
+    }
+
+    public synchronized void setLength(long length)
+    {
+        this.length = length;
+    }
+
+    // Checksum of the state of the game after the last tick recorded
+    public synchronized void setStateChecksum(long checksum)
+    {
+        stateChecksum = checksum;
+        hasStateChecksum = true;
+    }
+
+    public synchronized boolean hasStateChecksum()
+    {
+        return hasStateChecksum;
+    }
+
+    public synchronized long getStateChecksum()
+    {
+        return stateChecksum;
+    }
+
+    // Actions are added in the order they were performed (which keeps them sorted by tick)
+    public synchronized void add(InputAction action)
+    {
+        actions.add(action);
+        length = Math.max(length, action.getTick());
+    }
+
+    public synchronized List<InputAction> getActions()
+    {
+        return new ArrayList<InputAction>(actions);
+    }
+
+    public synchronized void save(Path path) throws IOException
+    {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8)))
+        {
+            out.println("seed " + seed);
+            out.println("ticks " + length);
+            if (hasStateChecksum)
+                out.println("checksum " + Long.toHexString(stateChecksum));
+            for (InputAction action : actions)
+                out.println(action.getTick() + " " + action.getKind() + " " + action.getAction() + " " +
+                        (action.isControlDown() ? 1 : 0) + " " + action.getX() + " " + action.getY());
+        }
+    }
+
+    public static InputRecording load(Path path) throws IOException
+    {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+        {
+            InputRecording recording = new InputRecording(Long.parseLong(readValue(in, "seed")));
+            long length = Long.parseLong(readValue(in, "ticks"));
+
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                if (line.isEmpty())
+                    continue;
+
+                if (line.startsWith("checksum "))
+                {
+                    recording.setStateChecksum(Long.parseUnsignedLong(line.substring(9).trim(), 16));
+                    continue;
+                }
+
+                String[] fields = line.split(" ");
+                if (fields.length != 6)
+                    throw new IOException("Invalid input recording line: " + line);
+
+                recording.add(new InputAction(Long.parseLong(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), fields[3].equals("1"),
+                        Integer.parseInt(fields[4]), Integer.parseInt(fields[5])));
+            }
+            recording.setLength(Math.max(length, recording.getLength()));
+            return recording;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Invalid input recording file: " + path, e);
+        }
+    }
+
+    // Reads a "<name> <value>" header line
+    private static String readValue(BufferedReader in, String name) throws IOException
+    {
+        String line = in.readLine();
+        if (line == null || !line.startsWith(name + " "))
+            throw new IOException("Invalid input recording header, expected: " + name);
+        return line.substring(name.length() + 1).trim();
+    }
+}
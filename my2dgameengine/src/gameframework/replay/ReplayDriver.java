@@ -0,0 +1,160 @@
+package gameframework.replay;
+
+import gameframework.GameClock;
+import gameframework.GameData;
+import gameframework.GameRandom;
+import gameframework.GameThread;
+import gameframework.animations.Animation;
+import gameframework.display.GameDisplay;
+import gameframework.gameobjects.GameObject;
+import gameframework.inputhandlers.InputAction;
+import gameframework.inputhandlers.MouseHandler;
+import gameframework.metrics.GameMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Replays a recorded game without any window, as fast as possible: the recorded input actions are
+ * fed to the input queue at the same ticks they were recorded in, and the game data is updated once
+ * per tick. Since the game time (GameClock) and random numbers (GameRandom) only depend on the
+ * ticks and the recorded seed, every replay of a recording runs the exact same workload, which is
+ * what we need to compare the performance of engine changes (ticks per second and bytes allocated
+ * per tick). A checksum of the final state of all objects is reported so different runs can be
+ * verified to be identical, and compared with the checksum saved when the game was recorded (if any),
+ * which verifies that the replay simulated the same game that was played.
+ *
+ * Usage: call prepare before the game thread is created (and the level loaded), then run.
+ */
+public class ReplayDriver
+{
+    private final InputRecording recording;
+
+    private long ticksReplayed;
+    private double seconds;
+    private long allocatedBytes;        //bytes allocated by the replaying thread, -1 if not supported
+    private long stateChecksum;
+
+    public ReplayDriver(InputRecording recording)
+    {
+        this.recording = recording;
+    }
+
+    /* Run the game without a window, restart the game clock and seed the random numbers the same way
+     * they were when recording. */
+    public static void prepare(InputRecording recording)
+    {
+        GameThread.HEADLESS_MODE = true;
+        GameClock.reset();
+        GameRandom.setSeed(recording.getSeed());
+    }
+
+    public void run()
+    {
+        GameData data = GameThread.data;
+
+        //mouse actions are performed by a default handler if the game didn't set any
+        if (GameThread.inputQueue.getMouseHandler() == null)
+            GameThread.inputQueue.setMouseHandler(new MouseHandler(null, data));
+
+        List<InputAction> actions = recording.getActions();
+        int nextAction = 0;
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long startBytes = getAllocatedBytes(threadBean);
+        long startTime = System.nanoTime();
+
+        while (GameClock.getTicks() < recording.getLength())
+        {
+            long tick = GameClock.getTicks() + 1;
+
+            //queue the actions recorded in this tick, the game data performs them before updating
+            while (nextAction < actions.size() && actions.get(nextAction).getTick() <= tick)
+                GameThread.inputQueue.post(actions.get(nextAction++));
+
+            // same tick number the game loop passes to the game data (see GameThread.gameLoop)
+            data.update((int)((tick - 1) % GameThread.UPDATES_PER_SECOND));
+            GameDisplay.updateCamera();
+        }
+
+        seconds = (System.nanoTime() - startTime) / 1e9;
+        long endBytes = getAllocatedBytes(threadBean);
+        allocatedBytes = startBytes >= 0 && endBytes >= 0 ? endBytes - startBytes : -1;
+        ticksReplayed = GameClock.getTicks();
+        stateChecksum = computeStateChecksum(data);
+
+        System.out.println("Replay: " + ticksReplayed + " ticks in " + String.format("%.2f", seconds) +
+                "s (" + String.format("%.1f", getTicksPerSecond()) + " ticks per second), " +
+                (allocatedBytes >= 0 ? getAllocatedBytesPerTick() + " bytes allocated per tick" :
+                        "allocations not available") +
+                ", state checksum " + Long.toHexString(stateChecksum));
+        if (recording.hasStateChecksum())
+        {
+            if (recording.getStateChecksum() == stateChecksum)
+                System.out.println("Replay: state checksum matches the recorded game");
+            else
+                System.out.println("Replay: state checksum differs from the recorded game (" +
+                        Long.toHexString(recording.getStateChecksum()) + "), the replay diverged");
+        }
+        if (GameThread.ENABLE_METRICS)
+            GameMetrics.printSummary();
+    }
+
+    // Bytes allocated so far by the current thread (HotSpot specific), or -1 if not supported
+    private static long getAllocatedBytes(ThreadMXBean threadBean)
+    {
+        if (threadBean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean)threadBean;
+            if (hotspotBean.isThreadAllocatedMemorySupported() && hotspotBean.isThreadAllocatedMemoryEnabled())
+                return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /* Hash of the name, position, velocity and animation frame of every object in the game, the caller
+     * must keep the game data from being updated meanwhile (see GameData.update). */
+    public static long computeStateChecksum(GameData data)
+    {
+        long checksum = data.getObjects().size();
+
+        for (GameObject go : data.getObjects())
+        {
+            checksum = checksum * 31 + go.getName().hashCode();
+            checksum = checksum * 31 + go.getX();
+            checksum = checksum * 31 + go.getY();
+            checksum = checksum * 31 + Double.hashCode(go.getVelX());
+            checksum = checksum * 31 + Double.hashCode(go.getVelY());
+
+            Animation animation = go.getActiveAnimation();
+            if (animation != null)
+            {
+                checksum = checksum * 31 + Objects.hashCode(animation.getName());
+                checksum = checksum * 31 + animation.getCurrentFrameIndex();
+            }
+        }
+        return checksum;
+    }
+
+    public long getTicksReplayed()
+    {
+        return ticksReplayed;
+    }
+
+    public double getTicksPerSecond()
+    {
+        return ticksReplayed / Math.max(seconds, 1e-9);
+    }
+
+    public long getAllocatedBytesPerTick()
+    {
+        return allocatedBytes >= 0 ? allocatedBytes / Math.max(ticksReplayed, 1) : -1;
+    }
+
+    public long getStateChecksum()
+    {
+        return stateChecksum;
+    }
+}
@@ -9,24 +9,110 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /* This is a class that we use to easily load images, audio clips and other resources embedded in
  * the executable (jar file). It also does resource management by making sure we never load the same
  * resource twice from secondary storage.
+ *
+ * Resources can be requested asynchronously (the load*Async methods), in which case they are read and
+ * decoded by a small pool of loader threads and the request returns right away with a future, so the
+ * game can ask for resources before it needs them and never has to wait for the disk in the middle of
+ * an update. Requests can be made from any thread, and all requests for the same resource share the
+ * same load (only the first one reads it, the rest get the same future). The regular load methods
+ * return the resource right away, waiting for it if it's being loaded by someone else (or loading it
+ * on the calling thread if nobody requested it yet).
+ *
+ * Loaded resources are kept as long as they fit in the memory budget (MEMORY_BUDGET), based on an
+ * estimate of the memory each one takes (the raster of images, the samples of audio clips). Once the
+ * budget is exceeded the least recently used resources are evicted (and loaded again if requested
+ * again), except for resources held by a scope (see ResourceScope), which are always kept. Note that an evicted resource only leaves memory once nothing else in the game
+ * references it.
+ *
+ * Every resource requested is added to the scope of the request: the scope set for the requesting
+ * thread if any (setThreadScope), otherwise the default scope (the transient scope unless another one
+ * is set, see setDefaultScope). Levels only hold the resources of their manifest (see
+ * GameLevel.requestResources), so the resources requested while a level is played can be evicted.
  */
 public class ResourceManager
 {
     private static final String RESOURCE_FOLDER = "/resources/";
     private final static String LEVELS_FOLDER = "levels/";
-    private final HashMap<String, Object> resourceMap;
+    // resources loaded or being loaded, a resource that fails to load is removed so it can be retried
+    private final ConcurrentHashMap<String, CachedResource> resourceMap;
+    // number of scopes holding each resource, only accessed while holding the lock of the manager
+    private final HashMap<String, Integer> references;
+    /* Loaded resources that can be evicted (not held by any scope), from the least to the most recently used
+     * one, only accessed while holding the lock of the manager. */
+    private final LinkedHashMap<String, CachedResource> evictionOrder;
+    // version of every resource loaded so far (see getResourceVersion), kept after the resource is evicted
+    private final ConcurrentHashMap<String, Long> resourceVersions;
+
+    private final ResourceScope globalScope;
+    private final ResourceScope transientScope;
+    private volatile ResourceScope defaultScope;
+    private final ThreadLocal<ResourceScope> threadScope;
+
+    /* Memory (in bytes) that loaded resources can take before the least recently used ones are evicted,
+     * a quarter of the heap by default */
+    public static long MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+    // Cache state, the size of the cached resources is only changed while holding the lock of the manager
+    private long cachedBytes = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class CachedResource
+    {
+        final CompletableFuture<Object> request = new CompletableFuture<Object>();
+        long size = -1;             //estimated size in bytes, -1 until the resource is loaded and counted
+    }
+
+    // Number of threads loading resources requested asynchronously
+    public static int LOADER_THREADS = 2;
+    private static ExecutorService loaderPool;
+
+    /* Local folder (relative to the working directory) where the engine stores data computed from
+     * the resources (for example sprite borders), so it doesn't have to be computed again on the
+     * next start. Cache files can be safely deleted at any time. */
+    public static String CACHE_FOLDER = "cache/";
+    public static boolean enableCacheFiles = true;
 
     public ResourceManager()
     {
-        resourceMap = new HashMap<String,Object>();
+        resourceMap = new ConcurrentHashMap<String, CachedResource>();
+        references = new HashMap<String, Integer>();
+        evictionOrder = new LinkedHashMap<String, CachedResource>(16, 0.75f, true);
+        resourceVersions = new ConcurrentHashMap<String, Long>();
+        globalScope = new ResourceScope(this, "global", ResourceScope.GLOBAL);
+        transientScope = new ResourceScope(this, "transient", ResourceScope.TRANSIENT);
+        defaultScope = transientScope;
+        threadScope = new ThreadLocal<ResourceScope>();
     }
 
     public interface ResourceProcessor
@@ -34,79 +120,324 @@ public class ResourceManager
         Object process(InputStream resourceStream) throws Exception;
     }
 
+    // Threads loading resources in the background, also used for other work related to loading (see LevelTransitionManager)
+    public static synchronized ExecutorService getLoaderPool()
+    {
+        if (loaderPool == null)
+        {
+            loaderPool = Executors.newFixedThreadPool(Math.max(1, LOADER_THREADS), new ThreadFactory()
+            {
+                private int threadCount = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "Resource loader " + (++threadCount));
+                    //loading resources shouldn't keep the game running once the game thread ends
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loaderPool;
+    }
+
     public Object loadGeneralResource(String resourceName, String levelName,
                                       ResourceProcessor resourceProcessor)
     {
-        String resourcePath = RESOURCE_FOLDER  + (levelName.isEmpty() ? "" :
-                (LEVELS_FOLDER + levelName + "/")) + resourceName ;
         //Important, note that resource names should be unique per level
-        Object resource = resourceMap.get(resourceName);
+        getRequestScope().acquire(resourceName);
+        CachedResource request = new CachedResource();
+        CachedResource resource = resourceMap.putIfAbsent(resourceName, request);
 
+        /* if the resource isn't registered already then load it from the jar file (right away, since
+         * it's needed now) and store it in the resource map so that it can be retrieved easily using
+         * the resource name */
         if (resource == null)
         {
-            /* if the resource isn't registered already then load it from the jar file and store
-             * it in the resource map so that it can be retrieved easily using the resource name */
-            try
+            misses.incrementAndGet();
+            load(resourceName, levelName, resourceProcessor, request);
+            resource = request;
+        }
+        else
+        {
+            hits.incrementAndGet();
+            markUsed(resourceName);
+        }
+        return resource.request.join();
+    }
+
+    /* Request a resource without waiting for it, the returned future is completed with the resource
+     * (or null if it can't be loaded) by one of the loader threads. */
+    public CompletableFuture<Object> loadGeneralResourceAsync(final String resourceName, final String levelName,
+                                                              final ResourceProcessor resourceProcessor)
+    {
+        getRequestScope().acquire(resourceName);
+        final CachedResource request = new CachedResource();
+        CachedResource resource = resourceMap.putIfAbsent(resourceName, request);
+
+        if (resource == null)
+        {
+            misses.incrementAndGet();
+            resource = request;
+            getLoaderPool().execute(new Runnable()
             {
-                resource = resourceProcessor.process(getClass().getResourceAsStream(resourcePath));
-                resourceMap.put(resourceName, resource);
-            }
-            catch (Exception e)
+                @Override
+                public void run()
+                {
+                    load(resourceName, levelName, resourceProcessor, request);
+                }
+            });
+        }
+        else
+        {
+            hits.incrementAndGet();
+            markUsed(resourceName);
+        }
+        return resource.request;
+    }
+
+    private void load(String resourceName, String levelName, ResourceProcessor resourceProcessor,
+                      CachedResource request)
+    {
+        Object resource = null;
+
+        resourceVersions.put(resourceName, readResourceVersion(getResourcePath(resourceName, levelName)));
+        try (InputStream resourceStream = getClass().getResourceAsStream(getResourcePath(resourceName, levelName)))
+        {
+            resource = resourceProcessor.process(resourceStream);
+        }
+        catch (Exception e)
+        {
+            System.out.println("Unable to load resource: " +
+                    resourceName);
+        }
+
+        if (resource == null)
+            resourceMap.remove(resourceName, request);
+        else
+            addToCache(resourceName, request, estimateSize(resource));
+        request.request.complete(resource);
+    }
+
+    // Count a loaded resource in the size of the cache, and evict other resources if it's over budget
+    private synchronized void addToCache(String resourceName, CachedResource resource, long size)
+    {
+        //the resource might have been freed while it was loading
+        if (resourceMap.get(resourceName) != resource)
+            return;
+
+        resource.size = size;
+        cachedBytes += size;
+        if (!references.containsKey(resourceName))
+            evictionOrder.put(resourceName, resource);
+        evictOverBudget(resource);
+    }
+
+    // Move a resource to the end of the eviction order (resources held by a scope aren't in it)
+    private synchronized void markUsed(String resourceName)
+    {
+        evictionOrder.get(resourceName);
+    }
+
+    /* Evict the least recently used resources until the cache is within its budget, never the resource
+     * given (the one just loaded, which is the most recently used one anyway). */
+    private void evictOverBudget(CachedResource keep)
+    {
+        Iterator<Map.Entry<String, CachedResource>> leastRecentlyUsed = evictionOrder.entrySet().iterator();
+        while (cachedBytes > MEMORY_BUDGET && leastRecentlyUsed.hasNext())
+        {
+            Map.Entry<String, CachedResource> entry = leastRecentlyUsed.next();
+            if (entry.getValue() == keep)
+                continue;
+
+            leastRecentlyUsed.remove();
+            evict(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /* Estimated memory taken by a resource: the pixels of images and the samples of audio clips
+     * (which is most of the memory they take), the characters of text resources and a rough size for
+     * anything else. */
+    private static long estimateSize(Object resource)
+    {
+        if (resource instanceof BufferedImage)
+        {
+            DataBuffer pixels = ((BufferedImage)resource).getRaster().getDataBuffer();
+            return (long)pixels.getSize() * pixels.getNumBanks() * DataBuffer.getDataTypeSize(pixels.getDataType()) / 8;
+        }
+        if (resource instanceof AudioData)
+            return ((AudioData)resource).getAudioBytes().length;
+        if (resource instanceof ArrayList)
+        {
+            long size = 0;
+            for (Object line : (ArrayList<?>)resource)
+                size += 2L * line.toString().length();
+            return size;
+        }
+        return 1024;
+    }
+
+    /* Wait for a resource requested asynchronously, for code that needs it right away (returns null if
+     * the resource couldn't be loaded). */
+    public static <T> T get(CompletableFuture<T> request)
+    {
+        return request.join();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> typed(CompletableFuture<Object> request)
+    {
+        return (CompletableFuture<T>)(CompletableFuture<?>)request;
+    }
+
+    private static String getResourcePath(String resourceName, String levelName)
+    {
+        return RESOURCE_FOLDER  + (levelName.isEmpty() ? "" :
+                (LEVELS_FOLDER + levelName + "/")) + resourceName ;
+    }
+
+    /* Returns the contents of a resource as a read only buffer, or null if the resource doesn't exist.
+     * Resources that are plain files (not packed in a jar file) are memory mapped instead of read, so
+     * only the parts actually used are read from secondary storage. Binary resources are not stored
+     * in the resource map. */
+    public ByteBuffer loadBinaryResource(String name, String levelName)
+    {
+        URL resourceUrl = getClass().getResource(getResourcePath(name, levelName));
+        if (resourceUrl == null)
+            return null;
+
+        try
+        {
+            if (resourceUrl.getProtocol().equals("file"))
+                return mapFile(Paths.get(resourceUrl.toURI()));
+
+            try (InputStream resourceStream = resourceUrl.openStream())
             {
-                System.out.println("Unable to load resource: " +
-                        resourceName);
+                return ByteBuffer.wrap(resourceStream.readAllBytes()).asReadOnlyBuffer();
             }
         }
-        return resource;
+        catch (IOException | URISyntaxException e)
+        {
+            System.out.println("Unable to load resource: " + name);
+            return null;
+        }
     }
 
-    public BufferedImage loadImageResource(String name, String levelName)
+    /* Returns a number that changes whenever the file of a resource changes, made from its size and its
+     * last modification time, or 0 if they are unknown. Data computed from a resource (see
+     * FrameBordersCache) is stored along with this, so it can be checked without reading the resource. */
+    public long getResourceVersion(String name)
     {
-        return (BufferedImage)loadGeneralResource(name, levelName, new ResourceProcessor() {
-            @Override
-            public Object process(InputStream resourceStream) throws Exception
+        Long version = resourceVersions.get(name);
+        return version != null ? version : 0;
+    }
+
+    private long readResourceVersion(String resourcePath)
+    {
+        URL resourceUrl = getClass().getResource(resourcePath);
+        if (resourceUrl == null)
+            return 0;
+
+        long size, lastModified;
+        try
+        {
+            if (resourceUrl.getProtocol().equals("file"))
             {
-                return ImageIO.read(resourceStream);
+                Path path = Paths.get(resourceUrl.toURI());
+                size = Files.size(path);
+                lastModified = Files.getLastModifiedTime(path).toMillis();
             }
-        });
+            else
+            {
+                //resources in a jar file, only the entry is looked up, nothing is read
+                URLConnection connection = resourceUrl.openConnection();
+                size = connection.getContentLengthLong();
+                lastModified = connection.getLastModified();
+            }
+        }
+        catch (IOException | URISyntaxException e)
+        {
+            return 0;
+        }
+
+        if (size < 0 || lastModified <= 0)
+            return 0;
+        long version = size * 0x9e3779b97f4a7c15L ^ lastModified;
+        return version != 0 ? version : 1;
     }
 
-    public ArrayList<String> loadTextResource(String name, String levelName)
+    // The mapping stays valid after the channel is closed, until the buffer is garbage collected
+    private static ByteBuffer mapFile(Path path) throws IOException
     {
-        return (ArrayList<String>)loadGeneralResource(name, levelName, new ResourceProcessor() {
-            @Override
-            public Object process(InputStream resourceStream) throws Exception
-            {
-                ArrayList<String> text = new ArrayList<String>();
-                Scanner fileScanner = new Scanner(resourceStream);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
 
-                while (fileScanner.hasNextLine())
-                    text.add(fileScanner.nextLine());
+    private static final ResourceProcessor imageProcessor = new ResourceProcessor() {
+        @Override
+        public Object process(InputStream resourceStream) throws Exception
+        {
+            return ImageIO.read(resourceStream);
+        }
+    };
 
-                return text;
-            }
-        });
+    private static final ResourceProcessor textProcessor = new ResourceProcessor() {
+        @Override
+        public Object process(InputStream resourceStream) throws Exception
+        {
+            ArrayList<String> text = new ArrayList<String>();
+            Scanner fileScanner = new Scanner(resourceStream);
+
+            while (fileScanner.hasNextLine())
+                text.add(fileScanner.nextLine());
+
+            return text;
+        }
+    };
+
+    private static final ResourceProcessor audioProcessor = new ResourceProcessor()
+    {
+        @Override
+        public Object process(InputStream resourceStream) throws Exception
+        {
+            // Load the audio input stream (we only support raw audio, that is an uncompressed WAV )
+            AudioInputStream audioStream = AudioSystem.getAudioInputStream(resourceStream);
+            // Get the audio format
+            AudioFormat format = audioStream.getFormat();
+            // Read all audio bytes into memory
+            byte[] audioBytes = audioStream.readAllBytes();
+            // Return the audio data container
+            return new AudioData(audioBytes, format);
+        }
+    };
+
+    public BufferedImage loadImageResource(String name, String levelName)
+    {
+        return (BufferedImage)loadGeneralResource(name, levelName, imageProcessor);
+    }
 
+    public CompletableFuture<BufferedImage> loadImageResourceAsync(String name, String levelName)
+    {
+        return typed(loadGeneralResourceAsync(name, levelName, imageProcessor));
+    }
+
+    public ArrayList<String> loadTextResource(String name, String levelName)
+    {
+        return (ArrayList<String>)loadGeneralResource(name, levelName, textProcessor);
     }
 
     public AudioData loadAudioResource(String name,
                                       String levelName)
     {
-        return (AudioData) loadGeneralResource(name, levelName, new ResourceProcessor()
-        {
-            @Override
-            public Object process(InputStream resourceStream) throws Exception
-            {
-                // Load the audio input stream (we only support raw audio, that is an uncompressed WAV )
-                AudioInputStream audioStream = AudioSystem.getAudioInputStream(resourceStream);
-                // Get the audio format
-                AudioFormat format = audioStream.getFormat();
-                // Read all audio bytes into memory
-                byte[] audioBytes = audioStream.readAllBytes();
-                // Return the audio data container
-                return new AudioData(audioBytes, format);
-            }
-        });
+        return (AudioData) loadGeneralResource(name, levelName, audioProcessor);
+    }
+
+    public CompletableFuture<AudioData> loadAudioResourceAsync(String name, String levelName)
+    {
+        return typed(loadGeneralResourceAsync(name, levelName, audioProcessor));
     }
 
     public Font loadFontResource(String name, float size)
@@ -124,13 +455,206 @@ public class ResourceManager
         });
     }
 
+    /* Returns the contents of a file in the local cache folder, or null if the file doesn't exist,
+     * can't be read or cache files are disabled. */
+    public byte[] loadCacheFile(String name)
+    {
+        if (!enableCacheFiles)
+            return null;
+
+        Path cachePath = Paths.get(CACHE_FOLDER, name);
+        if (!Files.isRegularFile(cachePath))
+            return null;
+
+        try
+        {
+            return Files.readAllBytes(cachePath);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Unable to read cache file: " + name);
+            return null;
+        }
+    }
+
+    // Same as loadCacheFile, but the file is memory mapped instead of read
+    public ByteBuffer mapCacheFile(String name)
+    {
+        if (!enableCacheFiles)
+            return null;
+
+        Path cachePath = Paths.get(CACHE_FOLDER, name);
+        if (!Files.isRegularFile(cachePath))
+            return null;
+
+        try
+        {
+            return mapFile(cachePath);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Unable to read cache file: " + name);
+            return null;
+        }
+    }
+
+    /* Stores data in a file in the local cache folder. The data is written to a temporary file
+     * first and then moved in place, so an interrupted write never leaves a corrupt cache file. */
+    public void saveCacheFile(String name, byte[] data)
+    {
+        if (!enableCacheFiles)
+            return;
+
+        try
+        {
+            Path cachePath = Paths.get(CACHE_FOLDER, name);
+            Files.createDirectories(cachePath.getParent());
+            Path tempPath = Files.createTempFile(cachePath.getParent(), "tmp", ".part");
+            Files.write(tempPath, data);
+            Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Unable to write cache file: " + name);
+        }
+    }
+
     /* Returns true if a resource has already been loaded from file and
      * is currently stored in RAM (in the resource map) for faster access. */
     public boolean resourceIsAlreadyLoaded(String name)
     {
-        return resourceMap.get(name) != null;
+        CachedResource resource = resourceMap.get(name);
+        return resource != null && resource.request.getNow(null) != null;
+    }
+
+    synchronized void addReference(String name)
+    {
+        Integer count = references.get(name);
+        references.put(name, count == null ? 1 : count + 1);
+        //held resources can't be evicted
+        if (count == null)
+            evictionOrder.remove(name);
+    }
+
+    // Resources no longer held are left to the cache, or evicted right away if requested
+    synchronized void removeReference(String name, boolean evictIfUnused)
+    {
+        Integer count = references.get(name);
+        if (count == null)
+            return;
+
+        if (count > 1)
+            references.put(name, count - 1);
+        else
+        {
+            references.remove(name);
+            CachedResource resource = resourceMap.get(name);
+            if (resource == null)
+                return;
+
+            if (evictIfUnused)
+                evict(name, resource);
+            else if (resource.size >= 0)
+            {
+                //a loaded resource no longer held is evicted like any other once the cache is over budget
+                evictionOrder.put(name, resource);
+                evictOverBudget(null);
+            }
+        }
+    }
+
+    private void evict(String name, CachedResource resource)
+    {
+        if (resourceMap.remove(name, resource))
+        {
+            if (resource.size >= 0)
+                cachedBytes -= resource.size;
+            evictionOrder.remove(name);
+            evictions.incrementAndGet();
+        }
     }
 
-    public void freeResources() {resourceMap.clear();}
+    // Scope for resources needed during the whole game
+    public ResourceScope getGlobalScope()
+    {
+        return globalScope;
+    }
+
+    // Scope for resources that can be evicted at any time (the default when no level is loaded)
+    public ResourceScope getTransientScope()
+    {
+        return transientScope;
+    }
+
+    // Create a scope of the given kind (see ResourceScope), it holds nothing until resources are requested in it
+    public ResourceScope createScope(String name, int kind)
+    {
+        return new ResourceScope(this, name, kind);
+    }
+
+    // Scope of the resources requested by any thread without a scope of its own (null for the transient scope)
+    public void setDefaultScope(ResourceScope scope)
+    {
+        defaultScope = scope != null ? scope : transientScope;
+    }
+
+    public ResourceScope getDefaultScope()
+    {
+        return defaultScope;
+    }
+
+    /* Scope of the resources requested by the calling thread from now on, instead of the default scope
+     * (null to use the default scope again). */
+    public void setThreadScope(ResourceScope scope)
+    {
+        if (scope != null)
+            threadScope.set(scope);
+        else
+            threadScope.remove();
+    }
+
+    public ResourceScope getThreadScope()
+    {
+        return threadScope.get();
+    }
+
+    private ResourceScope getRequestScope()
+    {
+        ResourceScope scope = threadScope.get();
+        return scope != null ? scope : defaultScope;
+    }
+
+    /* Evict every resource that isn't held by a scope. Resources still being loaded are completed
+     * as usual for whoever requested them, but they are no longer kept. */
+    public synchronized void freeResources()
+    {
+        for (Map.Entry<String, CachedResource> entry : resourceMap.entrySet())
+        {
+            if (!references.containsKey(entry.getKey()))
+                evict(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Cache statistics, hits and misses count every request (a request for a resource being loaded is a hit)
+    public long getCacheHits()
+    {
+        return hits.get();
+    }
+
+    public long getCacheMisses()
+    {
+        return misses.get();
+    }
+
+    public long getCacheEvictions()
+    {
+        return evictions.get();
+    }
+
+    // Estimated memory taken by the resources in the cache
+    public synchronized long getCachedBytes()
+    {
+        return cachedBytes;
+    }
 
 }
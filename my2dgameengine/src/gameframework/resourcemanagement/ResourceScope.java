@@ -0,0 +1,79 @@
+package gameframework.resourcemanagement;
+
+import java.util.HashSet;
+
+/*
+ * A group of resources that are needed for the same period of time, so they can be released together.
+ * Every resource requested from the resource manager is added to the scope the request is made in (see
+ * ResourceManager.setDefaultScope and setThreadScope), the same resource can belong to several scopes.
+ * There are three kinds of scopes:
+ *   GLOBAL      resources needed during the whole game (the HUD, the player), never evicted
+ *   LEVEL       resources of a level, never evicted while the level is in use, and released as soon
+ *               as the level isn't (unless another scope still holds them)
+ *   TRANSIENT   resources needed for a short time (like a menu), they don't hold the resources at all
+ *               and these are evicted from the cache as needed (see ResourceManager.MEMORY_BUDGET)
+ */
+public class ResourceScope
+{
+    public static final int GLOBAL = 0;
+    public static final int LEVEL = 1;
+    public static final int TRANSIENT = 2;
+
+    private final ResourceManager manager;
+    private final String name;
+    private final int kind;
+    private final HashSet<String> resources;
+    private boolean released;
+
+    ResourceScope(ResourceManager manager, String name, int kind)
+    {
+        this.manager = manager;
+        this.name = name;
+        this.kind = kind;
+        resources = new HashSet<String>();
+        released = false;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getKind()
+    {
+        return kind;
+    }
+
+    /* Hold a resource until the scope is released (every scope holds a resource only once), once released
+     * a scope doesn't hold resources anymore. */
+    public synchronized void acquire(String resourceName)
+    {
+        if (kind != TRANSIENT && !released && resources.add(resourceName))
+            manager.addReference(resourceName);
+    }
+
+    public synchronized boolean holds(String resourceName)
+    {
+        return resources.contains(resourceName);
+    }
+
+    public synchronized int getResourceCount()
+    {
+        return resources.size();
+    }
+
+    /* Stop holding every resource of the scope, resources of a level no longer held by any other scope
+     * are freed right away, other resources are left to the cache. */
+    public synchronized void release()
+    {
+        for (String resourceName : resources)
+            manager.removeReference(resourceName, kind == LEVEL);
+        resources.clear();
+        released = true;
+    }
+
+    public synchronized boolean isReleased()
+    {
+        return released;
+    }
+}
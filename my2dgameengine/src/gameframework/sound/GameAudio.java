@@ -6,18 +6,34 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import javax.sound.sampled.LineUnavailableException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * This class manages all audio for the game, including music
  * and all the different sound effects.
+ *
+ * Sound effects are played on a pool of voices: every effect registered gets VOICES_PER_EFFECT clips,
+ * opened once when its audio data is loaded (see SoundEffect), and no more than MAX_PLAYING_VOICES
+ * effects play at the same time. When the limit is reached the oldest voice of the lowest priority
+ * effect playing is stopped to play a new effect of the same or higher priority, otherwise the new
+ * effect isn't played. The voices of every effect are closed when the level changes (see
+ * closeSoundEffects), so only the effects played in the current level keep their audio lines open.
  */
 public class GameAudio
 {
+    // Number of clips of each sound effect (how many times the same effect can overlap)
+    public static int VOICES_PER_EFFECT = 2;
+    // Number of sound effects that can play at the same time (the main theme doesn't count)
+    public static int MAX_PLAYING_VOICES = 16;
+
     private GameClip mainTheme;
+    private final ConcurrentHashMap<String, SoundEffect> soundEffects;
 
     public GameAudio()
     {
         mainTheme = null;
+        soundEffects = new ConcurrentHashMap<String, SoundEffect>();
     }
 
     public void initMainTheme(String theme)
@@ -45,9 +61,9 @@ public class GameAudio
         {
             if (!theme.isEmpty())
             {
-                //Make sure to stop any previous theme that might be playing
+                //Make sure to stop any previous theme that might be playing (and free its audio line)
                 if (mainTheme != null)
-                    mainTheme.stop();
+                    mainTheme.close();
                 initMainTheme(theme);
                 success = true;
             }
@@ -63,14 +79,18 @@ public class GameAudio
     //end on a stop command and those that finish playback despite the stop.
     public void addSoundClip(String clipName, boolean keepPlayingAfterCommand,
                              boolean allowPlayRestart)
+    {
+        addSoundClip(clipName, keepPlayingAfterCommand, allowPlayRestart, 0);
+    }
+
+    /* Register a sound clip with a priority, when too many effects play at once, effects of higher
+     * priority stop those of lower priority (the default priority is 0). */
+    public void addSoundClip(String clipName, boolean keepPlayingAfterCommand,
+                             boolean allowPlayRestart, int priority)
     {
         try
         {
-            /* if the clip isn't registered already then store the clip in a map so that it can be
-             * retrieved easily in the future using the clip's name */
-              getClip(clipName, keepPlayingAfterCommand, allowPlayRestart);
-//            GameThread.resourceManager.loadAudioResource(clipName, GameThread.getCurrentLevel().getName(),
-//                                                         keepPlayingAfterCommand, allowPlayRestart);
+            registerEffect(clipName, keepPlayingAfterCommand, allowPlayRestart, priority);
         }
         catch (Exception e)
         {
@@ -79,6 +99,44 @@ public class GameAudio
 
     }
 
+    /* if the clip isn't registered already then request its audio data in the background, and open its
+     * voices as soon as it's loaded (by the loader thread), so it's ready by the time the clip is played.
+     * Clips are registered only once, with the settings they were first registered with. */
+    private SoundEffect registerEffect(String clipName, boolean keepPlayingAfterCommand,
+                                       boolean allowPlayRestart, int priority)
+    {
+        SoundEffect effect = soundEffects.get(clipName);
+        if (effect != null)
+            return effect;
+
+        SoundEffect newEffect = new SoundEffect(clipName, keepPlayingAfterCommand, allowPlayRestart,
+                priority, VOICES_PER_EFFECT);
+        effect = soundEffects.putIfAbsent(clipName, newEffect);
+        if (effect != null)
+            return effect;
+
+        openVoices(newEffect);
+        return newEffect;
+    }
+
+    // Request the audio data of an effect and open its voices once it's loaded (unless already requested)
+    private void openVoices(final SoundEffect effect)
+    {
+        if (!effect.startLoading())
+            return;
+
+        GameThread.resourceManager.loadAudioResourceAsync(effect.getName(), GameThread.getCurrentLevel().getName()).
+                thenAccept(new Consumer<AudioData>()
+                {
+                    @Override
+                    public void accept(AudioData audioData)
+                    {
+                        if (effect.open(audioData))
+                            play(effect);
+                    }
+                });
+    }
+
     //Play the main theme, it is played in a loop
     public boolean playMainTheme(boolean playOnlyOnce)
     {
@@ -105,11 +163,15 @@ public class GameAudio
 
     /*Now builds the GameClip object using the AudioData stored in the resource manager.
     Because only the audio data is stored in the ResourceManager a GameClip will need to be
-    build and returned here so that other methods in the GameAudio class can use it*/
+    build and returned here (only used for the main theme, sound effects keep their own clips)*/
     private GameClip getClip(String clipName, boolean finishAfterStop, boolean allowInterrupt)
     {
-        AudioData audioData = GameThread.resourceManager.loadAudioResource(clipName, GameThread.getCurrentLevel().getName());
+        return createClip(GameThread.resourceManager.loadAudioResource(clipName, GameThread.getCurrentLevel().getName()),
+                finishAfterStop, allowInterrupt);
+    }
 
+    private GameClip createClip(AudioData audioData, boolean finishAfterStop, boolean allowInterrupt)
+    {
         if (audioData != null)
         {
             Clip clip = null;
@@ -124,7 +186,6 @@ public class GameAudio
             try
             {
                 clip.open(audioData.getFormat(), audioData.getAudioBytes(), 0, audioData.getAudioBytes().length);
-                clip.start();
             }
             catch (LineUnavailableException e)
             {
@@ -135,19 +196,53 @@ public class GameAudio
         return null;
     }
 
-    //This method plays the requested clip (must already be registered in the system)
+    /* This method plays the requested clip (clips not registered yet are registered with the default
+     * settings). The clip is played right away if it's already loaded (registered clips are loaded in
+     * advance), otherwise it's played by the loader thread as soon as it's loaded, so the game never
+     * waits for a sound to be read from disk or for an audio line to be opened. */
     public void playClip(String clipName)
     {
         if (!GameThread.enableSoundEffects)
             return;
 
-        GameClip clip = getClip(clipName, false, true);
+        play(registerEffect(clipName, false, true, 0));
+        //System.out.println("Clip " + clipName + " has started." );
+    }
+
+    private void play(SoundEffect effect)
+    {
+        if (!effect.isOpen())
+        {
+            //the voices of the effect might have been released when the level changed
+            effect.playWhenReady();
+            openVoices(effect);
+            return;
+        }
+
+        if (countPlayingVoices() >= MAX_PLAYING_VOICES && !stealVoice(effect.getPriority()))
+            return;
+        effect.play();
+    }
+
+    private int countPlayingVoices()
+    {
+        int count = 0;
+        for (SoundEffect effect : soundEffects.values())
+            count += effect.countPlayingVoices();
+        return count;
+    }
 
-        if (clip != null)
+    // Stop a voice of the lowest priority effect playing, as long as its priority isn't higher than the given one
+    private boolean stealVoice(int priority)
+    {
+        SoundEffect lowest = null;
+        for (SoundEffect effect : soundEffects.values())
         {
-            clip.play(1);
-            //System.out.println("Clip " + clipName + " has started." );
+            if (effect.getPriority() <= priority && effect.countPlayingVoices() > 0 &&
+                    (lowest == null || effect.getPriority() < lowest.getPriority()))
+                lowest = effect;
         }
+        return lowest != null && lowest.stealVoice();
     }
 
     /* This version of play clip registers a sound clip in the engine if it isn't
@@ -163,30 +258,41 @@ public class GameAudio
         playClip(clipName);
     }
 
+    // Stops the voices of the clip that are playing (clips that weren't played are ignored)
     public void stopClip(String clipName)
     {
-        GameClip clip = getClip(clipName, false, false);
+        SoundEffect effect = soundEffects.get(clipName);
 
-        if (clip != null)
+        if (effect != null)
         {
-            clip.stop();
+            effect.stop();
             //System.out.println("Clip " + clipName + " has stopped." );
         }
     }
 
+    // Resumes the last voice of the clip played, if it was stopped
     public void resumeClip(String clipName)
     {
         if (!GameThread.enableSoundEffects)
             return;
 
-        GameClip clip = getClip(clipName, false, false);
+        SoundEffect effect = soundEffects.get(clipName);
 
-        if (clip != null)
+        if (effect != null)
         {
-            clip.resume();
+            effect.resume();
         }
     }
 
+    /* Close the voices of every sound effect (freeing their audio lines), done when the level changes.
+     * Effects keep the settings they were registered with and open their voices again the next time
+     * they are played. */
+    public void closeSoundEffects()
+    {
+        for (SoundEffect effect : soundEffects.values())
+            effect.releaseVoices();
+    }
+
     public void stopMainTheme(boolean reset)
     {
         if (mainTheme == null)
@@ -94,6 +94,13 @@ public class GameClip
         }
     }
 
+    // Release the audio line of the clip, it can't be played anymore
+    public void close()
+    {
+        clip.stop();
+        clip.close();
+    }
+
     public boolean isPlaying()
     {
         return isPlaying;
@@ -0,0 +1,46 @@
+package gameframework.sound;
+
+/**
+ * Audio manager that doesn't play anything, used when the game runs in headless mode (no display
+ * and possibly no audio devices) so that objects can keep requesting sounds as usual.
+ */
+public class NullGameAudio extends GameAudio
+{
+    @Override
+    public void initMainTheme(String theme) {}
+
+    @Override
+    public boolean setMainTheme(String theme) {return true;}
+
+    @Override
+    public void addSoundClip(String clipName, boolean keepPlayingAfterCommand,
+                             boolean allowPlayRestart) {}
+
+    @Override
+    public void addSoundClip(String clipName, boolean keepPlayingAfterCommand,
+                             boolean allowPlayRestart, int priority) {}
+
+    @Override
+    public boolean playMainTheme(boolean playOnlyOnce) {return true;}
+
+    @Override
+    public void playClip(String clipName) {}
+
+    @Override
+    public void playClip(String clipName, boolean keepPlayingAfterCommand) {}
+
+    @Override
+    public void stopClip(String clipName) {}
+
+    @Override
+    public void resumeClip(String clipName) {}
+
+    @Override
+    public void closeSoundEffects() {}
+
+    @Override
+    public void stopMainTheme(boolean reset) {}
+
+    @Override
+    public void resumeMainTheme() {}
+}
@@ -0,0 +1,234 @@
+package gameframework.sound;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * A sound effect registered in the game audio, with a fixed number of voices: clips opened once
+ * (when the audio data of the effect is loaded) and reused every time the effect is played, so
+ * playing an effect never opens a new audio line. Several voices let the same effect overlap
+ * (a few shurikens thrown in a row). When every voice is busy the effect either restarts the
+ * voice that has been playing the longest (if the effect allows restarting) or isn't played.
+ * The voices can be released (when the level changes), the effect opens them again the next time
+ * it's played.
+ */
+class SoundEffect
+{
+    private final String name;
+    private final int priority;
+    private final boolean finishAfterStop;
+    private final boolean allowInterrupt;
+    private final int voiceCount;
+
+    private GameClip[] voices;          //null until the audio data is loaded
+    private long[] startTimes;          //when each voice was last started, to find the oldest one
+    private int nextVoice;
+    private int lastVoice;              //last voice played, the one resumed by resume
+    private boolean playWhenReady;
+    private boolean loading;            //the audio data was requested and the voices aren't open yet
+
+    SoundEffect(String name, boolean finishAfterStop, boolean allowInterrupt, int priority, int voiceCount)
+    {
+        this.name = name;
+        this.finishAfterStop = finishAfterStop;
+        this.allowInterrupt = allowInterrupt;
+        this.priority = priority;
+        this.voiceCount = Math.max(1, voiceCount);
+        voices = null;
+        nextVoice = 0;
+        lastVoice = -1;
+        playWhenReady = false;
+        loading = false;
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    int getPriority()
+    {
+        return priority;
+    }
+
+    /* Open the voices of the effect (done by the thread that loaded the audio data, opening lines can
+     * take a while), returns true if the effect was played while it was loading and should be played now. */
+    synchronized boolean open(AudioData audioData)
+    {
+        loading = false;
+        if (voices != null || audioData == null)
+            return false;
+
+        GameClip[] openedVoices = new GameClip[voiceCount];
+        int opened = 0;
+        try
+        {
+            for (; opened < voiceCount; opened++)
+            {
+                Clip clip = AudioSystem.getClip();
+                clip.open(audioData.getFormat(), audioData.getAudioBytes(), 0, audioData.getAudioBytes().length);
+                openedVoices[opened] = new GameClip(clip, finishAfterStop, allowInterrupt);
+            }
+        }
+        catch (LineUnavailableException | IllegalArgumentException e)
+        {
+            System.out.println("Unable to open all voices of sound clip " + name + ": " + e.getMessage());
+        }
+
+        if (opened == 0)
+            return false;
+
+        voices = new GameClip[opened];
+        System.arraycopy(openedVoices, 0, voices, 0, opened);
+        startTimes = new long[opened];
+        return playWhenReady;
+    }
+
+    synchronized boolean isOpen()
+    {
+        return voices != null;
+    }
+
+    /* Returns true if the audio data of the effect has to be requested to open its voices (they were
+     * never opened or they were released), the caller must request it. */
+    synchronized boolean startLoading()
+    {
+        if (voices != null || loading)
+            return false;
+        loading = true;
+        return true;
+    }
+
+    // Remember to play the effect once its voices are open
+    synchronized void playWhenReady()
+    {
+        if (voices == null)
+            playWhenReady = true;
+    }
+
+    synchronized int countPlayingVoices()
+    {
+        int count = 0;
+        if (voices != null)
+        {
+            for (GameClip voice : voices)
+            {
+                if (isBusy(voice))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isBusy(GameClip voice)
+    {
+        return voice.isPlaying() || voice.getClip().isRunning();
+    }
+
+    /* Play the effect on a free voice, or on the oldest voice if all are busy and the effect can be
+     * restarted. Returns false if the effect couldn't be played. */
+    synchronized boolean play()
+    {
+        playWhenReady = false;
+        if (voices == null)
+            return false;
+
+        // free voices are searched round-robin, starting after the last voice used
+        int voice = -1;
+        for (int i = 0; i < voices.length && voice < 0; i++)
+        {
+            int candidate = (nextVoice + i) % voices.length;
+            if (!isBusy(voices[candidate]))
+                voice = candidate;
+        }
+
+        if (voice < 0)
+        {
+            if (!allowInterrupt)
+                return false;
+            voice = getOldestVoice();
+        }
+
+        startVoice(voice);
+        return true;
+    }
+
+    private int getOldestVoice()
+    {
+        int oldest = 0;
+        for (int i = 1; i < voices.length; i++)
+        {
+            if (startTimes[i] < startTimes[oldest])
+                oldest = i;
+        }
+        return oldest;
+    }
+
+    private void startVoice(int voice)
+    {
+        //rewind the clip, in case it's still playing, and play it once
+        voices[voice].reset();
+        voices[voice].resume();
+
+        startTimes[voice] = System.nanoTime();
+        lastVoice = voice;
+        nextVoice = (voice + 1) % voices.length;
+    }
+
+    /* Stop the oldest voice playing (used when too many voices play at once), returns false if no voice
+     * of the effect is playing. */
+    synchronized boolean stealVoice()
+    {
+        if (voices == null)
+            return false;
+
+        int oldest = -1;
+        for (int i = 0; i < voices.length; i++)
+        {
+            if (isBusy(voices[i]) && (oldest < 0 || startTimes[i] < startTimes[oldest]))
+                oldest = i;
+        }
+
+        if (oldest < 0)
+            return false;
+        voices[oldest].reset();
+        return true;
+    }
+
+    // Stop every voice playing (voices that finish playing after a stop keep playing)
+    synchronized void stop()
+    {
+        playWhenReady = false;
+        if (voices == null)
+            return;
+
+        for (GameClip voice : voices)
+        {
+            if (isBusy(voice))
+                voice.stop();
+        }
+    }
+
+    // Resume the last voice played, if it isn't playing
+    synchronized void resume()
+    {
+        if (voices != null && lastVoice >= 0 && !isBusy(voices[lastVoice]))
+            voices[lastVoice].resume();
+    }
+
+    // Close the audio lines of the voices, they are opened again the next time the effect is played
+    synchronized void releaseVoices()
+    {
+        playWhenReady = false;
+        if (voices == null)
+            return;
+
+        for (GameClip voice : voices)
+            voice.close();
+        voices = null;
+        startTimes = null;
+        lastVoice = -1;
+        nextVoice = 0;
+    }
+}
@@ -1,5 +1,6 @@
 package gameframework.weapons;
 
+import gameframework.GameClock;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.gamecharacters.GameCharacter;
@@ -53,7 +54,7 @@ public abstract class Projectile extends InanimateObject {
 
         setGravity(0);
         requiresUpdating = true;
-        this.ttlStartTime = System.currentTimeMillis();
+        this.ttlStartTime = GameClock.currentTimeMillis();
         this.ttlDelay = TTL;
 
         //this.setThrownByPlayer(thrownByPlayer);
@@ -87,7 +88,7 @@ public abstract class Projectile extends InanimateObject {
     @Override
     public void update(GameObjects objects) {
         super.update(objects);
-        long currentTime = System.currentTimeMillis();
+        long currentTime = GameClock.currentTimeMillis();
         setSubX(getSubX() + getVx());
         setSubY(getSubY() + getVy());
 
@@ -196,6 +197,12 @@ public abstract class Projectile extends InanimateObject {
         return false;
     }
 
+    // projectiles look for their targets among all the objects in the game
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     @Override
     public boolean handleObjectCollision(GameObject object) {
         return false;
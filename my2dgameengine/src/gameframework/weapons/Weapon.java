@@ -103,6 +103,12 @@ public abstract class Weapon extends InanimateObject
 
 
 
+    // weapons hit whatever their owner attacks
+    @Override
+    public boolean canUpdateInParallel(){
+        return false;
+    }
+
     @Override
     public boolean shouldIgnoreCollisionWith(GameObject other){
         boolean shouldIgnore = false;
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import gamecharacters.NinjaPlayer;
+import gameframework.GameData;
+import gameframework.GameThread;
+import gameframework.display.GameDisplay;
+import gameframework.gamecharacters.Player;
+import gameframework.gameobjects.GameObject;
+import gameframework.sound.NullGameAudio;
+import gameobjects.NinjaGameObjectFactory;
+
+/*
+ * Sets up the engine the same way the ninja game does when it runs in headless mode (no window and
+ * no audio), but on the synthetic level instead of the level files. JMH runs every benchmark in its
+ * own forked JVM, so this is done once per fork by the setup method of each benchmark state.
+ */
+public final class BenchmarkEnvironment
+{
+    public static final int DISPLAY_WIDTH = 1920;
+    public static final int DISPLAY_HEIGHT = 1080;
+
+    private static boolean initialized = false;
+    private static Player player;
+
+    private BenchmarkEnvironment()
+    {
+    }
+
+    public static synchronized void initialize()
+    {
+        if (initialized)
+            return;
+
+        GameThread.HEADLESS_MODE = true;
+        GameThread.disableCollisionNames.add("gold-coin.png");
+        GameDisplay.setDisplayResolution(DISPLAY_WIDTH, DISPLAY_HEIGHT);
+
+        //same engine statics GameThread's constructor sets, without creating the display
+        GameThread.gameObjectFactory = new NinjaGameObjectFactory();
+        GameThread.resourceManager = new BenchmarkResourceManager();
+        GameThread.gameAudio = new NullGameAudio();
+        GameThread.addLevel(new SyntheticLevel());
+
+        player = new NinjaPlayer("ninja1", 200, 200, 130, 130);
+        Player.addPlayer(player, true);
+        initialized = true;
+    }
+
+    /* Creates the game data with the synthetic level loaded and the given area grid settings (the
+     * grid is created along with the game objects list, so the settings must be set before). The
+     * game data is also made the engine's current data, since objects use it during their updates. */
+    public static GameData createGameData(int areaGridCols, int areaGridRows)
+    {
+        initialize();
+
+        GameThread.AREA_GRID_COLS = areaGridCols;
+        GameThread.AREA_GRID_ROWS = areaGridRows;
+        GameDisplay.loadLevelBackgroundImage();
+
+        GameData data = new GameData();
+        GameThread.data = data;
+        GameDisplay.updateCamera();
+        return data;
+    }
+
+    public static Player getPlayer()
+    {
+        initialize();
+        return player;
+    }
+
+    // Returns the object in the game data with the given name that is closest to the given position
+    public static GameObject findObject(GameData data, String name, int x, int y)
+    {
+        GameObject closest = null;
+        long closestDistance = Long.MAX_VALUE;
+
+        for (GameObject go : data.getObjects())
+        {
+            if (!go.getName().equals(name))
+                continue;
+
+            long dx = go.getX() - x, dy = go.getY() - y;
+            if (dx * dx + dy * dy < closestDistance)
+            {
+                closest = go;
+                closestDistance = dx * dx + dy * dy;
+            }
+        }
+        return closest;
+    }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+import gameframework.resourcemanagement.ResourceManager;
+
+import java.awt.image.BufferedImage;
+
+/*
+ * Resource manager used by the benchmarks, it loads every resource from the game as usual, except
+ * for the level background when the image isn't available. The engine only uses the background
+ * size (for the area grid and the camera limits) when there is no display, so a blank image of the
+ * same size is used instead. Without it the area grid wouldn't be enabled and the benchmarks wouldn't
+ * measure the grid settings.
+ */
+public class BenchmarkResourceManager extends ResourceManager
+{
+    private BufferedImage placeholderBackground;
+
+    @Override
+    public BufferedImage loadImageResource(String name, String levelName)
+    {
+        BufferedImage image = super.loadImageResource(name, levelName);
+
+        if (image == null && name.equals(SyntheticLevel.BACKGROUND))
+        {
+            //one bit per pixel, only the size of the image matters
+            if (placeholderBackground == null)
+                placeholderBackground = new BufferedImage(SyntheticLevel.WIDTH, SyntheticLevel.HEIGHT,
+                        BufferedImage.TYPE_BYTE_BINARY);
+            image = placeholderBackground;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,31 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the engine benchmarks with the GC profiler enabled, so every result also reports the
+ * allocation rate (bytes allocated per operation) along with the time per operation.
+ *
+ * Usage: BenchmarkRunner [regex of the benchmarks to run], for example:
+ *   BenchmarkRunner                         run all benchmarks
+ *   BenchmarkRunner GameDataTickBenchmark   run only the full update cycle benchmark
+ */
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws RunnerException
+    {
+        String include = args.length > 0 ? args[0] : "benchmarks\\..*Benchmark";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Djava.awt.headless=true")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import gameframework.GameData;
+import gameframework.collision.CollisionHandler;
+import gameframework.gamecharacters.Player;
+import gameframework.gameobjects.GameObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Benchmarks of the collision test between two objects (CollisionHandler.checkCollision), with the
+ * bounds rectangles only, with the sprite borders and with the collision masks. Pairs of objects
+ * that collide and that don't are measured separately since they take different paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CollisionBenchmark
+{
+    // "rect" uses the collision bounds only, "borders" the sprite borders and "masks" the collision masks
+    @Param({"rect", "borders", "masks"})
+    public String collisionMode;
+
+    private GameData data;
+    private CollisionHandler playerCollisionHandler;
+    private CollisionHandler skeletonCollisionHandler;
+
+    private GameObject overlappingTile;      //tile the player is sinking into
+    private GameObject nearbyTile;           //tile next to the player whose bounds don't intersect the player
+    private GameObject overlappingSkeleton;  //enemy overlapping the player
+    private GameObject skeletonFloorTile;    //tile the enemy is sinking into
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        data = BenchmarkEnvironment.createGameData(6, 1);
+        Player player = BenchmarkEnvironment.getPlayer();
+        int floorY = SyntheticLevel.getFloorY(0);
+
+        //place the player partially inside the floor, so the floor tile below collides with it
+        overlappingTile = BenchmarkEnvironment.findObject(data, "top_stone.png", 500, floorY);
+        player.setPosition(overlappingTile.getX(), floorY - player.getScaleHeight() + 10);
+        nearbyTile = BenchmarkEnvironment.findObject(data, "top_stone.png", 500 + 4 * 91, floorY);
+
+        //an enemy standing partially inside the floor and overlapping the player
+        GameObject skeleton = BenchmarkEnvironment.findObject(data, "Skeleton_Enemy", 0, floorY);
+        skeleton.setPosition(player.getX() + 20, floorY - skeleton.getScaleHeight() + 10);
+        overlappingSkeleton = skeleton;
+        skeletonFloorTile = BenchmarkEnvironment.findObject(data, "top_stone.png", skeleton.getX(), floorY);
+        data.getObjects().reindexMovedObjects();
+
+        boolean useBorders = !collisionMode.equals("rect");
+        CollisionHandler.useCollisionMasks = collisionMode.equals("masks");
+        for (GameObject go : data.getObjects())
+            go.enableSpriteBordersCollision(useBorders);
+
+        playerCollisionHandler = new CollisionHandler(player);
+        playerCollisionHandler.enableSpriteBordersCollision(useBorders);
+        skeletonCollisionHandler = new CollisionHandler(skeleton);
+        skeletonCollisionHandler.enableSpriteBordersCollision(useBorders);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        CollisionHandler.useCollisionMasks = false;
+        data.getObjects().clear();
+    }
+
+    @Benchmark
+    public boolean playerWithOverlappingTile()
+    {
+        return playerCollisionHandler.checkCollision(overlappingTile);
+    }
+
+    @Benchmark
+    public boolean playerWithNearbyTile()
+    {
+        return playerCollisionHandler.checkCollision(nearbyTile);
+    }
+
+    @Benchmark
+    public boolean playerWithEnemy()
+    {
+        return playerCollisionHandler.checkCollision(overlappingSkeleton);
+    }
+
+    @Benchmark
+    public boolean enemyWithOverlappingTile()
+    {
+        return skeletonCollisionHandler.checkCollision(skeletonFloorTile);
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import gameframework.GameData;
+import gameframework.GameThread;
+import gameframework.display.GameDisplay;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Benchmark of a full update cycle of the game (GameData.update, what the game loop runs 60 times
+ * per second) on the synthetic level, for different values of the area grid and off-screen objects
+ * update interval optimizations. The game keeps running between calls (enemies move, the camera
+ * follows the player, etc), the same way it does in headless mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameDataTickBenchmark
+{
+    @Param({"0", "6", "12"})
+    public int areaGridCols;
+
+    @Param({"1", "3"})
+    public int areaGridRows;
+
+    @Param({"1", "3"})
+    public int offscreenUpdateInterval;
+
+    private GameData data;
+    private int tickNumber;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        GameThread.OFFSCREEN_OBJECTS_UPDATE_INTERVAL = offscreenUpdateInterval;
+        data = BenchmarkEnvironment.createGameData(areaGridCols, areaGridRows);
+        tickNumber = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        data.getObjects().clear();
+    }
+
+    @Benchmark
+    public int update()
+    {
+        data.update(tickNumber++);
+        GameDisplay.updateCamera();
+        return data.getObjects().size();
+    }
+}
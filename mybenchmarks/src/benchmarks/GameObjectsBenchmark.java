@@ -0,0 +1,114 @@
+package benchmarks;
+
+import gameframework.GameData;
+import gameframework.gamecharacters.Player;
+import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjects;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Benchmarks of the game objects list: adding and removing all objects of a level (which keeps them
+ * sorted by z value, in the update list and in the area grid), and the neighbor queries used by
+ * collisions and platforming, for different area grid settings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameObjectsBenchmark
+{
+    @Param({"0", "6", "12"})
+    public int areaGridCols;
+
+    @Param({"1", "3"})
+    public int areaGridRows;
+
+    private GameData data;
+    private Player player;
+    private GameObject skeleton;
+
+    // objects of a second copy of the level, added to and removed from their own list
+    private ArrayList<GameObject> levelObjects;
+    private GameObjects list;
+
+    private int neighborCount;
+    private final GameObjects.NeighborVisitor countingVisitor = new GameObjects.NeighborVisitor()
+    {
+        @Override
+        public boolean visit(GameObject neighbor)
+        {
+            neighborCount++;
+            return true;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        data = BenchmarkEnvironment.createGameData(areaGridCols, areaGridRows);
+        player = BenchmarkEnvironment.getPlayer();
+        skeleton = BenchmarkEnvironment.findObject(data, "Skeleton_Enemy", SyntheticLevel.WIDTH / 2, 0);
+
+        levelObjects = SyntheticLevel.createObjects();
+        list = new GameObjects(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        list.clear();
+        data.getObjects().clear();
+    }
+
+    // Add every object of the level (in level file order) and then remove them all in the same order
+    @Benchmark
+    public int addRemoveAll()
+    {
+        for (int i = 0; i < levelObjects.size(); i++)
+            list.add(levelObjects.get(i));
+        int size = list.size();
+
+        for (int i = 0; i < levelObjects.size(); i++)
+            list.remove(levelObjects.get(i));
+        return size;
+    }
+
+    // Same as above but removing the objects in reverse order
+    @Benchmark
+    public int addRemoveAllReversed()
+    {
+        for (int i = 0; i < levelObjects.size(); i++)
+            list.add(levelObjects.get(i));
+        int size = list.size();
+
+        for (int i = levelObjects.size() - 1; i >= 0; i--)
+            list.remove(levelObjects.get(i));
+        return size;
+    }
+
+    @Benchmark
+    public GameObjects getNeighborObjectsOfPlayer()
+    {
+        return data.getObjects().getNeighborObjects(player);
+    }
+
+    @Benchmark
+    public GameObjects getNeighborObjectsOfEnemy()
+    {
+        return data.getObjects().getNeighborObjects(skeleton);
+    }
+
+    // Allocation free alternative to getNeighborObjects
+    @Benchmark
+    public int forEachNeighborOfPlayer()
+    {
+        neighborCount = 0;
+        data.getObjects().forEachNeighbor(player, countingVisitor);
+        return neighborCount;
+    }
+}
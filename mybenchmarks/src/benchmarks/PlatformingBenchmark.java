@@ -0,0 +1,81 @@
+package benchmarks;
+
+import gameframework.GameData;
+import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjects;
+import gameframework.platforming.PlatformingHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Benchmarks of the platforming update of an object standing on the floor: the common case where
+ * the object is still standing on its platform, and the case where it walked past the edge of its
+ * tile and has to relatch to the next tile of the floor (which queries its neighbors).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PlatformingBenchmark
+{
+    @Param({"0", "6"})
+    public int areaGridCols;
+
+    private GameData data;
+    private GameObjects objects;
+
+    private PlatformingHandler standingHandler;
+
+    private GameObject walkingObject;
+    private PlatformingHandler relatchingHandler;
+    private GameObject previousTile;     //tile the walking object was standing on
+    private GameObject nextTile;          //tile the walking object is standing on now
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        data = BenchmarkEnvironment.createGameData(areaGridCols, 1);
+        objects = data.getObjects();
+        int floorY = SyntheticLevel.getFloorY(0);
+
+        //the player stands in the middle of a floor tile
+        GameObject player = BenchmarkEnvironment.getPlayer();
+        GameObject tile = BenchmarkEnvironment.findObject(data, "top_stone.png", player.getX(), floorY);
+        standingHandler = new PlatformingHandler(player, null);
+        standingHandler.latch(tile);
+
+        //an enemy standing on the tile right after the one it was latched to
+        walkingObject = BenchmarkEnvironment.findObject(data, "Skeleton_Enemy", 0, floorY);
+        previousTile = BenchmarkEnvironment.findObject(data, "top_stone.png", 0, floorY);
+        nextTile = BenchmarkEnvironment.findObject(data, "top_stone.png", previousTile.getX() + 91 * 3, floorY);
+        relatchingHandler = new PlatformingHandler(walkingObject, null);
+        relatchingHandler.latch(nextTile);
+        objects.reindexMovedObjects();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        objects.clear();
+    }
+
+    @Benchmark
+    public GameObject standingOnPlatform()
+    {
+        standingHandler.update(objects);
+        return standingHandler.getPlatformObject();
+    }
+
+    /* The handler is latched to a tile the object is no longer on, so it detaches and relatches to
+     * the tile below the object (which leaves the object in the same position for the next call). */
+    @Benchmark
+    public GameObject relatchToAdjacentTile()
+    {
+        relatchingHandler.setPlatformObject(previousTile);
+        relatchingHandler.update(objects);
+        return relatchingHandler.getPlatformObject();
+    }
+}
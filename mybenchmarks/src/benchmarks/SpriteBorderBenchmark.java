@@ -0,0 +1,110 @@
+package benchmarks;
+
+import gameframework.animations.AnimationTemplate;
+import gameframework.animations.CollisionMask;
+import gameframework.animations.SpriteBorder;
+import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjectType;
+import gameframework.supportfunctions.GraphicsLibrary;
+import gameobjects.NinjaGameObjectType;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Benchmarks of the sprite borders on real sprites from the ninja game: computing the borders of a
+ * frame (done for every frame of every animation when the game loads), and testing the borders of
+ * two sprites for intersection, both by repositioning (cloning) the borders and by passing the
+ * positions as offsets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SpriteBorderBenchmark
+{
+    @Param({"ninja1", "Skeleton_Enemy", "Fire_Enemy", "top_stone", "gold-coin"})
+    public String sprite;
+
+    private BufferedImage frame;          //first frame of the sprite's animation
+    private BufferedImage scaledFrame;
+    private int scaleWidth;
+    private int scaleHeight;
+
+    private SpriteBorder borders;
+    private int otherX;                   //position of a second copy of the sprite overlapping the first one
+    private int otherY;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        BenchmarkEnvironment.initialize();
+
+        GameObject go;
+        if (sprite.equals("ninja1"))
+            go = BenchmarkEnvironment.getPlayer();
+        else if (sprite.equals("Skeleton_Enemy"))
+            go = SyntheticLevel.createObject(0, 0, NinjaGameObjectType.SKELETON, sprite, 80, 91);
+        else if (sprite.equals("Fire_Enemy"))
+            go = SyntheticLevel.createObject(0, 0, NinjaGameObjectType.FIRE_SPIRIT, sprite, 80, 92);
+        else if (sprite.equals("gold-coin"))
+            go = SyntheticLevel.createObject(0, 0, NinjaGameObjectType.COIN, sprite, 40, 47);
+        else
+            go = SyntheticLevel.createObject(0, 0, GameObjectType.INANIMATE, sprite, 91, 82);
+
+        AnimationTemplate template = go.getActiveAnimation().getTemplate();
+        frame = template.getFrame(0);
+        scaleWidth = template.getScaleWidth();
+        scaleHeight = template.getScaleHeight();
+        scaledFrame = GraphicsLibrary.generateScaledImage(frame, scaleWidth, scaleHeight);
+        borders = template.getFrameBorders(0);
+
+        otherX = scaleWidth / 4;
+        otherY = scaleHeight / 4;
+    }
+
+    // Scale the frame and compute its borders (what the engine does for every frame it loads)
+    @Benchmark
+    public SpriteBorder getSpriteBorders()
+    {
+        return SpriteBorder.getSpriteBorders(frame, scaleWidth, scaleHeight);
+    }
+
+    // Compute the borders of an already scaled frame
+    @Benchmark
+    public SpriteBorder getSpriteBordersScaled()
+    {
+        return SpriteBorder.getSpriteBorders(scaledFrame);
+    }
+
+    @Benchmark
+    public CollisionMask getCollisionMaskScaled()
+    {
+        return CollisionMask.getCollisionMask(scaledFrame);
+    }
+
+    @Benchmark
+    public SpriteBorder reposition()
+    {
+        return borders.reposition(100, 200);
+    }
+
+    // Intersection of two copies of the sprite, repositioning both borders first
+    @Benchmark
+    public boolean bordersIntersectRepositioned()
+    {
+        SpriteBorder adjustedBorders = borders.reposition(100, 200);
+        SpriteBorder otherAdjustedBorders = borders.reposition(100 + otherX, 200 + otherY);
+        return adjustedBorders.bordersIntersect(otherAdjustedBorders);
+    }
+
+    // Same intersection, with the positions of the sprites given as offsets
+    @Benchmark
+    public boolean bordersIntersectOffsets()
+    {
+        return borders.bordersIntersect(100, 200, borders, 100 + otherX, 200 + otherY);
+    }
+}
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import gameframework.GameData;
+import gameframework.GameLevel;
+import gameframework.GameThread;
+import gameframework.gamecharacters.Player;
+import gameframework.gameobjects.GameObject;
+import gameframework.gameobjects.GameObjectType;
+import gameframework.gameobjects.GameObjects;
+import gameobjects.NinjaGameObjectType;
+
+import java.awt.*;
+import java.util.ArrayList;
+
+/*
+ * A level generated in code instead of being read from a level file, so the benchmarks always run
+ * on the same amount and kind of objects. The level repeats the same segment (a floor of stone
+ * tiles, a ledge, a couple of enemies and some coins) on several floors across an area the size of
+ * the first level of the ninja game. It uses the first level's name so the sprites are loaded from
+ * the same resource folder.
+ */
+public class SyntheticLevel extends GameLevel
+{
+    public static final String BACKGROUND = "FirstLevel_BG.png";
+    public static final int WIDTH = 13312;          //size of the first level (the area covered by its objects)
+    public static final int HEIGHT = 2688;
+
+    private static final int SEGMENT_WIDTH = 1024;
+    private static final int SEGMENTS = WIDTH / SEGMENT_WIDTH;
+    private static final int FLOOR_HEIGHT = 700;
+    private static final int FIRST_FLOOR_Y = 795;
+    private static final int FLOORS = 3;
+
+    // size of the tiles used to build the floors (same as in the first level file)
+    private static final int TILE_WIDTH = 91;
+    private static final int TILE_HEIGHT = 82;
+
+    public SyntheticLevel()
+    {
+        super("level1", 1, BACKGROUND, "theme-1.wav", new Point(500, 655));
+        setPlayThemeOnLoad(false);
+    }
+
+    // Line describing an object, in the same format used by level files (see GameObjectFactory)
+    private static String objectLine(int x, int y, int type, String subtype, int width, int height)
+    {
+        return "< " + x + " " + y + " " + type + " " + subtype + " " + width + " " + height + " >";
+    }
+
+    // Lines describing all the objects in the level, except the player
+    public static ArrayList<String> getObjectLines()
+    {
+        ArrayList<String> lines = new ArrayList<String>();
+
+        for (int floor = 0; floor < FLOORS; floor++)
+        {
+            int floorY = getFloorY(floor);
+
+            for (int segment = 0; segment < SEGMENTS; segment++)
+            {
+                int segmentX = segment * SEGMENT_WIDTH;
+
+                //the floor is made of two rows of stone tiles that cover the whole segment
+                for (int x = segmentX; x + TILE_WIDTH <= segmentX + SEGMENT_WIDTH; x += TILE_WIDTH)
+                {
+                    lines.add(objectLine(x, floorY, GameObjectType.INANIMATE, "top_stone", TILE_WIDTH, TILE_HEIGHT));
+                    lines.add(objectLine(x, floorY + TILE_HEIGHT, GameObjectType.INANIMATE, "bottom_stone", TILE_WIDTH, TILE_HEIGHT));
+                }
+                lines.add(objectLine(segmentX + 450, floorY - 300, GameObjectType.INANIMATE, "ledge", 146, 106));
+
+                for (int coin = 0; coin < 3; coin++)
+                    lines.add(objectLine(segmentX + 420 + coin * 60, floorY - 360, NinjaGameObjectType.COIN, "gold-coin", 40, 47));
+
+                lines.add(objectLine(segmentX + 150, floorY - 100, NinjaGameObjectType.SKELETON, "Skeleton_Enemy", 80, 91));
+                lines.add(objectLine(segmentX + 750, floorY - 200, NinjaGameObjectType.FIRE_SPIRIT, "Fire_Enemy", 80, 92));
+            }
+        }
+        return lines;
+    }
+
+    // Creates a new copy of every object in the level (not added to any list)
+    public static ArrayList<GameObject> createObjects()
+    {
+        ArrayList<GameObject> objects = new ArrayList<GameObject>();
+
+        for (String line : getObjectLines())
+        {
+            GameObject gameObject = GameThread.gameObjectFactory.createGameObject(line);
+            if (gameObject != null)
+                objects.add(gameObject);
+        }
+        return objects;
+    }
+
+    // Creates a single object of the level (like it would appear in a level file)
+    public static GameObject createObject(int x, int y, int type, String subtype, int width, int height)
+    {
+        return GameThread.gameObjectFactory.createGameObject(objectLine(x, y, type, subtype, width, height));
+    }
+
+    // Returns the y coordinate of the top of the floor tiles of the given floor
+    public static int getFloorY(int floor)
+    {
+        return FIRST_FLOOR_Y + floor * FLOOR_HEIGHT;
+    }
+
+    /* Same as loading a level file, but without freeing the resources of previous levels (all the
+     * benchmarks share the same sprites) and without any sound. */
+    @Override
+    public boolean load(GameData data)
+    {
+        GameObjects gameObjects = data.getObjects();
+        gameObjects.clear();
+
+        for (GameObject gameObject : createObjects())
+            gameObjects.add(gameObject);
+
+        Player player = Player.getActivePlayer();
+        if (player != null)
+        {
+            player.setPosition(getPlayerStartPos().x, getPlayerStartPos().y);
+            gameObjects.add(player);
+        }
+        return true;
+    }
+}
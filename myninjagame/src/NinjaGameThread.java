@@ -3,10 +3,14 @@ import gameframework.display.StartMenu;
 import hud.NinjaHUD;
 import gamecharacters.ElfPlayer;
 import gamecharacters.NinjaPlayer;
+import gameframework.GameClock;
 import gameframework.GameLevel;
+import gameframework.GameRandom;
 import gameframework.GameThread;
 import gameframework.display.GameDisplay;
 import gameframework.gameobjects.GameObjectFactory;
+import gameframework.replay.InputRecording;
+import gameframework.replay.ReplayDriver;
 import gameobjects.NinjaGameObjectFactory;
 import inputhandlers.NinjaKeyboardHandler;
 import gameframework.weapons.Weapon;
@@ -17,6 +21,9 @@ import gameweapons.ShurikenFactory;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 public class NinjaGameThread extends GameThread
 {
@@ -76,6 +83,38 @@ public class NinjaGameThread extends GameThread
     }
 
 
+    /* Record all input from now on, the recording is saved when the game is closed (the game
+     * window exits the program when closed). */
+    private static void startRecording(final String fileName)
+    {
+        final InputRecording recording = new InputRecording(GameRandom.getSeed());
+        GameThread.inputQueue.startRecording(recording);
+
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                GameThread.inputQueue.stopRecording();
+                // the state checksum lets the replay verify it simulated the same game
+                synchronized (GameThread.data)
+                {
+                    recording.setLength(GameClock.getTicks());
+                    recording.setStateChecksum(ReplayDriver.computeStateChecksum(GameThread.data));
+                }
+                try
+                {
+                    recording.save(Paths.get(fileName));
+                    System.out.println("Input recording saved to " + fileName);
+                }
+                catch (IOException e)
+                {
+                    System.out.println("Unable to save input recording: " + e.getMessage());
+                }
+            }
+        });
+    }
+
     public static void main(String[] args)
     {
         //Put names of objects with no collision here:
@@ -121,7 +160,51 @@ public class NinjaGameThread extends GameThread
         GameThread.AREA_GRID_ROWS = 1;
         /********/
 
-        showStartMenu();
+        /* Run without window or audio when requested, for example:
+         *   --headless            run at normal speed
+         *   --headless 10         run 10 times faster than real time
+         *   --headless 0 36000    run as fast as possible and stop after 36000 updates
+         * The input of a game can also be recorded and replayed later (without window):
+         *   --record game.rec     play normally, the input is saved when the game is closed
+         *   --replay game.rec     replay the recorded game as fast as possible
+         * Adding --metrics at the end of any of these measures the engine phases (see GameMetrics). */
+        if (args.length > 0 && args[args.length - 1].equals("--metrics"))
+        {
+            GameThread.ENABLE_METRICS = true;
+            args = Arrays.copyOf(args, args.length - 1);
+        }
+
+        InputRecording replayRecording = null;
+        String recordingFile = null;
+        if (args.length > 0 && args[0].equals("--headless"))
+        {
+            GameThread.HEADLESS_MODE = true;
+            if (args.length > 1)
+                GameThread.SIMULATION_SPEED_MULTIPLIER = Integer.parseInt(args[1]);
+            if (args.length > 2)
+                GameThread.MAX_UPDATES = Long.parseLong(args[2]);
+            gameStarted = true;
+        }
+        else if (args.length > 1 && args[0].equals("--replay"))
+        {
+            try
+            {
+                replayRecording = InputRecording.load(Paths.get(args[1]));
+            }
+            catch (IOException e)
+            {
+                System.out.println("Unable to load input recording: " + e.getMessage());
+                return;
+            }
+            ReplayDriver.prepare(replayRecording);
+            gameStarted = true;
+        }
+        else
+        {
+            if (args.length > 1 && args[0].equals("--record"))
+                recordingFile = args[1];
+            showStartMenu();
+        }
         // freeze this thread until the user presses play in the start menu
         while (!gameStarted);
 
@@ -130,6 +213,9 @@ public class NinjaGameThread extends GameThread
         ninjaGameThread.setGameTitle("My Ninja Game.");
         GameThread.changeKeyboardHandler(new NinjaKeyboardHandler());
 
+        //the resources of the players, their weapons and the HUD are used in every level
+        resourceManager.setThreadScope(resourceManager.getGlobalScope());
+
         //guest player in the game :-) (for the time being)
         ElfPlayer elfPlayer = new ElfPlayer("elf1", 300, 300,
                 150, 150);
@@ -155,6 +241,15 @@ public class NinjaGameThread extends GameThread
         //creates the hud of the game
         NinjaHUD HUD = new NinjaHUD(50,70,500,500,display,ninjaPlayer);
         GameDisplay.setHUD(HUD);
+        resourceManager.setThreadScope(null);
+
+        if (replayRecording != null)
+        {
+            new ReplayDriver(replayRecording).run();
+            System.exit(0);
+        }
+        if (recordingFile != null)
+            startRecording(recordingFile);
 
         try
         {
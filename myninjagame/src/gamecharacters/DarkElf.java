@@ -1,5 +1,6 @@
 package gamecharacters;
 
+import gameframework.GameRandom;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
 import gameframework.gamecharacters.GameCharacter;
@@ -38,11 +39,18 @@ public class DarkElf extends GameCharacter
         idle = walkLeft;
     }
 
+    // draws from the shared game random numbers
+    @Override
+    public boolean canUpdateInParallel()
+    {
+        return false;
+    }
+
     public void update(GameObjects objects)
     {
         super.update((GameObjects) objects);
 
-        int randomNumber = (int)(Math.random() * 50);
+        int randomNumber = (int)(GameRandom.nextDouble() * 50);
 
         if (randomNumber < 12)
             moveRight(false);
@@ -138,7 +138,7 @@ public class ElfPlayer extends Player
             // Example: check if the player hit a coin
             case NinjaGameObjectType.COIN:
                 addCoins(1);               // Add coin to player inventory
-                GameThread.data.getObjects().remove(go);  // Remove coin from the game
+                GameThread.data.removeObjectWhenSafe(go);  // Remove coin from the game once the update is over
                 System.out.println("YOU Picked up a coin! Total coins: " + getCoins());
                 return true;
 
@@ -62,6 +62,12 @@ public class FireSpirit extends GameCharacter {
         dieDown.setSpeed(10);
     }
 
+    // chases the player and damages it when exploding
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     @Override
     public void update(GameObjects objects) {
         if (isDead) {
@@ -2,6 +2,7 @@ package gamecharacters;
 
 
 
+import gameframework.GameRandom;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -154,6 +155,12 @@ The code for managing the delay between attacks (attackCooldown) is present but
 
 
 
+    // attacks the player and draws from the shared game random numbers
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     public void update(GameObjects objects) {
 
         if (isDead)
@@ -244,7 +251,7 @@ The code for managing the delay between attacks (attackCooldown) is present but
 
         updateAttackPower();  // <<< IMPORTANT — keeps attack damage correct
 
-        double rng = Math.random();
+        double rng = GameRandom.nextDouble();
 
         switch (attackPhase) {
             case 1:
@@ -265,7 +272,7 @@ The code for managing the delay between attacks (attackCooldown) is present but
     private void basicAttack() {
 
         // Randomly choose attack direction (50/50)
-        boolean attackLeftSide = Math.random() < 0.5;
+        boolean attackLeftSide = GameRandom.nextDouble() < 0.5;
 
         if (attackLeftSide) {
             curAnimation = attackLeft;
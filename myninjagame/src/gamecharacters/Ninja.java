@@ -1,5 +1,7 @@
 package gamecharacters;
 
+import gameframework.GameClock;
+import gameframework.GameRandom;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -34,7 +36,7 @@ public class Ninja extends GameCharacter {
     private Point rightPatrolBounds;
     private boolean movingRight = true;
     private boolean atPatrolBound = false;
-    private Random rand = new Random();
+    private Random rand = GameRandom.createRandom();
     private AwarenessIndicator awarenessIndicator;
 
     public Ninja(String name,
@@ -91,10 +93,16 @@ public class Ninja extends GameCharacter {
         idle.setSpeed(0);
     }
 
+    // reads the player and changes its awareness indicator, which may be in another region
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     public void update(GameObjects objects) {
         super.update(objects);
         // get the current system time
-        currentTime = System.currentTimeMillis();
+        currentTime = GameClock.currentTimeMillis();
 
         // Code to grab the elf player instance from the object list
         for (GameObject obj : objects) {
@@ -1,5 +1,6 @@
 package gamecharacters;
 
+import gameframework.GameClock;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -198,7 +199,7 @@ public class NinjaPlayer extends Player
     {
         super.update(gameObjects);
         // get the current system time
-        currentTime = System.currentTimeMillis();
+        currentTime = GameClock.currentTimeMillis();
 
         // Code to grab the ninja player instance from the object list
         if (ninjaPlayer == null) {
@@ -285,10 +286,10 @@ public class NinjaPlayer extends Player
     @Override
     public void takeDamage(int damage)
     {
-        if (System.currentTimeMillis()-last_damage_taken < DAMAGE_DELAY)
+        if (GameClock.currentTimeMillis()-last_damage_taken < DAMAGE_DELAY)
             return;
         super.takeDamage(damage);
-        last_damage_taken = System.currentTimeMillis();
+        last_damage_taken = GameClock.currentTimeMillis();
     }
     /********/
 }
@@ -1,6 +1,7 @@
 package gamecharacters;
 
 
+import gameframework.GameClock;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -32,7 +33,7 @@ public class PeaShooterBoss extends GameCharacter {
     public PeaShooterBoss(String name, int x, int y, int z, int scaleWidth, int scaleHeight) {
         super(name, NinjaGameObjectType.PEASHOOTER_MINI_BOSS, x, y, scaleWidth, scaleHeight);
         System.out.println("PeaShooterBoss created at position: " + x + ", " + y);
-        lastShootTime = System.currentTimeMillis();
+        lastShootTime = GameClock.currentTimeMillis();
     }
 
     @Override
@@ -78,6 +79,12 @@ public class PeaShooterBoss extends GameCharacter {
         curAnimation = idle;
     }
 
+    // aims at the player
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     public void update(GameObjects objects) {
         if (isDead) {
             curAnimation = idleDead;
@@ -89,7 +96,7 @@ public class PeaShooterBoss extends GameCharacter {
         setVelX(0);
         setVelY(0);
 
-        long currentTime = System.currentTimeMillis();
+        long currentTime = GameClock.currentTimeMillis();
 
         // projectile shooting
         if (currentTime - lastShootTime >= SHOOT_DELAY) {
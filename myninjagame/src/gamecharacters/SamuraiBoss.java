@@ -1,5 +1,6 @@
 package gamecharacters;
 
+import gameframework.GameClock;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -99,6 +100,13 @@ public class SamuraiBoss extends GameCharacter
 
     }
 
+    // attacks the player and changes its score
+    @Override
+    public boolean canUpdateInParallel()
+    {
+        return false;
+    }
+
     public void update(GameObjects objects)
     {
         super.update(objects);
@@ -154,9 +162,9 @@ public class SamuraiBoss extends GameCharacter
 
             // Leaving this here for use when jump functionality is ready
 
-            /*if (getDistanceFromPlayer()>JUMP_RANGE && (System.currentTimeMillis()-last_jump_used) > JUMP_COOLDOWN)
+            /*if (getDistanceFromPlayer()>JUMP_RANGE && (GameClock.currentTimeMillis()-last_jump_used) > JUMP_COOLDOWN)
             {
-                last_jump_used = System.currentTimeMillis();
+                last_jump_used = GameClock.currentTimeMillis();
                 jumpAtPlayer();
             }*/
 
@@ -1,5 +1,6 @@
 package gamecharacters;
 
+import gameframework.GameClock;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -78,11 +79,17 @@ public class Skeleton extends GameCharacter {
         idle.setSpeed(2);
     }
 
+    // chases the player
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     @Override
     public void update(GameObjects objects) {
 
         super.update(objects);
-        currentTime = System.currentTimeMillis();
+        currentTime = GameClock.currentTimeMillis();
 
         if (ninja == null) {
             for (GameObject obj : objects) {
@@ -1,5 +1,6 @@
 package gameobjects;
 
+import gameframework.GameClock;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
 import gameframework.gameobjects.GameObject;
@@ -13,7 +14,7 @@ public class AwarenessIndicator extends InanimateObject {
     private int bufferX;
     private int bufferY;
     private int alertDisplayTime = 4000;
-    private long lastRecordedTime = System.currentTimeMillis();
+    private long lastRecordedTime = GameClock.currentTimeMillis();
     private Animation empty;
     private Animation suspicion;
     private Animation alert;
@@ -69,7 +70,7 @@ public class AwarenessIndicator extends InanimateObject {
     // Sets the indicator to "!" but also initiates a timer so that the "!" is not on forever
     public void setAlert(){
         if (curAnimation != alert) {        // only reset timer if we weren't already in alert
-            lastRecordedTime = System.currentTimeMillis();
+            lastRecordedTime = GameClock.currentTimeMillis();
         }
         curAnimation = alert;
     }
@@ -79,6 +80,12 @@ public class AwarenessIndicator extends InanimateObject {
         curAnimation = empty;
     }
 
+    // follows the ninja it watches, which may be in another region
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     @Override
     public void update(GameObjects objects) {
         super.update(objects);
@@ -92,7 +99,7 @@ public class AwarenessIndicator extends InanimateObject {
 
         // Check if the current animation is alert, if yes then we need to track how much time has passed
         if (curAnimation == alert){
-            long currentTime = System.currentTimeMillis(); // get the current time
+            long currentTime = GameClock.currentTimeMillis(); // get the current time
             // if the current time less the time recorded when the alert animation was set is greater than the displayTime
             if (currentTime - lastRecordedTime > alertDisplayTime)
                 setOff(); // then set the indicator off
@@ -1,5 +1,7 @@
 package gameobjects;
 
+import gameframework.GameClock;
+import gameframework.GameRandom;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -33,7 +35,7 @@ public class BossLance extends InanimateObject {
     private double vy;
     private Animation disappear;
     private Animation staticView;
-    private Random rand = new Random();
+    private Random rand = GameRandom.createRandom();
 
     public BossLance(String name, int x, int y, int z, int scaleWidth, int scaleHeight, Point targetPosition, int TTL) {
         super(name, x, y, z, scaleWidth, scaleHeight);
@@ -41,7 +43,7 @@ public class BossLance extends InanimateObject {
         this.startPosition = new Point(x, y + SPAWN_Y_BUFFER); // Adds a buffer amount so that it can more accurately advance the target
         requiresUpdating = true;
         this.ttlDelay = TTL;
-        this.ttlStartTime = System.currentTimeMillis();
+        this.ttlStartTime = GameClock.currentTimeMillis();
 
         // Make buffer adjustments to the target and spawn points
 //        this.targetPositon.x =- TARGET_X_BUFFER;
@@ -90,7 +92,7 @@ public class BossLance extends InanimateObject {
         }
 
         // get the current system time
-        long currentTime = System.currentTimeMillis();
+        long currentTime = GameClock.currentTimeMillis();
         // If the initial delay has passed, then hone for a random amount of time
         if (currentTime - lastRecordedTime > honeDelay){ // Check if we have passed the initial delay
             if (!honePeriodExhausted) { // Check if the shuriken hone period has already been used
@@ -57,6 +57,13 @@ public class Chest extends InanimateObject
         return false;
     }
 
+    // is opened by the player, which changes its score and plays a sound
+    @Override
+    public boolean canUpdateInParallel()
+    {
+        return false;
+    }
+
     @Override
     public void update(GameObjects objects)
     {
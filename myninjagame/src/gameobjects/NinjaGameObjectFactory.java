@@ -1,15 +1,16 @@
 package gameobjects;
 
 import gamecharacters.*;
+import gameframework.GameThread;
 import gameframework.gameobjects.GameObject;
 import gameframework.gameobjects.GameObjectFactory;
 import gameframework.gameobjects.Collectible;
 
 public class NinjaGameObjectFactory extends GameObjectFactory
 {
-    public GameObject createGameObject(String objectStr)
+    public GameObject createGameObject(int posX, int posY, int type, String subtype, int scaleWidth, int scaleHeight)
     {
-        GameObject gameObject = super.createGameObject(objectStr);
+        GameObject gameObject = super.createGameObject(posX, posY, type, subtype, scaleWidth, scaleHeight);
 
         if (gameObject == null)
         {
@@ -53,4 +54,18 @@ public class NinjaGameObjectFactory extends GameObjectFactory
         }
         return gameObject;
     }
+
+    public void requestResources(int type, String subtype, String levelName)
+    {
+        switch (type)
+        {
+            case NinjaGameObjectType.KEY:
+            case NinjaGameObjectType.COIN:
+            case NinjaGameObjectType.CHEST:
+                GameThread.resourceManager.loadImageResourceAsync(subtype + ".png", levelName);
+                break;
+            default:
+                super.requestResources(type, subtype, levelName);
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package gameobjects;
 
+import gameframework.GameClock;
+import gameframework.GameRandom;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.gameobjects.GameObject;
@@ -21,7 +23,7 @@ public class NinjaPlayerKunai extends ThrownWeapon {
     private double vy;
     private Animation disappear;
     private Animation staticView;
-    private Random rand = new Random();
+    private Random rand = GameRandom.createRandom();
     private boolean thrownByPlayer;
     private long ttlStartTime = 0;
     private int ttlDelay;
@@ -35,7 +37,7 @@ public class NinjaPlayerKunai extends ThrownWeapon {
         this.thrownByPlayer = thrownByPlayer;
         this.targetPositon = new Point(MouseHandler.targetX, MouseHandler.targetY);
         this.ttlDelay = TTL;
-        this.ttlStartTime = System.currentTimeMillis();
+        this.ttlStartTime = GameClock.currentTimeMillis();
         requiresUpdating = true;
         setDamage(DAMAGE);
         initVelocityVectors();
@@ -58,7 +60,7 @@ public class NinjaPlayerKunai extends ThrownWeapon {
         super.update(objects);
 
         setPosition(getX() + (int)vx, getY() + (int)vy);
-        long currentTime = System.currentTimeMillis();
+        long currentTime = GameClock.currentTimeMillis();
 
         for (GameObject other : objects) {
             if (other == this) continue;
@@ -1,5 +1,7 @@
 package gameobjects;
 
+import gameframework.GameClock;
+import gameframework.GameRandom;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
 import gameframework.animations.Spritesheet;
@@ -25,7 +27,7 @@ public class NinjaShuriken extends InanimateObject {
     private boolean hone = false;
     private boolean honePeriodExhausted = false;
     private int speed = 8;
-    private long lastRecordedTime = System.currentTimeMillis();
+    private long lastRecordedTime = GameClock.currentTimeMillis();
     private long honeDelay = 1500;
     private long ttlStartTime = 0;
     private int ttlDelay;
@@ -34,7 +36,7 @@ public class NinjaShuriken extends InanimateObject {
     private Animation disappear;
     private Animation spin1;
     private Animation spin2;
-    private Random rand = new Random();
+    private Random rand = GameRandom.createRandom();
     //Added by Logan (DO NOT REMOVE IF YOU ARE GONNA USE THIS, IF YOU DO MAKE SURE TO ADD THE DAMAGE)
     private final int DAMAGE = 10;
     //
@@ -48,7 +50,7 @@ public class NinjaShuriken extends InanimateObject {
         this.startPosition = new Point(x, y + SPAWN_Y_BUFFER); // Adds a buffer amount so that it can more accurately advance the target
         requiresUpdating = true;
         this.ttlDelay = TTL;
-        this.ttlStartTime = System.currentTimeMillis();
+        this.ttlStartTime = GameClock.currentTimeMillis();
 
         setGravity(0);
 
@@ -98,6 +100,11 @@ public class NinjaShuriken extends InanimateObject {
         return false;
     }
 
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
     @Override
         public void update(GameObjects objects)
         {
@@ -109,7 +116,7 @@ public class NinjaShuriken extends InanimateObject {
 //        }
 
             // get the current system time
-        long currentTime = System.currentTimeMillis();
+        long currentTime = GameClock.currentTimeMillis();
         // If the initial delay has passed, then hone for a random amount of time
         if (currentTime - lastRecordedTime > honeDelay){ // Check if we have passed the initial delay
             if (!honePeriodExhausted) { // Check if the shuriken hone period has already been used
@@ -90,6 +90,11 @@ public class PeaProjectile extends InanimateObject {
         return false;  // projectile moves
     }
 
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;  // projectiles can hit the player
+    }
+
     @Override
     public void update(GameObjects objects) {
         super.update(objects);
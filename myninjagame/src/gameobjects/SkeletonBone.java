@@ -1,6 +1,8 @@
 package gameobjects;
 
 import gamecharacters.NinjaPlayer;
+import gameframework.GameClock;
+import gameframework.GameRandom;
 import gameframework.GameData;
 import gameframework.GameThread;
 import gameframework.animations.Animation;
@@ -39,7 +41,7 @@ public class SkeletonBone extends InanimateObject {
     private final int DAMAGE = 10;
     //
 
-    private Random rand = new Random();
+    private Random rand = GameRandom.createRandom();
     public SkeletonBone(String name,
                         int x, int y, int z,
                         int scaleWidth, int scaleHeight, Point targetPosition, int TTL){
@@ -50,7 +52,7 @@ public class SkeletonBone extends InanimateObject {
         this.startPosition = new Point(x , y); // Adds a buffer amount so that it can more accurately advance the target
         requiresUpdating = true;
         this.ttlDelay = TTL;
-        this.ttlStartTime = System.currentTimeMillis();
+        this.ttlStartTime = GameClock.currentTimeMillis();
 
         this.targetPosition.y = this.targetPosition.y - 75;
 
@@ -117,6 +119,10 @@ public class SkeletonBone extends InanimateObject {
     @Override
     public boolean isUnmovable(){ return false;}
 
+    // bones fly towards the ninja, wherever it is
+    @Override
+    public boolean canUpdateInParallel(){ return false;}
+
     @Override
     public void update(GameObjects objects) {
         super.update(objects);
@@ -143,7 +149,7 @@ public class SkeletonBone extends InanimateObject {
         }
 
         // get the current system time
-        long currentTime = System.currentTimeMillis();
+        long currentTime = GameClock.currentTimeMillis();
         // If the initial delay has passed, then hone for a random amount of time
         if (currentTime - lastRecordedTime > honeDelay){ // Check if we have passed the initial delay
             if (!honePeriodExhausted) { // Check if the shuriken hone period has already been used
@@ -51,5 +51,11 @@ public class ThrownWeapon extends InanimateObject {
         return other == this.getOwner();
     }
 
+    // thrown weapons check against all the objects in the game
+    @Override
+    public boolean canUpdateInParallel() {
+        return false;
+    }
+
 
 }
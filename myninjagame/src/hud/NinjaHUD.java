@@ -33,6 +33,23 @@ public class NinjaHUD extends HUDPanel
             this.player = player;
     }
 
+    // state of the player shown by the HUD, captured for the render thread (see HUDPanel.captureState)
+    private static class PlayerState
+    {
+        private final int curHealth;
+        private final int totalHealth;
+        private final int score;
+        private final int keys;
+
+        private PlayerState(NinjaPlayer player)
+        {
+            curHealth = player.getCurHealth();
+            totalHealth = player.getTotalHealth();
+            score = player.getScore();
+            keys = player.getKeys();
+        }
+    }
+
     public NinjaHUD(int posX, int posY, int width, int height,
                     GameDisplay gameDisplay, NinjaPlayer player)
     {
@@ -53,10 +70,21 @@ public class NinjaHUD extends HUDPanel
         PIXELIFY_SANS = GameThread.resourceManager.loadFontResource("fonts/PixelifySans.ttf",60);
     }
 
+    @Override
+    public Object captureState()
+    {
+        return new PlayerState(player);
+    }
+
     private void initializeHearts()
+    {
+        initializeHearts(new PlayerState(player));
+    }
+
+    private void initializeHearts(PlayerState state)
     {
         //will be used to generate the amount of hearts a player has initially
-        int heartAmount = player.getTotalHealth()/HEART_VALUE;
+        int heartAmount = state.totalHealth/HEART_VALUE;
         while (heartAmount > 0)
         {
             Heart emptyHeart = new Heart(true);
@@ -65,7 +93,7 @@ public class NinjaHUD extends HUDPanel
         }
 
         //will be used to generate the amount of hearts that are full
-        int fullHeartAmount = player.getCurHealth()/HEART_VALUE;
+        int fullHeartAmount = state.curHealth/HEART_VALUE;
         for (Heart heart: hearts)
         {
             if (fullHeartAmount > 0)
@@ -83,6 +111,9 @@ public class NinjaHUD extends HUDPanel
 
         if (!isEnabled()) return;
 
+        //draw the state captured for this frame if the HUD is drawn by the render thread
+        PlayerState state = getRenderState() != null ? (PlayerState)getRenderState() : new PlayerState(player);
+
         //display item box on screen
         ItemBox box = new ItemBox();
         g.drawImage(ItemBox.emptyBox,convertToHUDCoords(0,'X'),
@@ -92,11 +123,11 @@ public class NinjaHUD extends HUDPanel
                 scale,scale,null);
 
         //checks to update the status of hearts and clears the hearts
-        if (player.getCurHealth() != lastHealth)
+        if (state.curHealth != lastHealth)
         {
             hearts.clear();
-            initializeHearts();
-            lastHealth = player.getCurHealth();
+            initializeHearts(state);
+            lastHealth = state.curHealth;
         }
         //draws the hearts
         int xPos = scale;
@@ -115,13 +146,13 @@ public class NinjaHUD extends HUDPanel
         g.drawImage(COIN_SPRITE,convertToHUDCoords(0,'X'),
                 convertToHUDCoords(scale + scale /8,'Y'), scale /2, scale /2,null);
 
-        g.drawString(":"+ player.getScore(),convertToHUDCoords(scale /2,'X'),
+        g.drawString(":"+ state.score,convertToHUDCoords(scale /2,'X'),
                 convertToHUDCoords(scale + subscale,'Y'));
 
         //draws the amount of keys that the player has
         g.drawImage(KEY_SPRITE,convertToHUDCoords(scale*3,'X'),
                 convertToHUDCoords(scale + scale /8,'Y'), scale, scale /2,null);
-        g.drawString(":"+player.getKeys(),convertToHUDCoords(scale *4,'X'),
+        g.drawString(":"+state.keys,convertToHUDCoords(scale *4,'X'),
                 convertToHUDCoords(scale +subscale,'Y'));
     }
 }
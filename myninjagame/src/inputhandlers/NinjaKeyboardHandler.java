@@ -13,7 +13,6 @@ public class NinjaKeyboardHandler extends KeyboardHandler
     public void keyPressed(KeyEvent ke)
     {
         int keyCode = ke.getKeyCode();
-        int keyHeldId = -1;
 
         switch (keyCode)
         {
@@ -23,24 +22,24 @@ public class NinjaKeyboardHandler extends KeyboardHandler
              * to add entries here for them.
              */
             case KeyEvent.VK_D:
-                keyPressedActionHandler(HANDLER_MOVE_RIGHT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_RIGHT, ke);
                 direction = 2;
                 break;
             case KeyEvent.VK_A:
-                keyPressedActionHandler(HANDLER_MOVE_LEFT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_LEFT, ke);
                 direction = 1;
                 break;
             case KeyEvent.VK_S:
-                keyPressedActionHandler(HANDLER_MOVE_DOWN, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_DOWN, ke);
                 break;
             case KeyEvent.VK_W:
-                keyPressedActionHandler(HANDLER_MOVE_UP, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_MOVE_UP, ke);
                 break;
             case KeyEvent.VK_E:
-                keyPressedActionHandler(HANDLER_RANGED_ATTACK_RIGHT, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_RANGED_ATTACK_RIGHT, ke);
                 break;
             case KeyEvent.VK_SPACE:
-                keyPressedActionHandler(HANDLER_JUMP, ke, keyHeldId);
+                queueKeyPressedAction(HANDLER_JUMP, ke);
                 break;
             /*******/
             default:
@@ -57,24 +56,24 @@ public class NinjaKeyboardHandler extends KeyboardHandler
         switch (keyCode)
         {
             case KeyEvent.VK_D:
-                keyReleasedActionHandler(HANDLER_MOVE_RIGHT);
+                queueKeyReleasedAction(HANDLER_MOVE_RIGHT);
                 direction = 0;
                 break;
             case KeyEvent.VK_A:
-                keyReleasedActionHandler(HANDLER_MOVE_LEFT);
+                queueKeyReleasedAction(HANDLER_MOVE_LEFT);
                 direction = 0;
                 break;
             case KeyEvent.VK_S:
-                keyReleasedActionHandler(HANDLER_MOVE_DOWN);
+                queueKeyReleasedAction(HANDLER_MOVE_DOWN);
                 break;
             case KeyEvent.VK_W:
-                keyReleasedActionHandler(HANDLER_MOVE_UP);
+                queueKeyReleasedAction(HANDLER_MOVE_UP);
                 break;
             case KeyEvent.VK_E:
-                keyReleasedActionHandler(HANDLER_RANGED_ATTACK_RIGHT);
+                queueKeyReleasedAction(HANDLER_RANGED_ATTACK_RIGHT);
                 break;
             case KeyEvent.VK_SPACE:
-                keyReleasedActionHandler(HANDLER_JUMP);
+                queueKeyReleasedAction(HANDLER_JUMP);
                 break;
             default:
                 super.keyReleased(ke);